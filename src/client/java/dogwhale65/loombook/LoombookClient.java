@@ -1,12 +1,20 @@
 package dogwhale65.loombook;
 
+import dogwhale65.loombook.config.LoombookConfig;
 import dogwhale65.loombook.data.BannerStorage;
 import net.fabricmc.api.ClientModInitializer;
+import net.fabricmc.fabric.api.client.event.lifecycle.v1.ClientLifecycleEvents;
 
 public class LoombookClient implements ClientModInitializer {
 	@Override
 	public void onInitializeClient() {
 		Loombook.LOGGER.info("Initializing Loombook client");
-		BannerStorage.getInstance().load();
+		if (LoombookConfig.getInstance().isAsyncLoad()) {
+			BannerStorage.getInstance().loadAsync();
+		} else {
+			BannerStorage.getInstance().load();
+		}
+		// Flush queued writes and release storage files before the game exits
+		ClientLifecycleEvents.CLIENT_STOPPING.register(client -> BannerStorage.shutdown());
 	}
 }
\ No newline at end of file
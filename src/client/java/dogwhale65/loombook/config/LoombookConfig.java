@@ -0,0 +1,227 @@
+package dogwhale65.loombook.config;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonParseException;
+import dogwhale65.loombook.Loombook;
+import dogwhale65.loombook.data.BannerCollections;
+import dogwhale65.loombook.data.DuplicatePolicy;
+import net.fabricmc.loader.api.FabricLoader;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * User-editable settings stored in config/loombook/config.json.
+ */
+public class LoombookConfig {
+    private static final Gson GSON = new GsonBuilder()
+            .setPrettyPrinting()
+            .create();
+
+    private static LoombookConfig instance;
+
+    private boolean asyncLoad = true;
+    private int loadThreads = 0;
+    private StorageBackend storageBackend = StorageBackend.DIRECTORY;
+    private double journalCompactionRatio = 0.5;
+    private DuplicatePolicy duplicatePolicy = DuplicatePolicy.SKIP;
+    private boolean watchDirectory = true;
+    private boolean lazyLayers = false;
+    private int layerCacheSize = 1024;
+    private boolean startupSnapshot = true;
+    private int backupIntervalMinutes = 10;
+    private int backupRetention = 50;
+    private String activeCollection = BannerCollections.DEFAULT;
+    private int undoLimit = 100;
+    private boolean persistUndoHistory = false;
+    private int clipboardExportLimit = 50;
+    private boolean gzipExports = false;
+
+    /**
+     * On-disk layouts the banner library can be stored in.
+     */
+    public enum StorageBackend {
+        /** One JSON file per banner in config/loombook/banners. */
+        DIRECTORY,
+        /** A single append-only journal, compacted in the background. */
+        JOURNAL,
+        /** A memory-mapped binary file whose records are decoded on demand. */
+        PACKED
+    }
+
+    public static LoombookConfig getInstance() {
+        if (instance == null) {
+            instance = load();
+        }
+        return instance;
+    }
+
+    private static Path getConfigFile() {
+        return FabricLoader.getInstance()
+                .getConfigDir()
+                .resolve("loombook")
+                .resolve("config.json");
+    }
+
+    private static LoombookConfig load() {
+        Path file = getConfigFile();
+        if (Files.exists(file)) {
+            try (Reader reader = Files.newBufferedReader(file)) {
+                LoombookConfig config = GSON.fromJson(reader, LoombookConfig.class);
+                if (config != null) {
+                    // Rewrite so options added in newer versions show up in the file
+                    config.save();
+                    return config;
+                }
+            } catch (IOException | JsonParseException e) {
+                Loombook.LOGGER.error("Failed to read Loombook config, using defaults", e);
+                return new LoombookConfig();
+            }
+        }
+
+        LoombookConfig config = new LoombookConfig();
+        config.save();
+        return config;
+    }
+
+    public void save() {
+        Path file = getConfigFile();
+        try {
+            Files.createDirectories(file.getParent());
+            try (Writer writer = Files.newBufferedWriter(file)) {
+                GSON.toJson(this, writer);
+            }
+        } catch (IOException e) {
+            Loombook.LOGGER.error("Failed to save Loombook config", e);
+        }
+    }
+
+    /**
+     * Whether the banner library is loaded on a background thread instead of
+     * blocking client startup.
+     */
+    public boolean isAsyncLoad() {
+        return asyncLoad;
+    }
+
+    /**
+     * Number of threads used to parse banner files, or one per core when not positive.
+     */
+    public int getLoadThreads() {
+        if (loadThreads > 0) {
+            return loadThreads;
+        }
+        return Runtime.getRuntime().availableProcessors();
+    }
+
+    public StorageBackend getStorageBackend() {
+        return storageBackend != null ? storageBackend : StorageBackend.DIRECTORY;
+    }
+
+    /**
+     * Share of superseded journal records above which the journal is compacted.
+     */
+    public double getJournalCompactionRatio() {
+        return journalCompactionRatio;
+    }
+
+    /**
+     * How saves and imports treat designs that are already in the library.
+     */
+    public DuplicatePolicy getDuplicatePolicy() {
+        return duplicatePolicy != null ? duplicatePolicy : DuplicatePolicy.SKIP;
+    }
+
+    public void setDuplicatePolicy(DuplicatePolicy duplicatePolicy) {
+        this.duplicatePolicy = duplicatePolicy;
+        save();
+    }
+
+    /**
+     * Whether changes made to the banner directory outside the game are picked up while running.
+     */
+    public boolean isWatchDirectory() {
+        return watchDirectory;
+    }
+
+    /**
+     * Whether the per-file backend loads banners from its metadata index and reads each
+     * banner's layers only when it is previewed, crafted or exported.
+     */
+    public boolean isLazyLayers() {
+        return lazyLayers;
+    }
+
+    /**
+     * Maximum number of banners whose layers are kept in memory in lazy mode.
+     */
+    public int getLayerCacheSize() {
+        return Math.max(1, layerCacheSize);
+    }
+
+    /**
+     * Whether the per-file library is saved as one snapshot on shutdown and loaded from
+     * it on the next start while the banner directory is unchanged.
+     */
+    public boolean isStartupSnapshot() {
+        return startupSnapshot;
+    }
+
+    /**
+     * Minutes between library backups, or 0 to only back up on shutdown.
+     */
+    public int getBackupIntervalMinutes() {
+        return backupIntervalMinutes;
+    }
+
+    /**
+     * Number of library backups to keep.
+     */
+    public int getBackupRetention() {
+        return backupRetention;
+    }
+
+    /**
+     * The banner collection that is loaded and shown in the loom side panel.
+     */
+    public String getActiveCollection() {
+        return activeCollection != null ? activeCollection : BannerCollections.DEFAULT;
+    }
+
+    public void setActiveCollection(String activeCollection) {
+        this.activeCollection = activeCollection;
+        save();
+    }
+
+    /**
+     * Number of library changes that can be undone.
+     */
+    public int getUndoLimit() {
+        return undoLimit;
+    }
+
+    /**
+     * Whether the undo history of a collection is kept across restarts.
+     */
+    public boolean isPersistUndoHistory() {
+        return persistUndoHistory;
+    }
+
+    /**
+     * Largest selection that is exported to the clipboard; bigger ones are written to a file.
+     */
+    public int getClipboardExportLimit() {
+        return clipboardExportLimit;
+    }
+
+    /**
+     * Whether export files are gzip-compressed.
+     */
+    public boolean isGzipExports() {
+        return gzipExports;
+    }
+}
@@ -0,0 +1,28 @@
+package dogwhale65.loombook.data;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The one executor for one-off background work: loading, importing, exporting, scanning
+ * and harvesting. Threads are daemons, so a running task never keeps the game from
+ * exiting, and idle ones are dropped after a minute. Work that runs on a schedule, like
+ * write-behind flushes and backups, keeps its own single-thread scheduler.
+ */
+public final class BackgroundTasks {
+    private static final AtomicInteger THREADS = new AtomicInteger();
+    private static final ExecutorService EXECUTOR = Executors.newCachedThreadPool(runnable -> {
+        Thread thread = new Thread(runnable, "Loombook worker " + THREADS.incrementAndGet());
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private BackgroundTasks() {
+    }
+
+    public static Executor executor() {
+        return EXECUTOR;
+    }
+}
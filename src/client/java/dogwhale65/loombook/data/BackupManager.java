@@ -0,0 +1,328 @@
+package dogwhale65.loombook.data;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonParseException;
+import dogwhale65.loombook.Loombook;
+
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Keeps compressed, incremental backups of the banner library in config/loombook/backups.
+ * Each backup holds the ids of every banner in the library at that point, but only the
+ * banners that were added or changed since the previous backup; every few backups a full
+ * one is written so restoring never has to replay a long chain. The library can be
+ * rebuilt as of any backup that is still kept.
+ */
+public class BackupManager {
+    private static final Gson GSON = new Gson();
+    private static final int VERSION = 1;
+    private static final String MANIFEST_FILE = "manifest.json";
+    private static final int FULL_BACKUP_EVERY = 20;
+
+    private final Path directory;
+    private final Supplier<List<SavedBanner>> source;
+    private final int retention;
+    private ScheduledExecutorService scheduler;
+    private Manifest manifest;
+    // The banner objects captured by the latest backup this session. Library edits replace
+    // banners with changed copies, so the same object means the same state.
+    private Map<String, SavedBanner> backedUp = new HashMap<>();
+
+    /**
+     * Summary of one backup, as listed in the manifest.
+     */
+    public record BackupInfo(int sequence, long createdAt, boolean full, int changed, int total) {
+    }
+
+    private static class Manifest {
+        int version = VERSION;
+        int sinceFull = 0;
+        // Backed-up state of every banner as of the latest backup
+        Map<String, Long> states = new HashMap<>();
+        List<BackupInfo> backups = new ArrayList<>();
+    }
+
+    private static class BackupFile {
+        int version;
+        int sequence;
+        long createdAt;
+        boolean full;
+        List<String> ids;
+        List<SavedBanner> changed;
+    }
+
+    /**
+     * @param source returns a copy of the library that is safe to read from another thread
+     */
+    public BackupManager(Path directory, Supplier<List<SavedBanner>> source, int retention) {
+        this.directory = directory;
+        this.source = source;
+        this.retention = Math.max(1, retention);
+    }
+
+    /**
+     * Starts writing a backup every given number of minutes on a background thread.
+     */
+    public void start(int intervalMinutes) {
+        if (scheduler != null || intervalMinutes <= 0) {
+            return;
+        }
+        scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "Loombook backup");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleWithFixedDelay(this::backupSafely, intervalMinutes, intervalMinutes, TimeUnit.MINUTES);
+    }
+
+    private void backupSafely() {
+        try {
+            backup();
+        } catch (RuntimeException e) {
+            Loombook.LOGGER.error("Scheduled banner backup failed", e);
+        }
+    }
+
+    /**
+     * Identifies what a backup has to capture about a banner: its design and its name.
+     */
+    static long stateOf(SavedBanner banner) {
+        return banner.getFingerprint() * 31 + Objects.hashCode(banner.getName());
+    }
+
+    /**
+     * Writes a backup of everything that changed since the last one.
+     * Returns false if nothing changed and no backup was written. Banners that are still the
+     * objects the previous backup saw are taken as unchanged without being fingerprinted,
+     * so a lazily loaded library stays unread.
+     */
+    public synchronized boolean backup() {
+        List<SavedBanner> banners = source.get();
+        Manifest manifest = manifest();
+        boolean full = manifest.backups.isEmpty() || manifest.sinceFull >= FULL_BACKUP_EVERY;
+
+        Map<String, Long> states = new HashMap<>();
+        Map<String, SavedBanner> seen = new HashMap<>();
+        List<String> ids = new ArrayList<>(banners.size());
+        List<SavedBanner> changed = new ArrayList<>();
+        for (SavedBanner banner : banners) {
+            Long previous = manifest.states.get(banner.getId());
+            long state = previous != null && backedUp.get(banner.getId()) == banner ? previous : stateOf(banner);
+            states.put(banner.getId(), state);
+            seen.put(banner.getId(), banner);
+            ids.add(banner.getId());
+            if (full || !Objects.equals(previous, state)) {
+                changed.add(banner);
+            }
+        }
+        if (!full && changed.isEmpty() && states.keySet().equals(manifest.states.keySet())) {
+            backedUp = seen;
+            return false;
+        }
+
+        BackupFile backup = new BackupFile();
+        backup.version = VERSION;
+        backup.sequence = manifest.backups.isEmpty() ? 1 : manifest.backups.getLast().sequence() + 1;
+        backup.createdAt = System.currentTimeMillis();
+        backup.full = full;
+        backup.ids = ids;
+        backup.changed = changed;
+
+        Path file = getBackupFile(backup.sequence);
+        Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+        try {
+            Files.createDirectories(directory);
+            // GZIP is deflate plus a CRC, so a damaged backup fails to read instead of restoring garbage
+            try (Writer writer = new OutputStreamWriter(new GZIPOutputStream(Files.newOutputStream(temp)),
+                    StandardCharsets.UTF_8)) {
+                GSON.toJson(backup, writer);
+            }
+            move(temp, file);
+        } catch (IOException e) {
+            Loombook.LOGGER.error("Failed to write banner backup {}", file, e);
+            return false;
+        }
+
+        manifest.states = states;
+        backedUp = seen;
+        manifest.sinceFull = full ? 0 : manifest.sinceFull + 1;
+        manifest.backups.add(new BackupInfo(backup.sequence, backup.createdAt, full, changed.size(), ids.size()));
+        prune(manifest);
+        writeManifest(manifest);
+        Loombook.LOGGER.info("Wrote {} banner backup {} ({} of {} banners)", full ? "full" : "incremental",
+                backup.sequence, changed.size(), ids.size());
+        return true;
+    }
+
+    /**
+     * Drops the oldest backups beyond the retention limit. Backups are only removed up to
+     * a full backup, so every kept backup can still be restored.
+     */
+    private void prune(Manifest manifest) {
+        List<BackupInfo> backups = manifest.backups;
+        int cut = 0;
+        for (int i = 0; i < backups.size(); i++) {
+            if (backups.get(i).full() && backups.size() - i >= retention) {
+                cut = i;
+            }
+        }
+        for (BackupInfo info : backups.subList(0, cut)) {
+            try {
+                Files.deleteIfExists(getBackupFile(info.sequence()));
+            } catch (IOException e) {
+                Loombook.LOGGER.warn("Failed to delete old banner backup {}", info.sequence(), e);
+            }
+        }
+        backups.subList(0, cut).clear();
+    }
+
+    /**
+     * Returns the kept backups, oldest first.
+     */
+    public synchronized List<BackupInfo> getBackups() {
+        return List.copyOf(manifest().backups);
+    }
+
+    /**
+     * Rebuilds the library as it was when the given backup was written, in its order then.
+     * Returns null if the backup is not kept or can't be read.
+     */
+    public synchronized List<SavedBanner> restore(int sequence) {
+        List<BackupInfo> backups = manifest().backups;
+        int target = -1;
+        int start = 0;
+        for (int i = 0; i < backups.size() && backups.get(i).sequence() <= sequence; i++) {
+            if (backups.get(i).full()) {
+                start = i;
+            }
+            if (backups.get(i).sequence() == sequence) {
+                target = i;
+            }
+        }
+        if (target < 0) {
+            return null;
+        }
+
+        Map<String, SavedBanner> library = new HashMap<>();
+        List<String> ids = List.of();
+        for (int i = start; i <= target; i++) {
+            BackupFile backup = readBackup(backups.get(i).sequence());
+            if (backup == null) {
+                return null;
+            }
+            for (SavedBanner banner : backup.changed) {
+                library.put(banner.getId(), banner);
+            }
+            ids = backup.ids;
+            // Banners missing from a backup had been deleted by then
+            library.keySet().retainAll(new HashSet<>(ids));
+        }
+
+        List<SavedBanner> restored = new ArrayList<>(ids.size());
+        for (String id : ids) {
+            SavedBanner banner = library.get(id);
+            if (banner != null) {
+                restored.add(banner);
+            }
+        }
+        return restored;
+    }
+
+    private BackupFile readBackup(int sequence) {
+        Path file = getBackupFile(sequence);
+        try (Reader reader = new InputStreamReader(new GZIPInputStream(Files.newInputStream(file)),
+                StandardCharsets.UTF_8)) {
+            BackupFile backup = GSON.fromJson(reader, BackupFile.class);
+            if (backup != null && backup.version == VERSION && backup.ids != null && backup.changed != null) {
+                return backup;
+            }
+            Loombook.LOGGER.error("Banner backup {} has an unknown format", file);
+        } catch (IOException | JsonParseException e) {
+            Loombook.LOGGER.error("Failed to read banner backup {}", file, e);
+        }
+        return null;
+    }
+
+    private Path getBackupFile(int sequence) {
+        return directory.resolve(String.format("backup-%06d.lbk", sequence));
+    }
+
+    private Manifest manifest() {
+        if (manifest == null) {
+            manifest = readManifest();
+        }
+        return manifest;
+    }
+
+    private Manifest readManifest() {
+        Path file = directory.resolve(MANIFEST_FILE);
+        if (Files.exists(file)) {
+            try (Reader reader = Files.newBufferedReader(file)) {
+                Manifest read = GSON.fromJson(reader, Manifest.class);
+                if (read != null && read.version == VERSION && read.states != null && read.backups != null) {
+                    return read;
+                }
+            } catch (IOException | JsonParseException e) {
+                Loombook.LOGGER.warn("Ignoring unreadable backup manifest, the next backup will be full", e);
+            }
+        }
+        return new Manifest();
+    }
+
+    private void writeManifest(Manifest manifest) {
+        Path file = directory.resolve(MANIFEST_FILE);
+        Path temp = directory.resolve(MANIFEST_FILE + ".tmp");
+        try {
+            try (Writer writer = Files.newBufferedWriter(temp)) {
+                GSON.toJson(manifest, writer);
+            }
+            move(temp, file);
+        } catch (IOException e) {
+            Loombook.LOGGER.error("Failed to write backup manifest", e);
+        }
+    }
+
+    private static void move(Path source, Path target) throws IOException {
+        try {
+            Files.move(source, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(source, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    /**
+     * Stops the schedule and writes a last backup of anything changed since the previous one.
+     */
+    public void close() {
+        if (scheduler != null) {
+            scheduler.shutdown();
+            try {
+                scheduler.awaitTermination(10, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        backupSafely();
+    }
+}
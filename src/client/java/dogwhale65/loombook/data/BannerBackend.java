@@ -0,0 +1,51 @@
+package dogwhale65.loombook.data;
+
+import java.util.List;
+
+/**
+ * Persistence strategy behind {@link BannerStorage}.
+ * Implementations only deal with disk layout; the in-memory library lives in the storage.
+ */
+public interface BannerBackend {
+    /**
+     * Whether anything has been stored yet. A backend without data is seeded from the
+     * per-file layout on first load.
+     */
+    default boolean hasData() {
+        return true;
+    }
+
+    /**
+     * Reads every saved banner. Called once when the library is loaded; the returned
+     * list is handed over to the caller and must not be modified afterwards. Lists that
+     * decode lazily must be safe to read from several threads.
+     */
+    List<SavedBanner> loadAll();
+
+    /**
+     * Stores a new banner or replaces the stored copy of an existing one.
+     */
+    void save(SavedBanner banner);
+
+    /**
+     * Stores a name change. Backends that cannot record partial updates rewrite the whole banner.
+     */
+    default void rename(SavedBanner banner) {
+        save(banner);
+    }
+
+    /**
+     * Stores many banners at once. Backends with expensive writes can override this to batch them.
+     */
+    default void saveAll(List<SavedBanner> banners) {
+        banners.forEach(this::save);
+    }
+
+    void delete(String id);
+
+    /**
+     * Releases files and background workers. Called on client shutdown.
+     */
+    default void close() {
+    }
+}
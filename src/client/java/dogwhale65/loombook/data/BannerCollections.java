@@ -0,0 +1,96 @@
+package dogwhale65.loombook.data;
+
+import dogwhale65.loombook.Loombook;
+import net.fabricmc.loader.api.FabricLoader;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.stream.Stream;
+
+/**
+ * Named collections of banners. Each collection is a self-contained shard with its own
+ * banner directory, storage files, snapshot and backups; the default collection keeps
+ * the original config/loombook/banners location and the others live under
+ * config/loombook/collections/&lt;name&gt;.
+ */
+public final class BannerCollections {
+    public static final String DEFAULT = "default";
+
+    private BannerCollections() {
+    }
+
+    private static Path getRoot() {
+        return FabricLoader.getInstance()
+                .getConfigDir()
+                .resolve("loombook");
+    }
+
+    /**
+     * Returns the banner directory of a collection. Files that belong to the collection
+     * as a whole are kept next to it.
+     */
+    public static Path getDirectory(String name) {
+        if (DEFAULT.equals(name)) {
+            return getRoot().resolve("banners");
+        }
+        return getRoot().resolve("collections").resolve(name).resolve("banners");
+    }
+
+    /**
+     * Turns user input into a collection name that is safe to use as a directory name,
+     * or returns null if nothing usable is left.
+     */
+    public static String sanitize(String name) {
+        if (name == null) {
+            return null;
+        }
+        String cleaned = name.trim().toLowerCase(Locale.ROOT).replaceAll("[^a-z0-9_-]+", "_");
+        cleaned = cleaned.replaceAll("^_+|_+$", "");
+        return cleaned.isEmpty() ? null : cleaned;
+    }
+
+    /**
+     * Lists every collection, the default one first and the rest by name.
+     */
+    public static List<String> list() {
+        List<String> names = new ArrayList<>();
+        names.add(DEFAULT);
+        Path collections = getRoot().resolve("collections");
+        if (Files.isDirectory(collections)) {
+            try (Stream<Path> listing = Files.list(collections)) {
+                listing.filter(Files::isDirectory)
+                        .map(p -> p.getFileName().toString())
+                        .filter(name -> !DEFAULT.equals(name) && name.equals(sanitize(name)))
+                        .sorted()
+                        .forEach(names::add);
+            } catch (IOException e) {
+                Loombook.LOGGER.error("Failed to list banner collections", e);
+            }
+        }
+        return names;
+    }
+
+    /**
+     * Creates the directory of a collection so it shows up in {@link #list()}.
+     */
+    public static void create(String name) {
+        try {
+            Files.createDirectories(getDirectory(name));
+        } catch (IOException e) {
+            Loombook.LOGGER.error("Failed to create banner collection {}", name, e);
+        }
+    }
+
+    /**
+     * Returns the collection after the given one, wrapping around.
+     */
+    public static String next(String name) {
+        List<String> names = list();
+        int position = names.indexOf(name);
+        return names.get((position + 1) % names.size());
+    }
+}
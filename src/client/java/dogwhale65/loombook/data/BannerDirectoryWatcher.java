@@ -0,0 +1,151 @@
+package dogwhale65.loombook.data;
+
+import dogwhale65.loombook.Loombook;
+
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.LinkedHashSet;
+import java.util.Set;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Watches the per-file banner directory for changes made outside the game (sync tools,
+ * manual edits) and feeds them into the library incrementally.
+ * Events are debounced until the directory has been quiet for a moment, and files whose
+ * size and modification time match what was last read or written are not parsed again.
+ */
+public class BannerDirectoryWatcher {
+    private static final long DEBOUNCE_MILLIS = 300;
+
+    private final DirectoryBannerBackend backend;
+    private final Listener listener;
+    private final Executor deliveryExecutor;
+    private WatchService watchService;
+    private Thread thread;
+
+    /**
+     * Receives changes on the delivery executor.
+     */
+    public interface Listener {
+        void bannerChanged(SavedBanner banner);
+
+        void bannerDeleted(String id);
+    }
+
+    public BannerDirectoryWatcher(DirectoryBannerBackend backend, Listener listener, Executor deliveryExecutor) {
+        this.backend = backend;
+        this.listener = listener;
+        this.deliveryExecutor = deliveryExecutor;
+    }
+
+    public void start() {
+        Path directory = backend.getDirectory();
+        try {
+            Files.createDirectories(directory);
+            watchService = directory.getFileSystem().newWatchService();
+            directory.register(watchService,
+                    StandardWatchEventKinds.ENTRY_CREATE,
+                    StandardWatchEventKinds.ENTRY_MODIFY,
+                    StandardWatchEventKinds.ENTRY_DELETE);
+        } catch (IOException e) {
+            Loombook.LOGGER.error("Failed to watch banner directory {}", directory, e);
+            return;
+        }
+
+        thread = new Thread(this::run, "Loombook directory watcher");
+        thread.setDaemon(true);
+        thread.start();
+        Loombook.LOGGER.info("Watching {} for external changes", directory);
+    }
+
+    private void run() {
+        Set<Path> changed = new LinkedHashSet<>();
+        boolean overflowed = false;
+        try {
+            while (true) {
+                // Block until something happens, then keep collecting until it goes quiet
+                WatchKey key = changed.isEmpty() && !overflowed
+                        ? watchService.take()
+                        : watchService.poll(DEBOUNCE_MILLIS, TimeUnit.MILLISECONDS);
+
+                if (key == null) {
+                    if (overflowed) {
+                        // Events were lost: compare every file on disk and every file we knew about
+                        changed.addAll(listBannerFiles());
+                        changed.addAll(backend.getKnownFiles());
+                        overflowed = false;
+                    }
+                    process(changed);
+                    changed.clear();
+                    continue;
+                }
+
+                for (WatchEvent<?> event : key.pollEvents()) {
+                    if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                        overflowed = true;
+                        continue;
+                    }
+                    Path name = (Path) event.context();
+                    if (name.toString().endsWith(".json")) {
+                        changed.add(backend.getDirectory().resolve(name));
+                    }
+                }
+                if (!key.reset()) {
+                    Loombook.LOGGER.warn("Banner directory is no longer accessible, stopping watcher");
+                    return;
+                }
+            }
+        } catch (InterruptedException | ClosedWatchServiceException e) {
+            // Shutting down
+        }
+    }
+
+    private void process(Set<Path> changed) {
+        for (Path file : changed) {
+            if (Files.exists(file)) {
+                SavedBanner banner = backend.readIfChanged(file);
+                if (banner != null) {
+                    Loombook.LOGGER.debug("Picked up external change to {}", file.getFileName());
+                    deliveryExecutor.execute(() -> listener.bannerChanged(banner));
+                }
+            } else {
+                String id = backend.forgetFile(file);
+                if (id != null) {
+                    Loombook.LOGGER.debug("Picked up external deletion of {}", file.getFileName());
+                    deliveryExecutor.execute(() -> listener.bannerDeleted(id));
+                }
+            }
+        }
+    }
+
+    private Set<Path> listBannerFiles() {
+        Set<Path> files = new LinkedHashSet<>();
+        try (Stream<Path> listing = Files.list(backend.getDirectory())) {
+            listing.filter(p -> p.toString().endsWith(".json")).forEach(files::add);
+        } catch (IOException e) {
+            Loombook.LOGGER.error("Failed to rescan banner directory", e);
+        }
+        return files;
+    }
+
+    public void close() {
+        if (watchService != null) {
+            try {
+                watchService.close();
+            } catch (IOException e) {
+                Loombook.LOGGER.debug("Failed to close banner directory watcher", e);
+            }
+        }
+        if (thread != null) {
+            thread.interrupt();
+        }
+    }
+}
@@ -0,0 +1,108 @@
+package dogwhale65.loombook.data;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.stream.JsonWriter;
+import dogwhale65.loombook.Loombook;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Writes banners to a JSON array file one banner at a time, so exporting thousands of
+ * them never builds the whole document in memory. The output is what
+ * {@link StreamingBannerImporter} reads back, gzipped or not. Banners can also be written
+ * as a folder of per-banner files, which the import screen takes as a dropped folder.
+ */
+public final class BannerExporter {
+    private static final Gson GSON = new Gson();
+    // Matches the files DirectoryBannerBackend writes
+    private static final Gson PRETTY_GSON = new GsonBuilder().setPrettyPrinting().create();
+    private static final DateTimeFormatter FILE_TIME = DateTimeFormatter.ofPattern("yyyy-MM-dd_HH-mm-ss");
+
+    private BannerExporter() {
+    }
+
+    /**
+     * Writes the banners, in list order, to a new timestamped file in the directory on a
+     * background thread. Completes with the file written.
+     */
+    public static CompletableFuture<Path> export(List<SavedBanner> banners, Path directory, boolean gzip) {
+        String name = "banners_" + LocalDateTime.now().format(FILE_TIME) + (gzip ? ".json.gz" : ".json");
+        Path file = directory.resolve(name);
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                write(banners, file, gzip);
+                return file;
+            } catch (IOException e) {
+                Loombook.LOGGER.error("Failed to export banners to {}", file, e);
+                throw new RuntimeException(e);
+            }
+        }, BackgroundTasks.executor());
+    }
+
+    /**
+     * Writes the banners as one JSON file each, the per-file layout of
+     * {@link DirectoryBannerBackend}, to a new timestamped folder in the directory on a
+     * background thread. Completes with the folder written.
+     */
+    public static CompletableFuture<Path> exportFiles(List<SavedBanner> banners, Path directory) {
+        Path folder = directory.resolve("banners_" + LocalDateTime.now().format(FILE_TIME));
+        return CompletableFuture.supplyAsync(() -> {
+            long start = System.nanoTime();
+            try {
+                Files.createDirectories(folder);
+                for (SavedBanner banner : banners) {
+                    // Written directly rather than through a backend, which would bump each banner's revision
+                    try (Writer writer = Files.newBufferedWriter(folder.resolve(banner.getId() + ".json"))) {
+                        PRETTY_GSON.toJson(banner, writer);
+                    }
+                }
+            } catch (IOException e) {
+                Loombook.LOGGER.error("Failed to export banners to {}", folder, e);
+                throw new RuntimeException(e);
+            }
+            Loombook.LOGGER.info("Exported {} banners to {} in {} ms", banners.size(), folder,
+                    (System.nanoTime() - start) / 1_000_000);
+            return folder;
+        }, BackgroundTasks.executor());
+    }
+
+    private static void write(List<SavedBanner> banners, Path file, boolean gzip) throws IOException {
+        long start = System.nanoTime();
+        Files.createDirectories(file.getParent());
+        Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+        try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(temp), 64 * 1024);
+             JsonWriter writer = new JsonWriter(new OutputStreamWriter(gzip ? new GZIPOutputStream(out) : out,
+                     StandardCharsets.UTF_8))) {
+            writer.beginArray();
+            for (SavedBanner banner : banners) {
+                GSON.toJson(banner, SavedBanner.class, writer);
+            }
+            writer.endArray();
+        } catch (IOException e) {
+            Files.deleteIfExists(temp);
+            throw e;
+        }
+        try {
+            Files.move(temp, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING);
+        }
+        Loombook.LOGGER.info("Exported {} banners to {} in {} ms", banners.size(), file,
+                (System.nanoTime() - start) / 1_000_000);
+    }
+}
@@ -0,0 +1,63 @@
+package dogwhale65.loombook.data;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Stable 64-bit fingerprint of a banner design: the base color and the ordered layers.
+ * Names, ids and timestamps are ignored, so two saves of the same design match.
+ */
+public final class BannerFingerprint {
+    private static final long FNV_OFFSET = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+
+    private BannerFingerprint() {
+    }
+
+    public static long of(SavedBanner banner) {
+        return of(banner.getBaseColor(), banner.getLayers());
+    }
+
+    public static long of(String baseColor, List<BannerPatternLayer> layers) {
+        long hash = FNV_OFFSET;
+        hash = mix(hash, canonicalColor(baseColor));
+        for (BannerPatternLayer layer : layers) {
+            hash = mix(hash, "|");
+            hash = mix(hash, canonicalPattern(layer.patternId()));
+            hash = mix(hash, "=");
+            hash = mix(hash, canonicalColor(layer.dyeColor()));
+        }
+        return finish(hash);
+    }
+
+    /**
+     * Pattern ids are namespaced, but older exports and commands may leave the namespace out.
+     */
+    static String canonicalPattern(String patternId) {
+        if (patternId == null) {
+            return "";
+        }
+        String id = patternId.trim().toLowerCase(Locale.ROOT);
+        return id.indexOf(':') >= 0 ? id : "minecraft:" + id;
+    }
+
+    private static String canonicalColor(String color) {
+        return color == null ? "white" : color.trim().toLowerCase(Locale.ROOT);
+    }
+
+    private static long mix(long hash, String value) {
+        for (byte b : value.getBytes(StandardCharsets.UTF_8)) {
+            hash ^= b & 0xFF;
+            hash *= FNV_PRIME;
+        }
+        return hash;
+    }
+
+    // FNV-1a diffuses poorly in the high bits, so finish with a SplitMix64 avalanche
+    static long finish(long hash) {
+        hash = (hash ^ (hash >>> 30)) * 0xbf58476d1ce4e5b9L;
+        hash = (hash ^ (hash >>> 27)) * 0x94d049bb133111ebL;
+        return hash ^ (hash >>> 31);
+    }
+}
@@ -0,0 +1,386 @@
+package dogwhale65.loombook.data;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * Hash indexes over one snapshot of the banner library: id lookup plus reverse indexes by
+ * base color, pattern id, layer dye color and design fingerprint. An index never changes
+ * once built, so it can be read from any thread without locking. Writers get an
+ * {@link Editor}, which copies only the shards and groups it touches. The pattern and dye
+ * indexes need every banner's layers, so they are only built on the first query that uses them.
+ */
+public final class BannerIndex {
+    public static final BannerIndex EMPTY = build(List.of());
+
+    // The id and fingerprint maps are split so an edit copies one shard, not the whole map
+    private static final int SHARDS = 256;
+
+    private final Map<String, SavedBanner>[] byId;
+    private final Map<Long, List<SavedBanner>>[] byFingerprint;
+    private final Map<String, List<SavedBanner>> byBaseColor;
+    // The banners this index covers, read once to build the layer indexes
+    private final List<SavedBanner> banners;
+    private volatile LayerIndexes layers;
+
+    private record LayerIndexes(Map<String, List<SavedBanner>> byPatternId,
+                                Map<String, List<SavedBanner>> byDyeColor) {
+    }
+
+    private BannerIndex(Map<String, SavedBanner>[] byId, Map<Long, List<SavedBanner>>[] byFingerprint,
+                        Map<String, List<SavedBanner>> byBaseColor, List<SavedBanner> banners,
+                        LayerIndexes layers) {
+        this.byId = byId;
+        this.byFingerprint = byFingerprint;
+        this.byBaseColor = byBaseColor;
+        this.banners = banners;
+        this.layers = layers;
+    }
+
+    @SuppressWarnings("unchecked")
+    public static BannerIndex build(List<SavedBanner> banners) {
+        Editor editor = new Editor(new BannerIndex(new Map[SHARDS], new Map[SHARDS], Map.of(), List.of(), null));
+        for (SavedBanner banner : banners) {
+            editor.add(banner);
+        }
+        return editor.build(banners);
+    }
+
+    /**
+     * Returns an editor whose changes end up in a new index, leaving this one as it is.
+     */
+    public Editor edit() {
+        return new Editor(this);
+    }
+
+    private LayerIndexes layers() {
+        LayerIndexes built = layers;
+        if (built == null) {
+            // Every thread that gets here builds the same result, so a race only costs time
+            Map<String, List<SavedBanner>> byPatternId = new HashMap<>();
+            Map<String, List<SavedBanner>> byDyeColor = new HashMap<>();
+            for (SavedBanner banner : banners) {
+                for (String patternId : patternIds(banner)) {
+                    addTo(byPatternId, patternId, banner);
+                }
+                for (String color : dyeColors(banner)) {
+                    addTo(byDyeColor, color, banner);
+                }
+            }
+            built = new LayerIndexes(byPatternId, byDyeColor);
+            layers = built;
+        }
+        return built;
+    }
+
+    public SavedBanner get(String id) {
+        Map<String, SavedBanner> shard = byId[shard(id)];
+        return shard != null ? shard.get(id) : null;
+    }
+
+    public boolean contains(String id) {
+        return get(id) != null;
+    }
+
+    /**
+     * Returns a banner with the same design, or null if there is none.
+     */
+    public SavedBanner findDuplicate(SavedBanner banner) {
+        return findDuplicate(byFingerprint, banner);
+    }
+
+    public List<SavedBanner> withBaseColor(String color) {
+        return lookup(byBaseColor, color);
+    }
+
+    public List<SavedBanner> withPattern(String patternId) {
+        return lookup(layers().byPatternId(), patternId);
+    }
+
+    public List<SavedBanner> withDyeColor(String color) {
+        return lookup(layers().byDyeColor(), color);
+    }
+
+    private static int shard(Object key) {
+        int hash = key.hashCode();
+        return (hash ^ (hash >>> 16)) & (SHARDS - 1);
+    }
+
+    private static SavedBanner findDuplicate(Map<Long, List<SavedBanner>>[] byFingerprint, SavedBanner banner) {
+        Long fingerprint = banner.getFingerprint();
+        Map<Long, List<SavedBanner>> shard = byFingerprint[shard(fingerprint)];
+        List<SavedBanner> matches = shard != null ? shard.get(fingerprint) : null;
+        if (matches == null) {
+            return null;
+        }
+        for (SavedBanner match : matches) {
+            if (match != banner) {
+                return match;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * The distinct pattern ids of a banner's layers, so a repeated pattern indexes it once.
+     */
+    private static Set<String> patternIds(SavedBanner banner) {
+        Set<String> ids = new LinkedHashSet<>();
+        for (BannerPatternLayer layer : banner.getLayers()) {
+            if (layer.patternId() != null) {
+                ids.add(layer.patternId());
+            }
+        }
+        return ids;
+    }
+
+    private static Set<String> dyeColors(SavedBanner banner) {
+        Set<String> colors = new LinkedHashSet<>();
+        for (BannerPatternLayer layer : banner.getLayers()) {
+            if (layer.dyeColor() != null) {
+                colors.add(layer.dyeColor());
+            }
+        }
+        return colors;
+    }
+
+    private static <K> void addTo(Map<K, List<SavedBanner>> index, K key, SavedBanner banner) {
+        if (key != null) {
+            index.computeIfAbsent(key, k -> new ArrayList<>()).add(banner);
+        }
+    }
+
+    private static List<SavedBanner> lookup(Map<String, List<SavedBanner>> index, String key) {
+        List<SavedBanner> group = index.get(key);
+        return group != null ? Collections.unmodifiableList(group) : List.of();
+    }
+
+    /**
+     * Collects changes to an index. Each shard and group is copied the first time it is
+     * changed, and the copies become part of the index returned by {@link #build}. Not
+     * thread-safe; {@link BannerStorage} uses it while holding its lock.
+     */
+    public static final class Editor {
+        private final Map<String, SavedBanner>[] byId;
+        private final Map<Long, List<SavedBanner>>[] byFingerprint;
+        private Map<String, List<SavedBanner>> byBaseColor;
+        private Map<String, List<SavedBanner>> byPatternId;
+        private Map<String, List<SavedBanner>> byDyeColor;
+        // Shards, maps and groups copied by this editor, which it may change in place
+        private final Set<Object> owned = Collections.newSetFromMap(new IdentityHashMap<>());
+
+        private Editor(BannerIndex source) {
+            this.byId = source.byId.clone();
+            this.byFingerprint = source.byFingerprint.clone();
+            this.byBaseColor = source.byBaseColor;
+            LayerIndexes layers = source.layers;
+            if (layers != null) {
+                this.byPatternId = layers.byPatternId();
+                this.byDyeColor = layers.byDyeColor();
+            }
+        }
+
+        public void add(SavedBanner banner) {
+            SavedBanner previous = idShard(banner.getId()).put(banner.getId(), banner);
+            if (previous == banner) {
+                return;
+            }
+            if (previous != null) {
+                removeSecondary(previous);
+            }
+            addSecondary(banner);
+        }
+
+        public void remove(SavedBanner banner) {
+            if (get(banner.getId()) == banner) {
+                idShard(banner.getId()).remove(banner.getId());
+            }
+            removeSecondary(banner);
+        }
+
+        /**
+         * Puts an edited copy in place of a banner. Groups that still hold it keep it at
+         * the same spot, so lookups stay in the order the banners were added.
+         */
+        public void replace(SavedBanner existing, SavedBanner replacement) {
+            if (!existing.getId().equals(replacement.getId()) || get(existing.getId()) != existing) {
+                remove(existing);
+                add(replacement);
+                return;
+            }
+            idShard(replacement.getId()).put(replacement.getId(), replacement);
+            byBaseColor = replaceIn(byBaseColor, existing.getBaseColor(), replacement.getBaseColor(),
+                    existing, replacement);
+            Long before = existing.getFingerprint();
+            Long after = replacement.getFingerprint();
+            if (before.equals(after)) {
+                replaceIn(fingerprintShard(before), before, after, existing, replacement);
+            } else {
+                removeFrom(fingerprintShard(before), before, existing);
+                addTo(fingerprintShard(after), after, replacement);
+            }
+            if (byPatternId != null) {
+                byPatternId = replaceLayers(byPatternId, patternIds(existing), patternIds(replacement),
+                        existing, replacement);
+                byDyeColor = replaceLayers(byDyeColor, dyeColors(existing), dyeColors(replacement),
+                        existing, replacement);
+            }
+        }
+
+        public SavedBanner get(String id) {
+            Map<String, SavedBanner> shard = byId[shard(id)];
+            return shard != null ? shard.get(id) : null;
+        }
+
+        public boolean contains(String id) {
+            return get(id) != null;
+        }
+
+        /**
+         * Returns a banner with the same design, or null if there is none.
+         */
+        public SavedBanner findDuplicate(SavedBanner banner) {
+            return BannerIndex.findDuplicate(byFingerprint, banner);
+        }
+
+        /**
+         * Returns the edited index for the given banners. The editor can keep going
+         * afterwards without changing the index it returned.
+         */
+        public BannerIndex build(List<SavedBanner> banners) {
+            owned.clear();
+            LayerIndexes layers = byPatternId != null ? new LayerIndexes(byPatternId, byDyeColor) : null;
+            return new BannerIndex(byId.clone(), byFingerprint.clone(), byBaseColor, banners, layers);
+        }
+
+        private void addSecondary(SavedBanner banner) {
+            byBaseColor = addTo(byBaseColor, banner.getBaseColor(), banner);
+            Long fingerprint = banner.getFingerprint();
+            addTo(fingerprintShard(fingerprint), fingerprint, banner);
+            if (byPatternId != null) {
+                for (String patternId : patternIds(banner)) {
+                    byPatternId = addTo(byPatternId, patternId, banner);
+                }
+                for (String color : dyeColors(banner)) {
+                    byDyeColor = addTo(byDyeColor, color, banner);
+                }
+            }
+        }
+
+        private void removeSecondary(SavedBanner banner) {
+            byBaseColor = removeFrom(byBaseColor, banner.getBaseColor(), banner);
+            Long fingerprint = banner.getFingerprint();
+            removeFrom(fingerprintShard(fingerprint), fingerprint, banner);
+            if (byPatternId != null) {
+                for (String patternId : patternIds(banner)) {
+                    byPatternId = removeFrom(byPatternId, patternId, banner);
+                }
+                for (String color : dyeColors(banner)) {
+                    byDyeColor = removeFrom(byDyeColor, color, banner);
+                }
+            }
+        }
+
+        private Map<String, SavedBanner> idShard(String id) {
+            int shard = shard(id);
+            byId[shard] = own(byId[shard]);
+            return byId[shard];
+        }
+
+        private Map<Long, List<SavedBanner>> fingerprintShard(Long fingerprint) {
+            int shard = shard(fingerprint);
+            byFingerprint[shard] = own(byFingerprint[shard]);
+            return byFingerprint[shard];
+        }
+
+        private <K, V> Map<K, V> own(Map<K, V> map) {
+            if (map != null && owned.contains(map)) {
+                return map;
+            }
+            Map<K, V> copy = map != null ? new HashMap<>(map) : new HashMap<>();
+            owned.add(copy);
+            return copy;
+        }
+
+        private <K> Map<K, List<SavedBanner>> addTo(Map<K, List<SavedBanner>> index, K key, SavedBanner banner) {
+            if (key == null) {
+                return index;
+            }
+            index = own(index);
+            index.put(key, ownGroup(index.get(key)));
+            index.get(key).add(banner);
+            return index;
+        }
+
+        private <K> Map<K, List<SavedBanner>> removeFrom(Map<K, List<SavedBanner>> index, K key, SavedBanner banner) {
+            if (key == null || !containsBanner(index.get(key), banner)) {
+                return index;
+            }
+            index = own(index);
+            List<SavedBanner> group = ownGroup(index.get(key));
+            group.removeIf(member -> member == banner);
+            if (group.isEmpty()) {
+                index.remove(key);
+            } else {
+                index.put(key, group);
+            }
+            return index;
+        }
+
+        private <K> Map<K, List<SavedBanner>> replaceIn(Map<K, List<SavedBanner>> index, K before, K after,
+                                                        SavedBanner existing, SavedBanner replacement) {
+            if (!Objects.equals(before, after) || !containsBanner(index.get(before), existing)) {
+                index = removeFrom(index, before, existing);
+                return addTo(index, after, replacement);
+            }
+            index = own(index);
+            List<SavedBanner> group = ownGroup(index.get(before));
+            group.replaceAll(member -> member == existing ? replacement : member);
+            index.put(before, group);
+            return index;
+        }
+
+        private Map<String, List<SavedBanner>> replaceLayers(Map<String, List<SavedBanner>> index,
+                                                             Set<String> before, Set<String> after,
+                                                             SavedBanner existing, SavedBanner replacement) {
+            for (String key : before) {
+                index = after.contains(key)
+                        ? replaceIn(index, key, key, existing, replacement)
+                        : removeFrom(index, key, existing);
+            }
+            for (String key : after) {
+                if (!before.contains(key)) {
+                    index = addTo(index, key, replacement);
+                }
+            }
+            return index;
+        }
+
+        private List<SavedBanner> ownGroup(List<SavedBanner> group) {
+            if (group != null && owned.contains(group)) {
+                return group;
+            }
+            List<SavedBanner> copy = group != null ? new ArrayList<>(group) : new ArrayList<>();
+            owned.add(copy);
+            return copy;
+        }
+
+        private static boolean containsBanner(List<SavedBanner> group, SavedBanner banner) {
+            if (group != null) {
+                for (SavedBanner member : group) {
+                    if (member == banner) {
+                        return true;
+                    }
+                }
+            }
+            return false;
+        }
+    }
+}
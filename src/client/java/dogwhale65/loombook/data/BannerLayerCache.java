@@ -0,0 +1,36 @@
+package dogwhale65.loombook.data;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
+
+/**
+ * Bounded least-recently-used cache of hydrated layer lists, keyed by banner id.
+ * Keeps memory flat for lazily loaded libraries no matter how many designs are previewed.
+ */
+public class BannerLayerCache {
+    private final Map<String, List<BannerPatternLayer>> entries;
+
+    public BannerLayerCache(int capacity) {
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, List<BannerPatternLayer>> eldest) {
+                return size() > capacity;
+            }
+        };
+    }
+
+    public synchronized List<BannerPatternLayer> get(String key, Supplier<List<BannerPatternLayer>> loader) {
+        List<BannerPatternLayer> layers = entries.get(key);
+        if (layers == null) {
+            layers = List.copyOf(loader.get());
+            entries.put(key, layers);
+        }
+        return layers;
+    }
+
+    public synchronized void invalidate(String key) {
+        entries.remove(key);
+    }
+}
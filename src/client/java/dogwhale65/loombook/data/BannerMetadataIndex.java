@@ -0,0 +1,135 @@
+package dogwhale65.loombook.data;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonParseException;
+import dogwhale65.loombook.Loombook;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Lightweight index of the per-file banner directory: everything the side panel needs
+ * (id, name, base color, layer count) plus the design fingerprint, keyed by file name
+ * and stamped with each file's size and modification time. Entries whose stamp no
+ * longer matches the file are ignored and the file is read in full instead.
+ */
+public final class BannerMetadataIndex {
+    public static final String INDEX_FILE = "library.index";
+
+    private static final Gson GSON = new Gson();
+    private static final int VERSION = 2;
+
+    private BannerMetadataIndex() {
+    }
+
+    /**
+     * One indexed banner file.
+     */
+    public static class Entry {
+        String file;
+        long size;
+        long modified;
+        String id;
+        String name;
+        String baseColor;
+        int layerCount;
+        long createdAt;
+        long fingerprint;
+        long revision;
+
+        boolean matches(BasicFileAttributes attributes) {
+            return size == attributes.size() && modified == attributes.lastModifiedTime().toMillis();
+        }
+
+        /**
+         * Builds a banner whose layers are only read when something asks for them.
+         */
+        SavedBanner toBanner(LazyLayerList layers) {
+            SavedBanner banner = new SavedBanner();
+            banner.setId(id);
+            banner.setName(name);
+            banner.setBaseColor(baseColor);
+            banner.setCreatedAt(createdAt);
+            banner.setLayers(layers);
+            banner.setKnownFingerprint(fingerprint);
+            banner.setRevision(revision);
+            return banner;
+        }
+
+        static Entry of(String file, long size, long modified, SavedBanner banner) {
+            Entry entry = new Entry();
+            entry.file = file;
+            entry.size = size;
+            entry.modified = modified;
+            entry.id = banner.getId();
+            entry.name = banner.getName();
+            entry.baseColor = banner.getBaseColor();
+            // Lazy layer lists know their size without being read
+            entry.layerCount = banner.getLayers().size();
+            entry.createdAt = banner.getCreatedAt();
+            entry.fingerprint = banner.getFingerprint();
+            entry.revision = banner.getRevision();
+            return entry;
+        }
+    }
+
+    private static class IndexFile {
+        int version;
+        List<Entry> entries;
+    }
+
+    /**
+     * Reads the index, keyed by file name. Returns an empty map if it is missing or unreadable.
+     */
+    public static Map<String, Entry> read(Path indexFile) {
+        Map<String, Entry> entries = new HashMap<>();
+        if (!Files.exists(indexFile)) {
+            return entries;
+        }
+        try (Reader reader = Files.newBufferedReader(indexFile)) {
+            IndexFile index = GSON.fromJson(reader, IndexFile.class);
+            if (index != null && index.version == VERSION && index.entries != null) {
+                for (Entry entry : index.entries) {
+                    if (entry.file != null && entry.id != null) {
+                        entries.put(entry.file, entry);
+                    }
+                }
+            }
+        } catch (IOException | JsonParseException e) {
+            Loombook.LOGGER.warn("Ignoring unreadable banner metadata index {}", indexFile, e);
+        }
+        return entries;
+    }
+
+    public static void write(Path indexFile, List<Entry> entries) {
+        IndexFile index = new IndexFile();
+        index.version = VERSION;
+        index.entries = new ArrayList<>(entries);
+
+        Path temp = indexFile.resolveSibling(INDEX_FILE + ".tmp");
+        try {
+            Files.createDirectories(indexFile.getParent());
+            try (Writer writer = Files.newBufferedWriter(temp)) {
+                GSON.toJson(index, writer);
+            }
+            try {
+                Files.move(temp, indexFile, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp, indexFile, StandardCopyOption.REPLACE_EXISTING);
+            }
+            Loombook.LOGGER.debug("Wrote banner metadata index with {} entries", entries.size());
+        } catch (IOException e) {
+            Loombook.LOGGER.error("Failed to write banner metadata index", e);
+        }
+    }
+}
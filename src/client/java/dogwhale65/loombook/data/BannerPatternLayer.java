@@ -4,14 +4,19 @@ import net.minecraft.util.DyeColor;
 
 /**
  * Represents a single pattern layer on a banner.
- * Stores the pattern identifier and dye color used.
+ * Stores the pattern identifier and dye color used, both interned through {@link BannerSymbols}.
  */
 public record BannerPatternLayer(
     String patternId,
     String dyeColor
 ) {
+    public BannerPatternLayer {
+        patternId = BannerSymbols.pattern(patternId);
+        dyeColor = BannerSymbols.color(dyeColor);
+    }
+
     public DyeColor getDyeColorEnum() {
-        return DyeColor.byId(dyeColor, DyeColor.WHITE);
+        return BannerSymbols.dyeColor(dyeColor);
     }
 
     public static BannerPatternLayer of(String patternId, DyeColor color) {
@@ -0,0 +1,193 @@
+package dogwhale65.loombook.data;
+
+import net.minecraft.util.DyeColor;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Short text codes for sharing a banner design in chat, e.g. {@code LBAQ4BGwRGbGFn}.
+ * After the {@code LB} prefix comes base64url of: the pattern table version, the base
+ * color, the layer count, and per layer the pattern's table index and color packed
+ * into one varint, then the name's UTF-8 length and bytes. Patterns missing from the
+ * table, such as modded ones, are written out as their id after index 0. Ids and
+ * timestamps are left out, so a decoded banner is new to the library.
+ */
+public final class BannerShareCode {
+    public static final String PREFIX = "LB";
+
+    /**
+     * Vanilla banner patterns. Only ever append to this table, and bump
+     * {@link #TABLE_VERSION} when doing so, so codes made earlier keep decoding.
+     */
+    private static final String[] PATTERNS = {
+            "base", "square_bottom_left", "square_bottom_right", "square_top_left", "square_top_right",
+            "stripe_bottom", "stripe_top", "stripe_left", "stripe_right", "stripe_center", "stripe_middle",
+            "stripe_downright", "stripe_downleft", "small_stripes", "cross", "straight_cross",
+            "triangle_bottom", "triangle_top", "triangles_bottom", "triangles_top", "diagonal_left",
+            "diagonal_up_right", "diagonal_up_left", "diagonal_right", "circle", "rhombus", "half_vertical",
+            "half_horizontal", "half_vertical_right", "half_horizontal_bottom", "border", "curly_border",
+            "gradient", "gradient_up", "bricks", "globe", "creeper", "skull", "flower", "mojang", "piglin",
+            "flow", "guster"
+    };
+    private static final int TABLE_VERSION = 1;
+    private static final Map<String, Integer> PATTERN_INDEX = new HashMap<>();
+    private static final DyeColor[] COLORS = DyeColor.values();
+
+    static {
+        for (int i = 0; i < PATTERNS.length; i++) {
+            // Index 0 marks a pattern written out by id
+            PATTERN_INDEX.put("minecraft:" + PATTERNS[i], i + 1);
+        }
+    }
+
+    private BannerShareCode() {
+    }
+
+    /**
+     * Returns true if the text looks like a share code. It may still fail to decode.
+     */
+    public static boolean isShareCode(String text) {
+        if (text.length() <= PREFIX.length() || !text.startsWith(PREFIX)) {
+            return false;
+        }
+        for (int i = PREFIX.length(); i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (!(c >= 'A' && c <= 'Z') && !(c >= 'a' && c <= 'z') && !(c >= '0' && c <= '9') && c != '-' && c != '_') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public static String encode(SavedBanner banner) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(32);
+        writeVarInt(out, TABLE_VERSION);
+        writeVarInt(out, BannerSymbols.dyeColor(banner.getBaseColor()).ordinal());
+        List<BannerPatternLayer> layers = banner.getLayers();
+        writeVarInt(out, layers.size());
+        for (BannerPatternLayer layer : layers) {
+            String patternId = BannerFingerprint.canonicalPattern(layer.patternId());
+            int index = PATTERN_INDEX.getOrDefault(patternId, 0);
+            writeVarInt(out, index << 4 | layer.getDyeColorEnum().ordinal());
+            if (index == 0) {
+                writeString(out, patternId);
+            }
+        }
+        writeString(out, banner.getName() != null ? banner.getName() : "");
+        return PREFIX + Base64.getUrlEncoder().withoutPadding().encodeToString(out.toByteArray());
+    }
+
+    /**
+     * Decodes a share code into a new banner.
+     *
+     * @throws IllegalArgumentException if the code is malformed or from a newer version
+     */
+    public static SavedBanner decode(String code) {
+        if (!isShareCode(code)) {
+            throw new IllegalArgumentException("Not a share code");
+        }
+        byte[] data;
+        try {
+            data = Base64.getUrlDecoder().decode(code.substring(PREFIX.length()));
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Share code is cut short");
+        }
+        Reader in = new Reader(data);
+        int version = in.readVarInt();
+        if (version < 1 || version > TABLE_VERSION) {
+            throw new IllegalArgumentException("Share code was made by a newer version of Loombook");
+        }
+        DyeColor baseColor = in.readColor();
+        int count = in.readVarInt();
+        // Every layer takes at least one byte, so a corrupt count can't allocate much
+        List<BannerPatternLayer> layers = new ArrayList<>(Math.min(count, in.remaining()));
+        for (int i = 0; i < count; i++) {
+            int packed = in.readVarInt();
+            int index = packed >>> 4;
+            DyeColor color = color(packed & 0xF);
+            String patternId;
+            if (index == 0) {
+                patternId = in.readString();
+            } else if (index <= PATTERNS.length) {
+                patternId = "minecraft:" + PATTERNS[index - 1];
+            } else {
+                throw new IllegalArgumentException("Unknown pattern " + index);
+            }
+            layers.add(BannerPatternLayer.of(patternId, color));
+        }
+        String name = in.readString();
+        if (in.remaining() > 0) {
+            throw new IllegalArgumentException("Trailing data in share code");
+        }
+        return new SavedBanner(name.isEmpty() ? null : name, baseColor, layers);
+    }
+
+    private static DyeColor color(int index) {
+        if (index < 0 || index >= COLORS.length) {
+            throw new IllegalArgumentException("Unknown color " + index);
+        }
+        return COLORS[index];
+    }
+
+    private static void writeVarInt(ByteArrayOutputStream out, int value) {
+        while ((value & ~0x7F) != 0) {
+            out.write((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.write(value);
+    }
+
+    private static void writeString(ByteArrayOutputStream out, String value) {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        writeVarInt(out, bytes.length);
+        out.write(bytes, 0, bytes.length);
+    }
+
+    private static final class Reader {
+        private final byte[] data;
+        private int pos;
+
+        Reader(byte[] data) {
+            this.data = data;
+        }
+
+        int remaining() {
+            return data.length - pos;
+        }
+
+        int readVarInt() {
+            int value = 0;
+            for (int shift = 0; shift < 32; shift += 7) {
+                if (pos >= data.length) {
+                    throw new IllegalArgumentException("Share code is cut short");
+                }
+                byte b = data[pos++];
+                value |= (b & 0x7F) << shift;
+                if ((b & 0x80) == 0) {
+                    return value;
+                }
+            }
+            throw new IllegalArgumentException("Malformed number in share code");
+        }
+
+        DyeColor readColor() {
+            return color(readVarInt());
+        }
+
+        String readString() {
+            int length = readVarInt();
+            if (length < 0 || length > remaining()) {
+                throw new IllegalArgumentException("Share code is cut short");
+            }
+            String value = new String(data, pos, length, StandardCharsets.UTF_8);
+            pos += length;
+            return value;
+        }
+    }
+}
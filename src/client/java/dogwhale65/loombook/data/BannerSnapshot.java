@@ -0,0 +1,356 @@
+package dogwhale65.loombook.data;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.RandomAccess;
+import java.util.Set;
+
+/**
+ * Immutable version of the banner library that can be read from any thread without locking.
+ * The banners are split into small chunks, and every edit returns a new snapshot that
+ * shares all chunks except the one it touched, so publishing a change costs a chunk copy
+ * plus the chunk table instead of a copy of the whole library. Chunks taken over from a
+ * backend list are views into it, so lazily decoded lists stay lazy.
+ */
+public final class BannerSnapshot extends AbstractList<SavedBanner> implements RandomAccess {
+    public static final BannerSnapshot EMPTY = of(List.of());
+
+    private static final int CHUNK_SIZE = 32;
+    // Chunks grow by inserts until they are split in two
+    private static final int MAX_CHUNK_SIZE = CHUNK_SIZE * 2;
+    // Spacing of chunk keys, leaving room for the keys of chunks split off in between
+    private static final long KEY_GAP = 1L << 32;
+    // The locator is split so an edit copies the shards it touches, not the whole map
+    private static final int SHARDS = 256;
+
+    private final List<SavedBanner>[] chunks;
+    // Index of the first banner of each chunk
+    private final int[] starts;
+    // Ascending key of each chunk. An edited chunk keeps its key, so the locator only
+    // changes for banners that enter the library or move to another chunk.
+    private final long[] keys;
+    private final int size;
+    // Key of the chunk holding each banner, by identity, so indexOf needs no scan.
+    // Built on the first indexOf and then carried over by every edit.
+    private volatile Map<SavedBanner, Long>[] locator;
+
+    private BannerSnapshot(List<SavedBanner>[] chunks, long[] keys, Map<SavedBanner, Long>[] locator) {
+        this.chunks = chunks;
+        this.keys = keys;
+        this.starts = new int[chunks.length];
+        int size = 0;
+        for (int i = 0; i < chunks.length; i++) {
+            starts[i] = size;
+            size += chunks[i].size();
+        }
+        this.size = size;
+        this.locator = locator;
+    }
+
+    /**
+     * Wraps a list that nobody modifies any more.
+     */
+    @SuppressWarnings("unchecked")
+    public static BannerSnapshot of(List<SavedBanner> banners) {
+        if (banners instanceof BannerSnapshot snapshot) {
+            return snapshot;
+        }
+        int count = (banners.size() + CHUNK_SIZE - 1) / CHUNK_SIZE;
+        List<SavedBanner>[] chunks = new List[count];
+        long[] keys = new long[count];
+        for (int i = 0; i < count; i++) {
+            chunks[i] = banners.subList(i * CHUNK_SIZE, Math.min((i + 1) * CHUNK_SIZE, banners.size()));
+            keys[i] = i * KEY_GAP;
+        }
+        // Locating banners would decode every record, so it waits for the first indexOf
+        return new BannerSnapshot(chunks, keys, null);
+    }
+
+    private int chunkOf(int index) {
+        int chunk = Arrays.binarySearch(starts, index);
+        // Empty chunks never exist, so starts has no duplicates
+        return chunk >= 0 ? chunk : -chunk - 2;
+    }
+
+    @Override
+    public SavedBanner get(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException(index);
+        }
+        int chunk = chunkOf(index);
+        return chunks[chunk].get(index - starts[chunk]);
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Returns the position of the banner, compared by identity, or -1. Looks up its chunk
+     * instead of scanning the library.
+     */
+    @Override
+    public int indexOf(Object o) {
+        if (!(o instanceof SavedBanner banner)) {
+            return -1;
+        }
+        Map<SavedBanner, Long> shard = locator()[shard(banner)];
+        Long key = shard != null ? shard.get(banner) : null;
+        int chunk = key != null ? Arrays.binarySearch(keys, key) : -1;
+        if (chunk < 0) {
+            return -1;
+        }
+        List<SavedBanner> members = chunks[chunk];
+        for (int i = 0; i < members.size(); i++) {
+            if (members.get(i) == banner) {
+                return starts[chunk] + i;
+            }
+        }
+        return -1;
+    }
+
+    @Override
+    public int lastIndexOf(Object o) {
+        // Banners are never in the library twice
+        return indexOf(o);
+    }
+
+    @SuppressWarnings("unchecked")
+    private Map<SavedBanner, Long>[] locator() {
+        Map<SavedBanner, Long>[] built = locator;
+        if (built == null) {
+            // Every thread that gets here builds the same result, so a race only costs time
+            built = new Map[SHARDS];
+            for (int chunk = 0; chunk < chunks.length; chunk++) {
+                for (SavedBanner banner : chunks[chunk]) {
+                    int shard = shard(banner);
+                    if (built[shard] == null) {
+                        built[shard] = new IdentityHashMap<>();
+                    }
+                    built[shard].put(banner, keys[chunk]);
+                }
+            }
+            locator = built;
+        }
+        return built;
+    }
+
+    private static int shard(SavedBanner banner) {
+        int hash = System.identityHashCode(banner);
+        return (hash ^ (hash >>> 16)) & (SHARDS - 1);
+    }
+
+    public BannerSnapshot withAdded(SavedBanner banner) {
+        return withInserted(size, banner);
+    }
+
+    /**
+     * Appends many banners with one rebuild of the chunk table.
+     */
+    public BannerSnapshot withAddedAll(List<SavedBanner> added) {
+        if (added.isEmpty()) {
+            return this;
+        }
+        Edit edit = new Edit();
+        int from = 0;
+        if (!edit.chunks.isEmpty() && chunks[chunks.length - 1].size() < CHUNK_SIZE) {
+            // Top up the last chunk first
+            List<SavedBanner> last = new ArrayList<>(chunks[chunks.length - 1]);
+            from = Math.min(added.size(), CHUNK_SIZE - last.size());
+            last.addAll(added.subList(0, from));
+            edit.set(chunks.length - 1, last, added.subList(0, from));
+        }
+        for (; from < added.size(); from += CHUNK_SIZE) {
+            edit.insert(edit.chunks.size(), added.subList(from, Math.min(from + CHUNK_SIZE, added.size())));
+        }
+        return edit.build();
+    }
+
+    public BannerSnapshot withInserted(int index, SavedBanner banner) {
+        if (index < 0 || index > size) {
+            throw new IndexOutOfBoundsException(index);
+        }
+        Edit edit = new Edit();
+        if (chunks.length == 0) {
+            edit.insert(0, List.of(banner));
+            return edit.build();
+        }
+
+        // Appending fills the last chunk, or starts a new one once it is full
+        int chunk = index == size ? chunks.length - 1 : chunkOf(index);
+        List<SavedBanner> edited = new ArrayList<>(chunks[chunk]);
+        if (index == size && edited.size() >= CHUNK_SIZE) {
+            edit.insert(chunks.length, List.of(banner));
+            return edit.build();
+        }
+        edited.add(index - starts[chunk], banner);
+        if (edited.size() > MAX_CHUNK_SIZE) {
+            int half = edited.size() / 2;
+            edit.set(chunk, edited.subList(0, half), List.of(banner));
+            edit.insert(chunk + 1, edited.subList(half, edited.size()));
+        } else {
+            edit.set(chunk, edited, List.of(banner));
+        }
+        return edit.build();
+    }
+
+    public BannerSnapshot withSet(int index, SavedBanner banner) {
+        int chunk = chunkOf(index);
+        List<SavedBanner> edited = new ArrayList<>(chunks[chunk]);
+        SavedBanner previous = edited.set(index - starts[chunk], banner);
+        Edit edit = new Edit();
+        edit.unlocate(previous);
+        edit.set(chunk, edited, List.of(banner));
+        return edit.build();
+    }
+
+    public BannerSnapshot withRemoved(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException(index);
+        }
+        int chunk = chunkOf(index);
+        List<SavedBanner> edited = new ArrayList<>(chunks[chunk]);
+        Edit edit = new Edit();
+        edit.unlocate(edited.remove(index - starts[chunk]));
+        edit.set(chunk, edited, List.of());
+        return edit.build();
+    }
+
+    /**
+     * Removes every banner in the set (compared by identity) in one pass. Untouched chunks are shared.
+     */
+    public BannerSnapshot withoutAll(Set<SavedBanner> removed) {
+        Edit edit = new Edit();
+        boolean changed = false;
+        // Backwards, so removing an emptied chunk leaves the positions still to visit alone
+        for (int chunk = chunks.length - 1; chunk >= 0; chunk--) {
+            List<SavedBanner> members = chunks[chunk];
+            List<SavedBanner> remaining = null;
+            for (int i = 0; i < members.size(); i++) {
+                SavedBanner banner = members.get(i);
+                if (removed.contains(banner)) {
+                    if (remaining == null) {
+                        remaining = new ArrayList<>(members.subList(0, i));
+                    }
+                    edit.unlocate(banner);
+                    changed = true;
+                } else if (remaining != null) {
+                    remaining.add(banner);
+                }
+            }
+            if (remaining != null) {
+                edit.set(chunk, remaining, List.of());
+            }
+        }
+        return changed ? edit.build() : this;
+    }
+
+    private static List<SavedBanner> freeze(List<SavedBanner> banners) {
+        return Collections.unmodifiableList(new ArrayList<>(banners));
+    }
+
+    /**
+     * One edit of the chunk table. Keeps the keys ascending and, when this snapshot has a
+     * locator, updates a copy of it for the banners that moved.
+     */
+    private final class Edit {
+        private final List<List<SavedBanner>> chunks = new ArrayList<>(Arrays.asList(BannerSnapshot.this.chunks));
+        private final List<Long> keys = new ArrayList<>(keys(BannerSnapshot.this.keys));
+        private Map<SavedBanner, Long>[] locator;
+        private final boolean[] copied;
+
+        private Edit() {
+            Map<SavedBanner, Long>[] source = BannerSnapshot.this.locator;
+            this.locator = source != null ? source.clone() : null;
+            this.copied = new boolean[SHARDS];
+        }
+
+        private static List<Long> keys(long[] keys) {
+            List<Long> list = new ArrayList<>(keys.length);
+            for (long key : keys) {
+                list.add(key);
+            }
+            return list;
+        }
+
+        /**
+         * Replaces the chunk at a position, keeping its key, and locates the banners that
+         * joined it. An empty chunk is dropped.
+         */
+        void set(int chunk, List<SavedBanner> banners, List<SavedBanner> joined) {
+            if (banners.isEmpty()) {
+                chunks.remove(chunk);
+                keys.remove(chunk);
+                return;
+            }
+            chunks.set(chunk, freeze(banners));
+            for (SavedBanner banner : joined) {
+                locate(banner, keys.get(chunk));
+            }
+        }
+
+        /**
+         * Inserts a new chunk with a key between its neighbours' and locates its banners.
+         */
+        void insert(int chunk, List<SavedBanner> banners) {
+            long before = chunk > 0 ? keys.get(chunk - 1) : -KEY_GAP;
+            long after = chunk < keys.size() ? keys.get(chunk) : before + 2 * KEY_GAP;
+            long key = before + (after - before) / 2;
+            chunks.add(chunk, freeze(banners));
+            if (key == before) {
+                // No room left between the neighbours: space every key out again
+                keys.add(chunk, key);
+                renumber();
+                return;
+            }
+            keys.add(chunk, key);
+            for (SavedBanner banner : banners) {
+                locate(banner, key);
+            }
+        }
+
+        void unlocate(SavedBanner banner) {
+            if (locator != null) {
+                shard(banner).remove(banner);
+            }
+        }
+
+        private void locate(SavedBanner banner, long key) {
+            if (locator != null) {
+                shard(banner).put(banner, key);
+            }
+        }
+
+        private Map<SavedBanner, Long> shard(SavedBanner banner) {
+            int shard = BannerSnapshot.shard(banner);
+            if (!copied[shard]) {
+                locator[shard] = locator[shard] != null ? new IdentityHashMap<>(locator[shard]) : new IdentityHashMap<>();
+                copied[shard] = true;
+            }
+            return locator[shard];
+        }
+
+        private void renumber() {
+            for (int i = 0; i < keys.size(); i++) {
+                keys.set(i, i * KEY_GAP);
+            }
+            // Every banner's key changed; the next indexOf locates them again
+            locator = null;
+        }
+
+        @SuppressWarnings("unchecked")
+        BannerSnapshot build() {
+            long[] keyArray = new long[keys.size()];
+            for (int i = 0; i < keyArray.length; i++) {
+                keyArray[i] = keys.get(i);
+            }
+            return new BannerSnapshot(chunks.toArray(new List[0]), keyArray, locator);
+        }
+    }
+}
@@ -4,27 +4,37 @@ import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
 import com.google.gson.JsonArray;
 import com.google.gson.JsonElement;
-import com.google.gson.JsonObject;
 import com.google.gson.reflect.TypeToken;
 import dogwhale65.loombook.Loombook;
-import dogwhale65.loombook.data.BannerPatternLayer;
-import net.fabricmc.loader.api.FabricLoader;
+import dogwhale65.loombook.config.LoombookConfig;
+import net.minecraft.client.MinecraftClient;
 import net.minecraft.util.DyeColor;
 
 import java.io.IOException;
-import java.io.Reader;
-import java.io.Writer;
+import java.io.UncheckedIOException;
 import java.lang.reflect.Type;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
 import java.util.List;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
 
 /**
  * Manages persistence of saved banner patterns to a JSON file.
+ * One instance holds the active collection; other collections stay on disk until
+ * switched to with {@link #switchCollection(String)}.
  */
 public class BannerStorage {
     private static final Gson GSON = new GsonBuilder()
@@ -32,47 +42,452 @@ public class BannerStorage {
             .create();
 
     private static BannerStorage instance;
+    // Shared by every collection, so listeners survive a collection switch
+    private static final List<LibraryListener> LISTENERS = new CopyOnWriteArrayList<>();
+    private static final AtomicLong VERSION = new AtomicLong();
+    // Held while a change set gets its version and is queued, so queue order is version order
+    private static final Object DELIVERY_LOCK = new Object();
+    // Collections closed by a switch finish writing in the background; loading waits for them
+    private static volatile CompletableFuture<Void> closing = CompletableFuture.completedFuture(null);
 
+    private final String collection;
     private final Path configPath;
-    private List<SavedBanner> banners = new ArrayList<>();
+    private final BannerBackend backend;
+    private final WriteBehindPersister persister;
+    private final BackupManager backups;
+    private final OperationLog operations;
+    // Immutable; writers publish a new version while holding the lock, readers never lock
+    private final AtomicReference<Library> library =
+            new AtomicReference<>(new Library(BannerSnapshot.EMPTY, BannerIndex.EMPTY));
+    private BannerDirectoryWatcher watcher;
+    private volatile boolean loaded = false;
+    private volatile boolean closed = false;
+    private CompletableFuture<Void> loadFuture;
+    // Changes not yet handed to listeners; held back while a transaction or undo runs
+    private final List<LibraryChange> pendingChanges = new ArrayList<>();
+    private int changeHolds = 0;
 
-    public BannerStorage() {
-        this.configPath = FabricLoader.getInstance()
-                .getConfigDir()
-                .resolve("loombook")
-                .resolve("banners");
+    /**
+     * The banners and their index, published together so a reader always gets an index
+     * that matches the snapshot. The index is null until the first lookup after a load.
+     */
+    private record Library(BannerSnapshot banners, BannerIndex index) {
+    }
+
+    /**
+     * Edits to the library made while holding the lock, published in one step so readers
+     * see all of them or none.
+     */
+    private final class Draft {
+        private BannerSnapshot banners = banners();
+        private final BannerIndex.Editor index = index().edit();
+
+        private void publish() {
+            library.set(new Library(banners, index.build(banners)));
+        }
+    }
+
+    public BannerStorage(String collection) {
+        this.collection = collection;
+        this.configPath = BannerCollections.getDirectory(collection);
+        this.backend = createBackend(configPath);
+        this.persister = new WriteBehindPersister(backend, LibraryLock.forCollection(configPath));
+        if (backend instanceof DirectoryBannerBackend directoryBackend) {
+            // Edits merged with another instance's come back like external changes
+            directoryBackend.setMergeListener(externalChanges(), MinecraftClient.getInstance());
+        }
+        this.backups = new BackupManager(configPath.resolveSibling("backups"), this::getBanners,
+                LoombookConfig.getInstance().getBackupRetention());
+        this.operations = new OperationLog(LoombookConfig.getInstance().getUndoLimit());
     }
 
     public static BannerStorage getInstance() {
         if (instance == null) {
-            instance = new BannerStorage();
+            String active = LoombookConfig.getInstance().getActiveCollection();
+            if (!BannerCollections.list().contains(active)) {
+                active = BannerCollections.DEFAULT;
+            }
+            instance = new BannerStorage(active);
         }
         return instance;
     }
 
+    /**
+     * Makes another collection the active one. The current collection is flushed and
+     * released, and the new one is loaded the same way the library is loaded at startup.
+     */
+    public static BannerStorage switchCollection(String name) {
+        BannerStorage current = getInstance();
+        if (current.collection.equals(name)) {
+            return current;
+        }
+        closeInBackground(current);
+
+        BannerCollections.create(name);
+        LoombookConfig.getInstance().setActiveCollection(name);
+        open(name);
+        Loombook.LOGGER.info("Switched to banner collection '{}'", name);
+        return instance;
+    }
+
+    /**
+     * Flushes and releases a collection without holding up the client thread. Collections
+     * opened afterwards wait for this before reading their files.
+     */
+    private static void closeInBackground(BannerStorage storage) {
+        // Stop handing its changes to listeners right away
+        storage.closed = true;
+        closing = closing
+                .thenRunAsync(storage::close, BackgroundTasks.executor())
+                .exceptionally(e -> {
+                    Loombook.LOGGER.error("Failed to close banner collection '{}'", storage.collection, e);
+                    return null;
+                });
+    }
+
+    /**
+     * Closes the active collection and waits for collections closed earlier to finish
+     * writing. Called when the client stops.
+     */
+    public static void shutdown() {
+        if (instance != null) {
+            instance.close();
+        }
+        closing.join();
+    }
+
+    private static void open(String name) {
+        instance = new BannerStorage(name);
+        if (LoombookConfig.getInstance().isAsyncLoad()) {
+            instance.loadAsync();
+        } else {
+            instance.load();
+        }
+    }
+
+    /**
+     * Checks the active collection's banner files in the background. Returns null when the
+     * collection doesn't use the per-file store, whose files are what the scanner checks.
+     */
+    public CompletableFuture<IntegrityScanner.Report> checkIntegrity() {
+        if (!(backend instanceof DirectoryBannerBackend)) {
+            return null;
+        }
+        return createScanner().scanAsync();
+    }
+
+    private IntegrityScanner createScanner() {
+        return new IntegrityScanner(configPath, configPath.resolveSibling("quarantine"));
+    }
+
+    /**
+     * Repairs or quarantines the given issues in the background and reloads the collection
+     * from disk. The collection is closed first so no queued write races the repair, and the
+     * reloaded one waits for the repair before reading its files.
+     */
+    public static CompletableFuture<Void> resolveIntegrityIssues(List<IntegrityIssue> issues, boolean quarantine) {
+        BannerStorage current = getInstance();
+        current.closed = true;
+        IntegrityScanner scanner = current.createScanner();
+        CompletableFuture<Void> resolved = closing.thenRunAsync(() -> {
+            current.close();
+            if (quarantine) {
+                scanner.quarantine(issues);
+            } else {
+                scanner.repair(issues);
+            }
+        }, BackgroundTasks.executor());
+        closing = resolved.exceptionally(e -> {
+            Loombook.LOGGER.error("Failed to resolve integrity issues in '{}'", current.collection, e);
+            return null;
+        });
+        // Always loaded in the background, since loading has to wait for the repair
+        instance = new BannerStorage(current.collection);
+        instance.loadAsync();
+        return resolved;
+    }
+
+    public String getCollection() {
+        return collection;
+    }
+
+    /**
+     * Registers a listener for library changes in whichever collection is active.
+     */
+    public static void addListener(LibraryListener listener) {
+        LISTENERS.add(listener);
+    }
+
+    public static void removeListener(LibraryListener listener) {
+        LISTENERS.remove(listener);
+    }
+
+    /**
+     * Returns the version of the latest change set handed out to listeners.
+     */
+    public static long getVersion() {
+        return VERSION.get();
+    }
+
+    private synchronized void recordChange(LibraryChange.Type type, SavedBanner banner) {
+        pendingChanges.add(LibraryChange.of(type, banner));
+    }
+
+    private synchronized void recordChange(LibraryChange change) {
+        pendingChanges.add(change);
+    }
+
+    private synchronized void holdChanges() {
+        changeHolds++;
+    }
+
+    private void releaseChanges() {
+        synchronized (this) {
+            changeHolds--;
+        }
+        publishChanges();
+    }
+
+    /**
+     * Hands the pending changes to listeners as one change set, on the client thread.
+     * Delivery is always queued, even from the client thread, and the version is taken in
+     * the same step, so change sets arrive in version order from every thread and collection.
+     */
+    private void publishChanges() {
+        synchronized (this) {
+            if (changeHolds > 0 || pendingChanges.isEmpty()) {
+                return;
+            }
+            List<LibraryChange> changes = List.copyOf(pendingChanges);
+            pendingChanges.clear();
+            synchronized (DELIVERY_LOCK) {
+                LibraryChangeSet changeSet = new LibraryChangeSet(VERSION.incrementAndGet(), changes, banners());
+                if (!LISTENERS.isEmpty()) {
+                    MinecraftClient.getInstance().send(() -> deliver(changeSet));
+                }
+            }
+        }
+    }
+
+    private static void deliver(LibraryChangeSet changeSet) {
+        for (LibraryListener listener : LISTENERS) {
+            try {
+                listener.libraryChanged(changeSet);
+            } catch (RuntimeException e) {
+                Loombook.LOGGER.error("Library listener failed", e);
+            }
+        }
+    }
+
+    private static BannerBackend createBackend(Path directory) {
+        LoombookConfig config = LoombookConfig.getInstance();
+        return switch (config.getStorageBackend()) {
+            case DIRECTORY -> new DirectoryBannerBackend(directory, config.isLazyLayers() ? config.getLayerCacheSize() : 0);
+            case JOURNAL -> new JournalBannerBackend(directory, config.getJournalCompactionRatio());
+            case PACKED -> new PackedBannerBackend(directory);
+        };
+    }
+
+    /**
+     * Loads the library synchronously on the calling thread.
+     */
     public void load() {
-        if (!Files.exists(configPath)) {
-            Loombook.LOGGER.info("No saved banners directory found, starting fresh");
-            return;
+        closing.join();
+        publishLoaded(readLibrary());
+    }
+
+    /**
+     * Loads the library on a background thread, parsing banner files in parallel.
+     * {@link #isLoaded()} stays false until the finished library has been published.
+     */
+    public synchronized CompletableFuture<Void> loadAsync() {
+        if (loadFuture == null) {
+            loadFuture = closing
+                    .thenApplyAsync(ignored -> readLibrary(), BackgroundTasks.executor())
+                    .thenAccept(this::publishLoaded)
+                    .exceptionally(e -> {
+                        Loombook.LOGGER.error("Failed to load saved banners", e);
+                        publishLoaded(new ArrayList<>());
+                        return null;
+                    });
+        }
+        return loadFuture;
+    }
+
+    public boolean isLoaded() {
+        return loaded;
+    }
+
+    private List<SavedBanner> readLibrary() {
+        // First start on a new backend: carry over banners saved in the per-file layout
+        if (!(backend instanceof DirectoryBannerBackend) && !backend.hasData()) {
+            DirectoryBannerBackend legacy = new DirectoryBannerBackend(configPath);
+            if (legacy.hasBannerFiles()) {
+                List<SavedBanner> migrated = legacy.loadAll();
+                backend.saveAll(migrated);
+                Loombook.LOGGER.info("Migrated {} banners from the per-file layout", migrated.size());
+            }
+        }
+        if (backend instanceof DirectoryBannerBackend directoryBackend && isSnapshotEnabled()) {
+            List<SavedBanner> restored = readSnapshot(directoryBackend);
+            if (restored != null) {
+                return restored;
+            }
         }
+        return backend.loadAll();
+    }
+
+    /**
+     * The metadata index already covers startup in lazy mode, and a snapshot would
+     * force every banner's layers to be read on shutdown.
+     */
+    private static boolean isSnapshotEnabled() {
+        LoombookConfig config = LoombookConfig.getInstance();
+        return config.isStartupSnapshot() && !config.isLazyLayers();
+    }
 
+    private Path getOperationLogPath() {
+        return configPath.resolveSibling("undo-history.json");
+    }
+
+    private Path getSnapshotPath() {
+        return configPath.resolveSibling(LibrarySnapshot.SNAPSHOT_FILE);
+    }
+
+    /**
+     * Returns the banners from the shutdown snapshot, or null if there is none or the
+     * banner directory changed since it was written.
+     */
+    private List<SavedBanner> readSnapshot(DirectoryBannerBackend directoryBackend) {
+        long start = System.nanoTime();
+        LibrarySnapshot snapshot = LibrarySnapshot.read(getSnapshotPath());
+        if (snapshot == null) {
+            return null;
+        }
         try {
-            Files.list(configPath)
-                    .filter(p -> p.toString().endsWith(".json"))
-                    .forEach(p -> {
-                        try (Reader reader = Files.newBufferedReader(p)) {
-                            SavedBanner banner = GSON.fromJson(reader, SavedBanner.class);
-                            if (banner != null) {
-                                banners.add(banner);
-                            }
-                        } catch (IOException e) {
-                            Loombook.LOGGER.error("Failed to load banner from {}", p, e);
-                        }
-                    });
-            Loombook.LOGGER.info("Loaded {} saved banners", banners.size());
+            if (snapshot.getFingerprint() != directoryBackend.fingerprintFiles()) {
+                Loombook.LOGGER.info("Banner directory changed since the last snapshot, rescanning");
+                return null;
+            }
         } catch (IOException e) {
-            Loombook.LOGGER.error("Failed to load saved banners directory", e);
+            Loombook.LOGGER.warn("Failed to fingerprint banner directory, rescanning", e);
+            return null;
+        }
+        List<SavedBanner> restored = directoryBackend.restore(snapshot);
+        Loombook.LOGGER.info("Loaded {} saved banners from snapshot in {} ms", restored.size(),
+                (System.nanoTime() - start) / 1_000_000);
+        return restored;
+    }
+
+    /**
+     * Swaps in the loaded library in one step, keeping banners that were saved while loading.
+     * The list comes straight from the backend and is wrapped without copying, so lazily
+     * decoded lists stay lazy.
+     */
+    private void publishLoaded(List<SavedBanner> loadedBanners) {
+        synchronized (this) {
+            if (closed) {
+                // Switched to another collection before this one finished loading
+                return;
+            }
+            installLoaded(loadedBanners);
+        }
+        publishChanges();
+    }
+
+    private synchronized void installLoaded(List<SavedBanner> loadedBanners) {
+        BannerSnapshot loadedSnapshot = BannerSnapshot.of(loadedBanners);
+        BannerSnapshot banners = banners();
+        if (!banners.isEmpty()) {
+            Set<String> loadedIds = new HashSet<>();
+            for (SavedBanner banner : loadedBanners) {
+                loadedIds.add(banner.getId());
+            }
+            for (SavedBanner banner : banners) {
+                if (!loadedIds.contains(banner.getId())) {
+                    loadedSnapshot = loadedSnapshot.withAdded(banner);
+                }
+            }
+        }
+        // Indexed on first lookup so lazily decoded libraries stay lazy until then
+        library.set(new Library(loadedSnapshot, null));
+        if (LoombookConfig.getInstance().isPersistUndoHistory()) {
+            operations.read(getOperationLogPath());
+        }
+        loaded = true;
+        recordChange(LibraryChange.Type.RELOADED, null);
+        startWatching();
+        backups.start(LoombookConfig.getInstance().getBackupIntervalMinutes());
+    }
+
+    private void startWatching() {
+        if (watcher != null || !LoombookConfig.getInstance().isWatchDirectory()
+                || !(backend instanceof DirectoryBannerBackend directoryBackend)) {
+            return;
+        }
+        watcher = new BannerDirectoryWatcher(directoryBackend, externalChanges(), MinecraftClient.getInstance());
+        watcher.start();
+    }
+
+    private BannerDirectoryWatcher.Listener externalChanges() {
+        return new BannerDirectoryWatcher.Listener() {
+            @Override
+            public void bannerChanged(SavedBanner banner) {
+                applyExternalChange(banner);
+            }
+
+            @Override
+            public void bannerDeleted(String id) {
+                applyExternalRemoval(id);
+            }
+        };
+    }
+
+    /**
+     * Puts a banner that changed on disk, e.g. by another game instance sharing the
+     * directory, into the library without writing it back.
+     * An existing banner with the same id is replaced in place.
+     */
+    public void applyExternalChange(SavedBanner banner) {
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+            Draft draft = new Draft();
+            SavedBanner existing = draft.index.get(banner.getId());
+            if (existing != null) {
+                draft.banners = draft.banners.withSet(draft.banners.indexOf(existing), banner);
+                draft.index.replace(existing, banner);
+                recordChange(new LibraryChange(existing.getFingerprint() == banner.getFingerprint()
+                        ? LibraryChange.Type.RENAMED : LibraryChange.Type.LAYERS_CHANGED, banner, existing));
+            } else {
+                draft.banners = draft.banners.withAdded(banner);
+                draft.index.add(banner);
+                recordChange(LibraryChange.Type.ADDED, banner);
+            }
+            draft.publish();
         }
+        publishChanges();
+    }
+
+    /**
+     * Drops a banner whose file was deleted on disk.
+     */
+    public void applyExternalRemoval(String id) {
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+            SavedBanner existing = index().get(id);
+            if (existing != null) {
+                Draft draft = new Draft();
+                draft.banners = draft.banners.withRemoved(draft.banners.indexOf(existing));
+                draft.index.remove(existing);
+                draft.publish();
+                recordChange(LibraryChange.Type.REMOVED, existing);
+            }
+        }
+        publishChanges();
     }
 
     public void save() {
@@ -83,52 +498,607 @@ public class BannerStorage {
         }
     }
 
+    /**
+     * Writes any queued changes and releases the storage backend. Called when the client shuts
+     * down or another collection is activated.
+     */
+    public void close() {
+        closed = true;
+        if (watcher != null) {
+            watcher.close();
+        }
+        if (loaded) {
+            backups.close();
+            if (LoombookConfig.getInstance().isPersistUndoHistory()) {
+                operations.write(getOperationLogPath());
+            }
+        }
+        persister.close();
+        if (loaded && backend instanceof DirectoryBannerBackend directoryBackend && isSnapshotEnabled()) {
+            directoryBackend.snapshot().write(getSnapshotPath());
+        }
+    }
+
+    /**
+     * Adds a banner, resolving designs that are already in the library with the given policy.
+     * Returns the banner that ends up representing the design: the new one, or the existing
+     * one when it was skipped or merged.
+     */
+    public SavedBanner addBanner(SavedBanner banner, DuplicatePolicy policy) {
+        // Committed as a transaction so the duplicate check and the insert happen under one
+        // lock, and no importer thread can save the same design in between
+        SavedBanner representative = commit(new LibraryTransaction("Add").add(banner, policy)).getFirst();
+        if (representative != banner) {
+            Loombook.LOGGER.info("Banner design already saved as {}, {}", representative.getId(),
+                    policy == DuplicatePolicy.MERGE ? "merged" : "skipped");
+        }
+        return representative;
+    }
+
     public void addBanner(SavedBanner banner) {
-        banners.add(banner);
-        saveBannerToFile(banner);
+        synchronized (this) {
+            int position = banners().size();
+            operations.record(LibraryOperation.add(banner, position));
+            insertBanner(banner, position);
+        }
+        publishChanges();
     }
 
     public void removeBanner(String id) {
-        banners.removeIf(b -> b.getId().equals(id));
+        synchronized (this) {
+            SavedBanner banner = index().get(id);
+            if (banner == null) {
+                return;
+            }
+            // Recorded and detached under one lock, so the undo step has the position it was removed from
+            operations.record(LibraryOperation.remove(banner, banners().indexOf(banner)));
+            detachBanner(id);
+        }
+        publishChanges();
+    }
+
+    private synchronized void insertBanner(SavedBanner banner, int position) {
+        Draft draft = new Draft();
+        draft.banners = draft.banners.withInserted(Math.min(position, draft.banners.size()), banner);
+        draft.index.add(banner);
+        draft.publish();
+        recordChange(LibraryChange.Type.ADDED, banner);
+        persister.save(banner);
+    }
+
+    private void detachBanner(String id) {
+        synchronized (this) {
+            SavedBanner banner = index().get(id);
+            if (banner != null) {
+                Draft draft = new Draft();
+                draft.banners = draft.banners.withRemoved(draft.banners.indexOf(banner));
+                draft.index.remove(banner);
+                draft.publish();
+                recordChange(LibraryChange.Type.REMOVED, banner);
+            }
+        }
+        persister.delete(id);
+    }
+
+    /**
+     * Removes many banners in one pass over the library instead of one pass each.
+     */
+    private void detachBanners(List<SavedBanner> removed) {
+        Set<SavedBanner> doomed = Collections.newSetFromMap(new IdentityHashMap<>());
+        synchronized (this) {
+            Draft draft = new Draft();
+            for (SavedBanner banner : removed) {
+                SavedBanner current = draft.index.get(banner.getId());
+                if (current != null) {
+                    doomed.add(current);
+                    draft.index.remove(current);
+                    recordChange(LibraryChange.Type.REMOVED, current);
+                }
+            }
+            draft.banners = draft.banners.withoutAll(doomed);
+            draft.publish();
+        }
+        for (SavedBanner banner : doomed) {
+            persister.delete(banner.getId());
+        }
+    }
+
+    /**
+     * Applies a transaction under one lock: a single pass over the library for all removes
+     * and all adds, one undo step, one change set for listeners, and writes queued together
+     * so they reach the disk in one flush. Returns, for each add in order, the banner that
+     * represents its design: the added banner, or the existing one when it was skipped or merged.
+     */
+    public List<SavedBanner> commit(LibraryTransaction transaction) {
+        List<SavedBanner> representatives = new ArrayList<>(transaction.adds.size());
+        List<SavedBanner> removed = new ArrayList<>();
+        List<SavedBanner> renamed = new ArrayList<>();
+        List<SavedBanner> added = new ArrayList<>();
+        // The transaction's own undo step, recorded under the same lock as its changes
+        LibraryOperation batch = LibraryOperation.batch(transaction.label);
+        holdChanges();
         try {
-            Path bannerFile = configPath.resolve(id + ".json");
-            Files.deleteIfExists(bannerFile);
-        } catch (IOException e) {
-            Loombook.LOGGER.error("Failed to delete banner file for id: {}", id, e);
+            synchronized (this) {
+                Draft draft = new Draft();
+                Set<SavedBanner> doomed = Collections.newSetFromMap(new IdentityHashMap<>());
+                for (String id : transaction.removals) {
+                    SavedBanner banner = draft.index.get(id);
+                    if (banner != null) {
+                        doomed.add(banner);
+                        draft.index.remove(banner);
+                    }
+                }
+                if (!doomed.isEmpty()) {
+                    // Record positions as if removed one by one front to back, so undo can reinsert them
+                    int position = 0;
+                    for (SavedBanner banner : draft.banners) {
+                        if (doomed.contains(banner)) {
+                            batch.children.add(LibraryOperation.remove(banner, position));
+                            recordChange(LibraryChange.Type.REMOVED, banner);
+                            removed.add(banner);
+                        } else {
+                            position++;
+                        }
+                    }
+                    draft.banners = draft.banners.withoutAll(doomed);
+                }
+
+                for (Map.Entry<String, String> rename : transaction.renames.entrySet()) {
+                    SavedBanner banner = draft.index.get(rename.getKey());
+                    if (banner != null && !Objects.equals(banner.getName(), rename.getValue())) {
+                        batch.children.add(LibraryOperation.rename(banner.getId(), banner.getName(), rename.getValue()));
+                        renamed.add(rename(draft, banner, rename.getValue()));
+                    }
+                }
+
+                for (LibraryTransaction.Add add : transaction.adds) {
+                    SavedBanner banner = add.banner();
+                    SavedBanner existing = add.policy() != DuplicatePolicy.KEEP_BOTH ? draft.index.findDuplicate(banner) : null;
+                    if (existing != null) {
+                        if (add.policy() == DuplicatePolicy.MERGE
+                                && (existing.getName() == null || existing.getName().isEmpty())
+                                && banner.getName() != null && !banner.getName().isEmpty()) {
+                            batch.children.add(LibraryOperation.rename(existing.getId(), existing.getName(), banner.getName()));
+                            existing = rename(draft, existing, banner.getName());
+                            renamed.add(existing);
+                        }
+                        representatives.add(existing);
+                        continue;
+                    }
+                    if (banner.getId() == null || draft.index.contains(banner.getId())) {
+                        banner.setId(UUID.randomUUID().toString());
+                    }
+                    batch.children.add(LibraryOperation.add(banner, draft.banners.size() + added.size()));
+                    recordChange(LibraryChange.Type.ADDED, banner);
+                    draft.index.add(banner);
+                    added.add(banner);
+                    representatives.add(banner);
+                }
+                draft.banners = draft.banners.withAddedAll(added);
+                draft.publish();
+                operations.record(batch);
+            }
+            removed.forEach(banner -> persister.delete(banner.getId()));
+            renamed.forEach(persister::rename);
+            added.forEach(persister::save);
+        } finally {
+            releaseChanges();
         }
+        Loombook.LOGGER.info("{}: {} banners added, {} removed, {} renamed", transaction.label,
+                added.size(), removed.size(), renamed.size());
+        return representatives;
+    }
+
+    /**
+     * Puts a renamed copy of the banner in the draft and returns it. Callers hold the lock
+     * and record the undo step.
+     */
+    private SavedBanner rename(Draft draft, SavedBanner banner, String name) {
+        SavedBanner renamed = banner.copy();
+        renamed.setName(name);
+        replaceBanner(draft, banner, renamed, LibraryChange.Type.RENAMED);
+        return renamed;
+    }
+
+    /**
+     * Puts an edited copy in place of the banner it was made from, in both the snapshot and
+     * the index. Banners already published are never modified, so a reader holding an old
+     * snapshot keeps seeing the banner as it was.
+     */
+    private synchronized void replaceBanner(SavedBanner existing, SavedBanner replacement, LibraryChange.Type type) {
+        Draft draft = new Draft();
+        replaceBanner(draft, existing, replacement, type);
+        draft.publish();
     }
 
-    private void saveBannerToFile(SavedBanner banner) {
+    private void replaceBanner(Draft draft, SavedBanner existing, SavedBanner replacement, LibraryChange.Type type) {
+        draft.banners = draft.banners.withSet(draft.banners.indexOf(existing), replacement);
+        draft.index.replace(existing, replacement);
+        recordChange(new LibraryChange(type, replacement, existing));
+    }
+
+    /**
+     * Moves banners into another collection, which is written directly without being
+     * loaded as the active one. Banners already in it keep their copy there.
+     * Returns how many banners were moved.
+     */
+    public int moveToCollection(Collection<String> ids, String target) {
+        if (target.equals(collection)) {
+            return 0;
+        }
+        List<SavedBanner> moving = new ArrayList<>();
+        for (String id : ids) {
+            SavedBanner banner = getBannerById(id);
+            if (banner != null) {
+                moving.add(banner);
+            }
+        }
+        if (moving.isEmpty()) {
+            return 0;
+        }
+
+        BannerCollections.create(target);
+        Path targetPath = BannerCollections.getDirectory(target);
+        LibraryLock targetLock = LibraryLock.forCollection(targetPath);
+        BannerBackend targetBackend = createBackend(targetPath);
         try {
-            Files.createDirectories(configPath);
-            Path bannerFile = configPath.resolve(banner.getId() + ".json");
-            try (Writer writer = Files.newBufferedWriter(bannerFile)) {
-                GSON.toJson(banner, writer);
+            targetLock.run(() -> {
+                if (!(targetBackend instanceof DirectoryBannerBackend)) {
+                    // The single-file backends need their current contents before they can write
+                    targetBackend.loadAll();
+                }
+                targetBackend.saveAll(moving);
+            });
+        } finally {
+            // Closed outside the lock: backends take it themselves for their final writes
+            targetBackend.close();
+            targetLock.close();
+        }
+
+        LibraryTransaction transaction = new LibraryTransaction("Move to " + target);
+        moving.forEach(banner -> transaction.remove(banner.getId()));
+        commit(transaction);
+        return moving.size();
+    }
+
+    /**
+     * Takes back the latest change. Returns it, or null if there was nothing to undo.
+     */
+    public LibraryOperation undo() {
+        LibraryOperation operation = operations.takeUndo();
+        if (operation != null) {
+            holdChanges();
+            try {
+                revert(operation);
+            } finally {
+                releaseChanges();
             }
-            Loombook.LOGGER.debug("Saved banner {} to disk", banner.getId());
-        } catch (IOException e) {
-            Loombook.LOGGER.error("Failed to save banner to disk", e);
+            Loombook.LOGGER.info("Undid {}", operation.describe());
+        }
+        return operation;
+    }
+
+    /**
+     * Applies the latest undone change again. Returns it, or null if there was nothing to redo.
+     */
+    public LibraryOperation redo() {
+        LibraryOperation operation = operations.takeRedo();
+        if (operation != null) {
+            holdChanges();
+            try {
+                apply(operation);
+            } finally {
+                releaseChanges();
+            }
+            Loombook.LOGGER.info("Redid {}", operation.describe());
+        }
+        return operation;
+    }
+
+    private void apply(LibraryOperation operation) {
+        switch (operation.type) {
+            case ADD -> insertBanner(operation.banner, operation.position);
+            case REMOVE -> detachBanner(operation.banner.getId());
+            case RENAME -> applyName(operation.id, operation.newName);
+            case EDIT_LAYERS -> applyDesign(operation.id, operation.newBaseColor, operation.newLayers);
+            case BATCH -> operation.children.forEach(this::apply);
+        }
+    }
+
+    private void revert(LibraryOperation operation) {
+        switch (operation.type) {
+            case ADD -> detachBanner(operation.banner.getId());
+            case REMOVE -> insertBanner(operation.banner, operation.position);
+            case RENAME -> applyName(operation.id, operation.oldName);
+            case EDIT_LAYERS -> applyDesign(operation.id, operation.oldBaseColor, operation.oldLayers);
+            case BATCH -> {
+                if (operation.children.stream().allMatch(child -> child.type == LibraryOperation.Type.ADD)) {
+                    // Undoing an import: drop every added banner in one pass
+                    detachBanners(operation.children.stream().map(child -> child.banner).toList());
+                } else {
+                    for (int i = operation.children.size() - 1; i >= 0; i--) {
+                        revert(operation.children.get(i));
+                    }
+                }
+            }
+        }
+    }
+
+    private void applyName(String id, String name) {
+        SavedBanner renamed;
+        synchronized (this) {
+            SavedBanner banner = index().get(id);
+            if (banner == null) {
+                return;
+            }
+            renamed = banner.copy();
+            renamed.setName(name);
+            replaceBanner(banner, renamed, LibraryChange.Type.RENAMED);
+        }
+        persister.rename(renamed);
+    }
+
+    private void applyDesign(String id, String baseColor, List<BannerPatternLayer> layers) {
+        SavedBanner edited;
+        synchronized (this) {
+            SavedBanner banner = index().get(id);
+            if (banner == null) {
+                return;
+            }
+            edited = replaceDesign(banner, baseColor, layers);
+        }
+        persister.save(edited);
+    }
+
+    private synchronized SavedBanner replaceDesign(SavedBanner banner, String baseColor, List<BannerPatternLayer> layers) {
+        SavedBanner edited = banner.copy();
+        edited.setBaseColor(baseColor);
+        edited.setLayers(new ArrayList<>(layers));
+        replaceBanner(banner, edited, LibraryChange.Type.LAYERS_CHANGED);
+        return edited;
+    }
+
+    /**
+     * Replaces the base color and layers of a saved banner, keeping its name, as one undo step.
+     * Returns false if there is no banner with the id.
+     */
+    public boolean updateDesign(String id, DyeColor baseColor, List<BannerPatternLayer> layers) {
+        SavedBanner edited;
+        synchronized (this) {
+            SavedBanner banner = index().get(id);
+            if (banner == null) {
+                return false;
+            }
+            operations.record(LibraryOperation.editLayers(id, banner.getBaseColor(), banner.getLayers(),
+                    baseColor.getId(), layers));
+            edited = replaceDesign(banner, baseColor.getId(), layers);
+        }
+        persister.save(edited);
+        publishChanges();
+        Loombook.LOGGER.info("Updated the design of banner {}", id);
+        return true;
+    }
+
+    /**
+     * Adds every banner from a directory in the per-file JSON layout on a background thread,
+     * giving new ids to banners whose id is already taken and applying the duplicate policy.
+     */
+    public CompletableFuture<BulkBannerImporter.Report> importFromDirectory(Path directory, DuplicatePolicy policy) {
+        return CompletableFuture.supplyAsync(() -> {
+            List<SavedBanner> found = new DirectoryBannerBackend(directory).loadAll();
+            LibraryTransaction transaction = new LibraryTransaction("Import");
+            found.forEach(banner -> transaction.add(banner, policy));
+            int imported = 0;
+            if (!transaction.isEmpty()) {
+                List<SavedBanner> representatives = commit(transaction);
+                for (int i = 0; i < representatives.size(); i++) {
+                    if (representatives.get(i) == transaction.adds.get(i).banner()) {
+                        imported++;
+                    }
+                }
+            }
+            Loombook.LOGGER.info("Imported {} of {} banners from {}", imported, found.size(), directory);
+            String message = found.isEmpty() ? "No banner files in " + directory.getFileName()
+                    : found.size() + " banner files in " + directory.getFileName();
+            return new BulkBannerImporter.Report(List.of(new BulkBannerImporter.LineResult(0, !found.isEmpty(), message)),
+                    imported, found.size() - imported, found.isEmpty() ? 1 : 0);
+        }, BackgroundTasks.executor());
+    }
+
+    /**
+     * Writes banners, one JSON file each, to a new folder in the collection's exports
+     * directory. The folder can be dropped on the import screen or copied into another
+     * library's banner directory. Completes with the folder written.
+     */
+    public CompletableFuture<Path> exportToDirectory(List<SavedBanner> banners) {
+        return BannerExporter.exportFiles(List.copyOf(banners), configPath.resolveSibling("exports"));
+    }
+
+    /**
+     * Streams banners, in the given order, to a new JSON file in the collection's exports
+     * directory, gzipped if configured. Completes with the file written.
+     */
+    public CompletableFuture<Path> exportToFile(List<SavedBanner> banners) {
+        return BannerExporter.export(List.copyOf(banners), configPath.resolveSibling("exports"),
+                LoombookConfig.getInstance().isGzipExports());
+    }
+
+    /**
+     * Writes a datapack with functions that give or place banners, see {@link DatapackExporter}.
+     * With a selection, the pack holds just those banners under this collection's name;
+     * with none, it holds every collection, reading the inactive ones straight from disk.
+     * Completes with the zip written to the exports directory.
+     */
+    public CompletableFuture<Path> exportToDatapack(List<SavedBanner> selection) {
+        boolean everyCollection = selection.isEmpty();
+        List<SavedBanner> active = List.copyOf(everyCollection ? banners() : selection);
+        Path file = configPath.resolveSibling("exports").resolve("loombook_" + (everyCollection ? "all" : collection) + ".zip");
+        return CompletableFuture.supplyAsync(() -> {
+            long start = System.nanoTime();
+            DatapackExporter exporter = null;
+            try {
+                exporter = new DatapackExporter(file, "Banners saved with Loombook");
+                for (String name : everyCollection ? BannerCollections.list() : List.of(collection)) {
+                    if (name.equals(collection)) {
+                        exporter.addCollection(name, active);
+                    } else {
+                        addStoredCollection(exporter, name);
+                    }
+                }
+                exporter.close();
+                Loombook.LOGGER.info("Exported datapack {} in {} ms", file, (System.nanoTime() - start) / 1_000_000);
+                return file;
+            } catch (IOException | UncheckedIOException e) {
+                Loombook.LOGGER.error("Failed to export datapack {}", file, e);
+                if (exporter != null) {
+                    exporter.abort();
+                }
+                throw new RuntimeException(e);
+            }
+        }, BackgroundTasks.executor());
+    }
+
+    /**
+     * Adds a collection that is not loaded, reading it while holding its lock.
+     */
+    private static void addStoredCollection(DatapackExporter exporter, String name) {
+        Path path = BannerCollections.getDirectory(name);
+        LibraryLock lock = LibraryLock.forCollection(path);
+        BannerBackend backend = createBackend(path);
+        try {
+            lock.run(() -> {
+                try {
+                    List<SavedBanner> stored = backend.hasData() ? backend.loadAll() : List.of();
+                    if (!stored.isEmpty()) {
+                        exporter.addCollection(name, stored);
+                    }
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } finally {
+            backend.close();
+            lock.close();
         }
     }
 
+    /**
+     * Returns the library as it is now. The list is immutable and does not change when the
+     * library is edited later, so it can be read from any thread without locking.
+     */
     public List<SavedBanner> getBanners() {
-        return Collections.unmodifiableList(banners);
+        return banners();
+    }
+
+    /**
+     * Returns the kept library backups, oldest first.
+     */
+    public List<BackupManager.BackupInfo> getBackups() {
+        return backups.getBackups();
+    }
+
+    /**
+     * Replaces the library with its state as of a backup on a background thread. The current
+     * state is backed up first, so a restore can itself be undone. Only banners that differ
+     * are written. Completes with false if the backup could not be read.
+     */
+    public CompletableFuture<Boolean> restoreBackup(int sequence) {
+        return CompletableFuture.supplyAsync(() -> restoreBackupNow(sequence), BackgroundTasks.executor());
+    }
+
+    private boolean restoreBackupNow(int sequence) {
+        List<SavedBanner> restored = backups.restore(sequence);
+        if (restored == null) {
+            return false;
+        }
+        backups.backup();
+
+        List<SavedBanner> changed = new ArrayList<>();
+        List<String> removed = new ArrayList<>();
+        synchronized (this) {
+            Map<String, SavedBanner> current = new HashMap<>();
+            for (SavedBanner banner : banners()) {
+                current.put(banner.getId(), banner);
+            }
+            for (SavedBanner banner : restored) {
+                SavedBanner existing = current.remove(banner.getId());
+                if (existing == null || BackupManager.stateOf(existing) != BackupManager.stateOf(banner)) {
+                    changed.add(banner);
+                }
+            }
+            removed.addAll(current.keySet());
+            library.set(new Library(BannerSnapshot.of(restored), null));
+            // Recorded changes no longer line up with the restored library
+            operations.clear();
+            recordChange(LibraryChange.Type.RELOADED, null);
+        }
+        publishChanges();
+        removed.forEach(persister::delete);
+        changed.forEach(persister::save);
+        Loombook.LOGGER.info("Restored backup {}: {} banners written, {} removed", sequence,
+                changed.size(), removed.size());
+        return true;
+    }
+
+    private BannerSnapshot banners() {
+        return library.get().banners();
+    }
+
+    /**
+     * Returns the index of the published library, building it on the first lookup after a
+     * load. Does not lock: the built index is only installed if no writer published a newer
+     * library in the meantime.
+     */
+    private BannerIndex index() {
+        Library current = library.get();
+        if (current.index() != null) {
+            return current.index();
+        }
+        BannerIndex built = BannerIndex.build(current.banners());
+        library.compareAndSet(current, new Library(current.banners(), built));
+        return built;
     }
 
     public SavedBanner getBannerById(String id) {
-        return banners.stream()
-                .filter(b -> b.getId().equals(id))
-                .findFirst()
-                .orElse(null);
+        return index().get(id);
+    }
+
+    /**
+     * Returns the banners with the given base color, in the order they were added.
+     */
+    public List<SavedBanner> getBannersByBaseColor(DyeColor color) {
+        return index().withBaseColor(color.getId());
+    }
+
+    /**
+     * Returns the banners that use a pattern in any layer.
+     */
+    public List<SavedBanner> getBannersWithPattern(String patternId) {
+        return index().withPattern(patternId);
+    }
+
+    /**
+     * Returns the banners that use a dye color in any layer.
+     */
+    public List<SavedBanner> getBannersWithDyeColor(DyeColor color) {
+        return index().withDyeColor(color.getId());
     }
 
     public void renameBanner(String id, String newName) {
-        SavedBanner banner = getBannerById(id);
-        if (banner != null) {
-            banner.setName(newName);
-            saveBannerToFile(banner);
-            Loombook.LOGGER.info("Renamed banner {} to '{}'", id, newName);
+        SavedBanner renamed;
+        synchronized (this) {
+            SavedBanner banner = index().get(id);
+            if (banner == null) {
+                return;
+            }
+            operations.record(LibraryOperation.rename(id, banner.getName(), newName));
+            Draft draft = new Draft();
+            renamed = rename(draft, banner, newName);
+            draft.publish();
         }
+        persister.rename(renamed);
+        publishChanges();
+        Loombook.LOGGER.info("Renamed banner {} to '{}'", id, newName);
     }
 
     /**
@@ -143,7 +1113,7 @@ public class BannerStorage {
     }
 
     /**
-     * Imports a banner from JSON string format or /give command format
+     * Imports a banner from JSON string format, /give command format or a share code
      * Auto-detects the format and parses accordingly
      * Can handle single banner JSON or JSON array of banners
      */
@@ -153,35 +1123,42 @@ public class BannerStorage {
         }
 
         input = input.trim();
+        DuplicatePolicy policy = LoombookConfig.getInstance().getDuplicatePolicy();
 
         // Try to detect if it's a /give command
-        if (input.startsWith("/give")) {
+        if (input.startsWith("/give") || input.startsWith("give ")) {
             return importBannerFromGiveCommand(input);
         }
 
+        if (BannerShareCode.isShareCode(input)) {
+            try {
+                return addBanner(BannerShareCode.decode(input), policy);
+            } catch (IllegalArgumentException e) {
+                Loombook.LOGGER.error("Failed to import banner share code: {}", e.getMessage());
+                return null;
+            }
+        }
+
         // Try to parse as JSON array first
         if (input.startsWith("[")) {
             try {
                 JsonArray jsonArray = GSON.fromJson(input, JsonArray.class);
-                SavedBanner lastBanner = null;
+                LibraryTransaction transaction = new LibraryTransaction("Import");
                 for (JsonElement element : jsonArray) {
                     if (element.isJsonObject()) {
                         try {
                             SavedBanner banner = GSON.fromJson(element, SavedBanner.class);
-                            if (banner != null) {
-                                // Check if banner with this ID already exists
-                                if (getBannerById(banner.getId()) != null) {
-                                    // Generate new ID to avoid conflicts
-                                    banner.setId(java.util.UUID.randomUUID().toString());
-                                }
-                                addBanner(banner);
-                                lastBanner = banner;
+                            if (banner != null && banner.acceptImported()) {
+                                // Banners whose id is already taken get a new one when committed
+                                transaction.add(banner, policy);
                             }
                         } catch (Exception e) {
                             Loombook.LOGGER.warn("Failed to import individual banner from array", e);
                         }
                     }
                 }
+                List<SavedBanner> representatives = commit(transaction);
+                SavedBanner lastBanner = representatives.isEmpty() ? null : representatives.getLast();
                 if (lastBanner != null) {
                     Loombook.LOGGER.info("Successfully imported {} banners from JSON array", jsonArray.size());
                     return lastBanner;
@@ -194,14 +1171,17 @@ public class BannerStorage {
         // Otherwise, try to parse as single banner JSON
         try {
             SavedBanner banner = GSON.fromJson(input, SavedBanner.class);
+            if (banner != null && !banner.acceptImported()) {
+                Loombook.LOGGER.error("Imported banner has an unknown base color or a layer without a pattern");
+                return null;
+            }
             if (banner != null) {
                 // Check if banner with this ID already exists
                 if (getBannerById(banner.getId()) != null) {
                     // Generate new ID to avoid conflicts
                     banner.setId(java.util.UUID.randomUUID().toString());
                 }
-                addBanner(banner);
-                return banner;
+                return addBanner(banner, policy);
             }
         } catch (Exception e) {
             Loombook.LOGGER.error("Failed to import banner from JSON", e);
@@ -214,86 +1194,11 @@ public class BannerStorage {
      * Example: /give @p minecraft:white_banner[banner_patterns=[{"pattern":"small_stripes","color":"lime"}]] 1
      */
     private SavedBanner importBannerFromGiveCommand(String command) {
-        try {
-            // Extract the banner item type
-            Pattern itemPattern = Pattern.compile("minecraft:(\\w+)_banner");
-            Matcher itemMatcher = itemPattern.matcher(command);
-            if (!itemMatcher.find()) {
-                Loombook.LOGGER.error("Could not find banner item in /give command");
-                return null;
-            }
-
-            String colorName = itemMatcher.group(1);
-            DyeColor baseColor = parseDyeColor(colorName);
-            if (baseColor == null) {
-                Loombook.LOGGER.error("Unknown banner color: {}", colorName);
-                return null;
-            }
-
-            // Extract the banner_patterns component
-            Pattern patternsPattern = Pattern.compile("banner_patterns=\\[(.*?)\\](?:\\]|,)");
-            Matcher patternsMatcher = patternsPattern.matcher(command);
-
-            List<BannerPatternLayer> layers = new ArrayList<>();
-
-            if (patternsMatcher.find()) {
-                String patternsJson = "[" + patternsMatcher.group(1) + "]";
-                try {
-                    JsonArray patternsArray = GSON.fromJson(patternsJson, JsonArray.class);
-                    for (JsonElement element : patternsArray) {
-                        if (element.isJsonObject()) {
-                            JsonObject patternObj = element.getAsJsonObject();
-                            String patternId = patternObj.get("pattern").getAsString();
-                            String colorStr = patternObj.get("color").getAsString();
-
-                            DyeColor dyeColor = parseDyeColor(colorStr);
-                            if (dyeColor != null) {
-                                // Convert pattern name to minecraft namespace
-                                String fullPatternId = "minecraft:" + patternId;
-                                layers.add(BannerPatternLayer.of(fullPatternId, dyeColor));
-                            }
-                        }
-                    }
-                } catch (Exception e) {
-                    Loombook.LOGGER.error("Failed to parse banner patterns from /give command", e);
-                    return null;
-                }
-            }
-
-            SavedBanner banner = new SavedBanner(null, baseColor, layers);
-            addBanner(banner);
-            return banner;
-
-        } catch (Exception e) {
-            Loombook.LOGGER.error("Failed to import banner from /give command", e);
+        GiveCommandParser.Result result = GiveCommandParser.parse(command);
+        if (!result.isSuccess()) {
+            Loombook.LOGGER.error("Failed to import banner from /give command: {}", result.error().describe());
+            return null;
         }
-        return null;
-    }
-
-    /**
-     * Parses a dye color name to DyeColor enum
-     */
-    private DyeColor parseDyeColor(String colorName) {
-        if (colorName == null) return null;
-
-        return switch (colorName.toLowerCase()) {
-            case "white" -> DyeColor.WHITE;
-            case "orange" -> DyeColor.ORANGE;
-            case "magenta" -> DyeColor.MAGENTA;
-            case "light_blue" -> DyeColor.LIGHT_BLUE;
-            case "yellow" -> DyeColor.YELLOW;
-            case "lime" -> DyeColor.LIME;
-            case "pink" -> DyeColor.PINK;
-            case "gray" -> DyeColor.GRAY;
-            case "light_gray" -> DyeColor.LIGHT_GRAY;
-            case "cyan" -> DyeColor.CYAN;
-            case "purple" -> DyeColor.PURPLE;
-            case "blue" -> DyeColor.BLUE;
-            case "brown" -> DyeColor.BROWN;
-            case "green" -> DyeColor.GREEN;
-            case "red" -> DyeColor.RED;
-            case "black" -> DyeColor.BLACK;
-            default -> null;
-        };
+        return addBanner(result.banner(), LoombookConfig.getInstance().getDuplicatePolicy());
     }
 }
@@ -0,0 +1,80 @@
+package dogwhale65.loombook.data;
+
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonWriter;
+import net.minecraft.util.DyeColor;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Shared flyweight table for the strings every banner layer repeats. Pattern ids and
+ * dye color ids are interned as they are deserialized, so the library holds one copy
+ * of {@code "minecraft:stripe_bottom"} instead of one per layer, and dye colors resolve
+ * to their enum constant without parsing.
+ */
+public final class BannerSymbols {
+    private static final Map<String, String> PATTERNS = new ConcurrentHashMap<>();
+    private static final Map<String, DyeColor> COLORS = new HashMap<>();
+
+    static {
+        for (DyeColor color : DyeColor.values()) {
+            COLORS.put(color.getId(), color);
+        }
+    }
+
+    private BannerSymbols() {
+    }
+
+    /**
+     * Returns the shared instance of a pattern id.
+     */
+    public static String pattern(String patternId) {
+        if (patternId == null) {
+            return null;
+        }
+        String existing = PATTERNS.putIfAbsent(patternId, patternId);
+        return existing != null ? existing : patternId;
+    }
+
+    /**
+     * Returns the shared instance of a dye color id. Unknown ids are kept as they are.
+     */
+    public static String color(String colorId) {
+        DyeColor color = colorId != null ? COLORS.get(colorId) : null;
+        return color != null ? color.getId() : colorId;
+    }
+
+    /**
+     * Returns true if the id names one of the sixteen dye colors.
+     */
+    public static boolean isKnownColor(String colorId) {
+        return colorId != null && COLORS.containsKey(colorId);
+    }
+
+    /**
+     * Resolves a dye color id, falling back to white like {@link DyeColor#byId}.
+     */
+    public static DyeColor dyeColor(String colorId) {
+        DyeColor color = colorId != null ? COLORS.get(colorId) : null;
+        return color != null ? color : DyeColor.WHITE;
+    }
+
+    /**
+     * Interns dye color ids as Gson reads them, for fields Gson sets without a setter.
+     */
+    static final class ColorAdapter extends TypeAdapter<String> {
+        @Override
+        public void write(JsonWriter out, String value) throws IOException {
+            out.value(value);
+        }
+
+        @Override
+        public String read(JsonReader in) throws IOException {
+            return color(in.nextString());
+        }
+    }
+}
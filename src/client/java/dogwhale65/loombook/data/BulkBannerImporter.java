@@ -0,0 +1,269 @@
+package dogwhale65.loombook.data;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonParser;
+import dogwhale65.loombook.Loombook;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Supplier;
+import java.util.regex.Pattern;
+
+/**
+ * Imports text holding many banners at once: {@code /give} commands or share codes one
+ * per line, JSON banners or arrays (which may span several lines), or a mix, as found in
+ * banner packs and .mcfunction files. Entries are parsed in parallel, designs repeated
+ * within the input are dropped, and everything is committed as one transaction. The
+ * result reports, for each entry, the line it started on and what became of it.
+ */
+public class BulkBannerImporter {
+    private static final Gson GSON = new Gson();
+    private static final Pattern COMMAND_LINE = Pattern.compile("^\\s*/?give\\s", Pattern.MULTILINE);
+
+    private final BannerStorage storage;
+    private final DuplicatePolicy policy;
+
+    /**
+     * One command or JSON document, starting on {@code line} (1-based).
+     */
+    record Entry(int line, String text, boolean json) {
+    }
+
+    private record Parsed(Entry entry, List<SavedBanner> banners, int invalid, String error) {
+    }
+
+    /**
+     * What happened to the entry starting on {@code line}.
+     */
+    public record LineResult(int line, boolean success, String message) {
+    }
+
+    public record Report(List<LineResult> lines, int imported, int skipped, int failed) {
+    }
+
+    public BulkBannerImporter(BannerStorage storage, DuplicatePolicy policy) {
+        this.storage = storage;
+        this.policy = policy;
+    }
+
+    /**
+     * Returns true if the text holds commands or share codes, so it should be imported here
+     * rather than streamed as plain JSON.
+     */
+    public static boolean isBulkInput(String text) {
+        String trimmed = text.strip();
+        return !trimmed.isEmpty() && (trimmed.charAt(0) != '{' && trimmed.charAt(0) != '['
+                || COMMAND_LINE.matcher(text).find());
+    }
+
+    public CompletableFuture<Report> importFile(Path file) {
+        return runAsync(() -> {
+            try {
+                return importText(Files.readString(file, StandardCharsets.UTF_8));
+            } catch (IOException e) {
+                Loombook.LOGGER.error("Failed to read {}", file, e);
+                return new Report(List.of(new LineResult(0, false, "Could not read file: " + e.getMessage())), 0, 0, 1);
+            }
+        });
+    }
+
+    public CompletableFuture<Report> importTextAsync(String text) {
+        return runAsync(() -> importText(text));
+    }
+
+    private CompletableFuture<Report> runAsync(Supplier<Report> task) {
+        return CompletableFuture.supplyAsync(task, BackgroundTasks.executor());
+    }
+
+    /**
+     * Parses and commits the text on the calling thread.
+     */
+    public Report importText(String text) {
+        long start = System.nanoTime();
+        List<Parsed> parsed = split(text).parallelStream().map(BulkBannerImporter::parse).toList();
+
+        // Drop designs repeated in the input before they reach the library
+        LibraryTransaction transaction = new LibraryTransaction("Import");
+        List<Integer> owners = new ArrayList<>();
+        Map<Long, Integer> firstLine = new HashMap<>();
+        int[] repeated = new int[parsed.size()];
+        int[] repeatedOf = new int[parsed.size()];
+        for (int i = 0; i < parsed.size(); i++) {
+            for (SavedBanner banner : parsed.get(i).banners()) {
+                Integer seen = firstLine.putIfAbsent(banner.getFingerprint(), parsed.get(i).entry().line());
+                if (seen != null) {
+                    repeated[i]++;
+                    repeatedOf[i] = seen;
+                    continue;
+                }
+                transaction.add(banner, policy);
+                owners.add(i);
+            }
+        }
+
+        int[] added = new int[parsed.size()];
+        int[] existing = new int[parsed.size()];
+        if (!transaction.isEmpty()) {
+            List<SavedBanner> representatives = storage.commit(transaction);
+            for (int i = 0; i < representatives.size(); i++) {
+                // Duplicates are represented by the banner already in the library
+                if (representatives.get(i) == transaction.adds.get(i).banner()) {
+                    added[owners.get(i)]++;
+                } else {
+                    existing[owners.get(i)]++;
+                }
+            }
+        }
+
+        List<LineResult> lines = new ArrayList<>(parsed.size());
+        int imported = 0;
+        int skipped = 0;
+        int failed = 0;
+        for (int i = 0; i < parsed.size(); i++) {
+            Parsed entry = parsed.get(i);
+            int line = entry.entry().line();
+            imported += added[i];
+            skipped += repeated[i] + existing[i];
+            failed += entry.invalid();
+            if (entry.error() != null) {
+                failed++;
+                lines.add(new LineResult(line, false, entry.error()));
+            } else if (entry.banners().size() + entry.invalid() == 1) {
+                String message;
+                if (added[i] == 1) {
+                    message = "Imported";
+                } else if (existing[i] == 1) {
+                    message = "Already saved";
+                } else if (repeated[i] == 1) {
+                    message = "Same design as line " + repeatedOf[i];
+                } else {
+                    message = "Not a valid banner";
+                }
+                lines.add(new LineResult(line, entry.invalid() == 0, message));
+            } else {
+                StringBuilder message = new StringBuilder("Imported ").append(added[i])
+                        .append(" of ").append(entry.banners().size() + entry.invalid());
+                if (existing[i] + repeated[i] > 0) {
+                    message.append(", ").append(existing[i] + repeated[i]).append(" duplicates");
+                }
+                if (entry.invalid() > 0) {
+                    message.append(", ").append(entry.invalid()).append(" invalid");
+                }
+                lines.add(new LineResult(line, entry.invalid() == 0, message.toString()));
+            }
+        }
+        Loombook.LOGGER.info("Bulk import of {} entries: {} imported, {} skipped, {} failed in {} ms",
+                parsed.size(), imported, skipped, failed, (System.nanoTime() - start) / 1_000_000);
+        return new Report(lines, imported, skipped, failed);
+    }
+
+    /**
+     * Splits text into entries. Commands and share codes take one line; JSON documents run until their
+     * brackets balance. Blank lines and {@code #} comments are ignored.
+     */
+    static List<Entry> split(String text) {
+        List<Entry> entries = new ArrayList<>();
+        StringBuilder document = null;
+        int documentLine = 0;
+        int depth = 0;
+        boolean inString = false;
+        boolean escaped = false;
+
+        String[] lines = text.split("\r?\n", -1);
+        for (int i = 0; i < lines.length; i++) {
+            String line = lines[i];
+            if (document == null) {
+                String trimmed = line.strip();
+                if (trimmed.isEmpty() || trimmed.startsWith("#")) {
+                    continue;
+                }
+                if (!trimmed.startsWith("{") && !trimmed.startsWith("[")) {
+                    entries.add(new Entry(i + 1, trimmed, false));
+                    continue;
+                }
+                document = new StringBuilder();
+                documentLine = i + 1;
+                depth = 0;
+                inString = false;
+                escaped = false;
+            }
+            document.append(line).append('\n');
+            for (int c = 0; c < line.length(); c++) {
+                char ch = line.charAt(c);
+                if (inString) {
+                    if (escaped) {
+                        escaped = false;
+                    } else if (ch == '\\') {
+                        escaped = true;
+                    } else if (ch == '"') {
+                        inString = false;
+                    }
+                } else if (ch == '"') {
+                    inString = true;
+                } else if (ch == '{' || ch == '[') {
+                    depth++;
+                } else if (ch == '}' || ch == ']') {
+                    depth--;
+                }
+            }
+            if (depth <= 0) {
+                entries.add(new Entry(documentLine, document.toString(), true));
+                document = null;
+            }
+        }
+        if (document != null) {
+            // Left unbalanced; parsing reports the error
+            entries.add(new Entry(documentLine, document.toString(), true));
+        }
+        return entries;
+    }
+
+    private static Parsed parse(Entry entry) {
+        if (!entry.json() && BannerShareCode.isShareCode(entry.text())) {
+            try {
+                return new Parsed(entry, List.of(BannerShareCode.decode(entry.text())), 0, null);
+            } catch (IllegalArgumentException e) {
+                return new Parsed(entry, List.of(), 0, "Invalid share code: " + e.getMessage());
+            }
+        }
+        if (!entry.json()) {
+            GiveCommandParser.Result result = GiveCommandParser.parse(entry.text());
+            return result.isSuccess()
+                    ? new Parsed(entry, List.of(result.banner()), 0, null)
+                    : new Parsed(entry, List.of(), 0, result.error().describe());
+        }
+
+        JsonElement root;
+        try {
+            root = JsonParser.parseString(entry.text());
+        } catch (RuntimeException e) {
+            return new Parsed(entry, List.of(), 0, "Invalid JSON: " + e.getMessage());
+        }
+        List<SavedBanner> banners = new ArrayList<>();
+        int invalid = 0;
+        for (JsonElement element : root.isJsonArray() ? root.getAsJsonArray() : List.of(root)) {
+            SavedBanner banner = null;
+            if (element.isJsonObject()) {
+                try {
+                    banner = GSON.fromJson(element, SavedBanner.class);
+                } catch (RuntimeException e) {
+                    Loombook.LOGGER.debug("Skipping invalid banner on line {}", entry.line(), e);
+                }
+            }
+            if (banner == null || !banner.acceptImported()) {
+                invalid++;
+                continue;
+            }
+            banners.add(banner);
+        }
+        return new Parsed(entry, banners, invalid, null);
+    }
+}
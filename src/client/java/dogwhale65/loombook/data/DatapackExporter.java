@@ -0,0 +1,146 @@
+package dogwhale65.loombook.data;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.List;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * Writes banners as a zipped datapack that can be dropped into a world's datapacks folder.
+ * Each collection added becomes two functions: {@code loombook:<name>/give} gives the
+ * player every design, and {@code loombook:<name>/place} sets them down as standing
+ * banners in a grid next to the player. Keeping them in a folder per collection means no
+ * collection name can collide with another collection's functions. Functions run in one tick, so a server can hand out
+ * thousands of designs at once. Functions are streamed into the zip as they are written.
+ */
+public class DatapackExporter implements AutoCloseable {
+    // Data pack format of Minecraft 1.21.6
+    private static final int PACK_FORMAT = 80;
+    private static final String NAMESPACE = "loombook";
+    private static final int GRID_WIDTH = 16;
+
+    private final Path file;
+    private final Path temp;
+    private final ZipOutputStream zip;
+    private final Writer writer;
+
+    public DatapackExporter(Path file, String description) throws IOException {
+        this.file = file;
+        this.temp = file.resolveSibling(file.getFileName() + ".tmp");
+        Files.createDirectories(file.getParent());
+        this.zip = new ZipOutputStream(new BufferedOutputStream(Files.newOutputStream(temp), 64 * 1024));
+        this.writer = new OutputStreamWriter(zip, StandardCharsets.UTF_8);
+
+        zip.putNextEntry(new ZipEntry("pack.mcmeta"));
+        writer.write("{\n  \"pack\": {\n    \"pack_format\": " + PACK_FORMAT + ",\n    \"description\": \""
+                + escape(description) + "\"\n  }\n}\n");
+        writer.flush();
+        zip.closeEntry();
+    }
+
+    /**
+     * Adds the give and place functions for a collection. The name must be a valid
+     * function name, which sanitized collection names are.
+     */
+    public void addCollection(String name, List<SavedBanner> banners) throws IOException {
+        zip.putNextEntry(new ZipEntry("data/" + NAMESPACE + "/function/" + name + "/give.mcfunction"));
+        writer.write("# Gives all " + banners.size() + " banners in " + name + "\n");
+        for (SavedBanner banner : banners) {
+            writer.write(giveCommand(banner));
+            writer.write('\n');
+        }
+        writer.flush();
+        zip.closeEntry();
+
+        zip.putNextEntry(new ZipEntry("data/" + NAMESPACE + "/function/" + name + "/place.mcfunction"));
+        writer.write("# Places all " + banners.size() + " banners in " + name + ", " + GRID_WIDTH
+                + " to a row, starting one block east of the player\n");
+        for (int i = 0; i < banners.size(); i++) {
+            writer.write(setblockCommand(banners.get(i), 1 + i % GRID_WIDTH, i / GRID_WIDTH));
+            writer.write('\n');
+        }
+        writer.flush();
+        zip.closeEntry();
+    }
+
+    /**
+     * Finishes the zip and moves it into place.
+     */
+    @Override
+    public void close() throws IOException {
+        writer.close();
+        try {
+            Files.move(temp, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    /**
+     * Drops a pack that could not be finished.
+     */
+    public void abort() {
+        try {
+            writer.close();
+        } catch (IOException ignored) {
+            // The file is deleted anyway
+        }
+        try {
+            Files.deleteIfExists(temp);
+        } catch (IOException ignored) {
+            // Left behind as a .tmp file, which is never loaded
+        }
+    }
+
+    /**
+     * A {@code /give} command for the banner, without the slash, using the 1.21 item components.
+     */
+    static String giveCommand(SavedBanner banner) {
+        StringBuilder command = new StringBuilder("give @s minecraft:").append(banner.getBaseColorEnum().getId())
+                .append("_banner[minecraft:banner_patterns=");
+        appendPatterns(command, banner);
+        if (banner.getName() != null && !banner.getName().isEmpty()) {
+            command.append(",minecraft:custom_name={text:\"").append(escape(banner.getName())).append("\"}");
+        }
+        return command.append(']').toString();
+    }
+
+    /**
+     * A {@code /setblock} command placing the banner at an offset from where the function runs.
+     */
+    static String setblockCommand(SavedBanner banner, int dx, int dz) {
+        StringBuilder command = new StringBuilder("setblock ~").append(dx).append(" ~ ~").append(dz)
+                .append(" minecraft:").append(banner.getBaseColorEnum().getId()).append("_banner{patterns:");
+        appendPatterns(command, banner);
+        if (banner.getName() != null && !banner.getName().isEmpty()) {
+            command.append(",CustomName:{text:\"").append(escape(banner.getName())).append("\"}");
+        }
+        return command.append("} replace").toString();
+    }
+
+    private static void appendPatterns(StringBuilder command, SavedBanner banner) {
+        command.append('[');
+        List<BannerPatternLayer> layers = banner.getLayers();
+        for (int i = 0; i < layers.size(); i++) {
+            BannerPatternLayer layer = layers.get(i);
+            if (i > 0) {
+                command.append(',');
+            }
+            command.append("{pattern:\"").append(BannerFingerprint.canonicalPattern(layer.patternId()))
+                    .append("\",color:\"").append(layer.getDyeColorEnum().getId()).append("\"}");
+        }
+        command.append(']');
+    }
+
+    private static String escape(String text) {
+        return text.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+    }
+}
@@ -0,0 +1,509 @@
+package dogwhale65.loombook.data;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonParseException;
+import dogwhale65.loombook.Loombook;
+import dogwhale65.loombook.config.LoombookConfig;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Stores each banner as its own pretty-printed JSON file named after the banner id.
+ * This is the original on-disk layout and doubles as the import/export format.
+ * Several game instances may share the directory: every write checks the file's revision
+ * against the one last seen here and merges edits made by another instance in between.
+ */
+public class DirectoryBannerBackend implements BannerBackend {
+    private static final Gson GSON = new GsonBuilder()
+            .setPrettyPrinting()
+            .create();
+
+    private final Path directory;
+    // Size and modification time of every banner file as last read or written by us
+    private final Map<String, FileStamp> stamps = new ConcurrentHashMap<>();
+    private final Map<String, SavedBanner> bannersByFile = new ConcurrentHashMap<>();
+    // Size and modification time of banner files that could not be read, so the snapshot
+    // fingerprint covers the same files as the directory listing
+    private final Map<String, SkippedFile> unreadable = new ConcurrentHashMap<>();
+    private final BannerLayerCache layerCache;
+    private final LibraryLock lock;
+    private BannerDirectoryWatcher.Listener mergeListener;
+    private Executor mergeExecutor;
+
+    public DirectoryBannerBackend(Path directory) {
+        this(directory, 0);
+    }
+
+    /**
+     * @param layerCacheSize when positive, loads banners from the metadata index and reads
+     *                       their layers on demand, keeping at most this many hydrated
+     */
+    public DirectoryBannerBackend(Path directory, int layerCacheSize) {
+        this.directory = directory;
+        this.layerCache = layerCacheSize > 0 ? new BannerLayerCache(layerCacheSize) : null;
+        this.lock = LibraryLock.forCollection(directory);
+    }
+
+    /**
+     * What a banner file held when it was last read or written here, which is the common
+     * base when merging with an edit made by another instance.
+     */
+    private record FileStamp(String bannerId, long size, long modified, long revision, String name, long design) {
+        static FileStamp of(SavedBanner banner, long size, long modified) {
+            return new FileStamp(banner.getId(), size, modified, banner.getRevision(), banner.getName(),
+                    banner.getFingerprint());
+        }
+
+        boolean matches(BasicFileAttributes attributes) {
+            return size == attributes.size() && modified == attributes.lastModifiedTime().toMillis();
+        }
+    }
+
+    private record SkippedFile(long size, long modified) {
+    }
+
+    /**
+     * Receives banners that changed while merging with another instance's edits: merged
+     * banners, conflict copies and banners whose deletion was cancelled.
+     */
+    public void setMergeListener(BannerDirectoryWatcher.Listener listener, Executor deliveryExecutor) {
+        this.mergeListener = listener;
+        this.mergeExecutor = deliveryExecutor;
+    }
+
+    public Path getDirectory() {
+        return directory;
+    }
+
+    /**
+     * Returns true if the directory holds at least one banner file.
+     */
+    public boolean hasBannerFiles() {
+        if (!Files.isDirectory(directory)) {
+            return false;
+        }
+        try (Stream<Path> listing = Files.list(directory)) {
+            return listing.anyMatch(p -> p.toString().endsWith(".json"));
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    @Override
+    public List<SavedBanner> loadAll() {
+        if (!Files.exists(directory)) {
+            Loombook.LOGGER.info("No saved banners directory found, starting fresh");
+            return new ArrayList<>();
+        }
+
+        List<Path> files;
+        try (Stream<Path> listing = Files.list(directory)) {
+            files = listing
+                    .filter(p -> p.toString().endsWith(".json"))
+                    .toList();
+        } catch (IOException e) {
+            Loombook.LOGGER.error("Failed to load saved banners directory", e);
+            return new ArrayList<>();
+        }
+
+        Map<String, BannerMetadataIndex.Entry> indexed = layerCache != null
+                ? BannerMetadataIndex.read(directory.resolve(BannerMetadataIndex.INDEX_FILE))
+                : Map.of();
+
+        long start = System.nanoTime();
+        ForkJoinPool pool = new ForkJoinPool(LoombookConfig.getInstance().getLoadThreads());
+        try {
+            // Parallel streams run inside the pool they are submitted from; collecting keeps directory order
+            List<SavedBanner> result = pool.submit(() -> files.parallelStream()
+                    .map(file -> loadBanner(file, indexed))
+                    .filter(Objects::nonNull)
+                    .collect(Collectors.toCollection(ArrayList::new))).join();
+            Loombook.LOGGER.info("Loaded {} saved banners from {} in {} ms", result.size(), directory,
+                    (System.nanoTime() - start) / 1_000_000);
+            return result;
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    /**
+     * Uses the metadata index entry when the file is unchanged since it was indexed,
+     * and reads the whole file otherwise.
+     */
+    private SavedBanner loadBanner(Path file, Map<String, BannerMetadataIndex.Entry> indexed) {
+        BannerMetadataIndex.Entry entry = indexed.get(file.getFileName().toString());
+        if (entry != null) {
+            try {
+                BasicFileAttributes attributes = Files.readAttributes(file, BasicFileAttributes.class);
+                if (entry.matches(attributes)) {
+                    String id = entry.id;
+                    SavedBanner banner = entry.toBanner(new LazyLayerList(entry.layerCount,
+                            () -> layerCache.get(id, () -> readLayers(file)), () -> reloadStale(id, file)));
+                    recordStamp(file, banner, attributes);
+                    return banner;
+                }
+            } catch (IOException e) {
+                Loombook.LOGGER.debug("Could not stat indexed banner file {}", file, e);
+            }
+        }
+        return readBannerFile(file);
+    }
+
+    private List<BannerPatternLayer> readLayers(Path file) {
+        try (Reader reader = Files.newBufferedReader(file)) {
+            SavedBanner banner = GSON.fromJson(reader, SavedBanner.class);
+            if (banner != null && banner.getLayers() != null) {
+                return banner.getLayers();
+            }
+        } catch (IOException | JsonParseException e) {
+            Loombook.LOGGER.error("Failed to read banner layers from {}", file, e);
+        }
+        return List.of();
+    }
+
+    /**
+     * Called when a banner's file no longer has the layers its index entry promised, e.g.
+     * it was edited or deleted while this instance wasn't watching. Drops the cached layers
+     * and reads the file again in the background, handing the result over like a merge.
+     */
+    private void reloadStale(String id, Path file) {
+        Loombook.LOGGER.warn("Banner file {} no longer matches the metadata index, reading it again", file);
+        layerCache.invalidate(id);
+        if (mergeListener == null) {
+            return;
+        }
+        BackgroundTasks.executor().execute(() -> {
+            SavedBanner banner = Files.exists(file) ? readBannerFile(file) : null;
+            if (banner != null) {
+                notifyMerged(banner);
+            } else {
+                mergeExecutor.execute(() -> mergeListener.bannerDeleted(id));
+            }
+        });
+    }
+
+    private SavedBanner readBannerFile(Path file) {
+        BasicFileAttributes attributes = null;
+        try {
+            attributes = Files.readAttributes(file, BasicFileAttributes.class);
+            SavedBanner banner;
+            try (Reader reader = Files.newBufferedReader(file)) {
+                banner = GSON.fromJson(reader, SavedBanner.class);
+            }
+            if (banner != null) {
+                recordStamp(file, banner, attributes);
+                if (layerCache != null) {
+                    layerCache.invalidate(banner.getId());
+                }
+            } else {
+                recordUnreadable(file, attributes);
+            }
+            return banner;
+        } catch (IOException | JsonParseException e) {
+            Loombook.LOGGER.error("Failed to load banner from {}", file, e);
+            if (attributes != null) {
+                recordUnreadable(file, attributes);
+            }
+            return null;
+        }
+    }
+
+    private void recordUnreadable(Path file, BasicFileAttributes attributes) {
+        unreadable.put(file.getFileName().toString(),
+                new SkippedFile(attributes.size(), attributes.lastModifiedTime().toMillis()));
+    }
+
+    /**
+     * Re-reads a banner file only if it changed since it was last read or written here.
+     * Returns null when the file is unchanged, gone or unreadable.
+     */
+    public SavedBanner readIfChanged(Path file) {
+        try {
+            BasicFileAttributes attributes = Files.readAttributes(file, BasicFileAttributes.class);
+            FileStamp stamp = stamps.get(file.getFileName().toString());
+            if (stamp != null && stamp.matches(attributes)) {
+                return null;
+            }
+        } catch (IOException e) {
+            return null;
+        }
+        return readBannerFile(file);
+    }
+
+    /**
+     * Drops the stamp of a deleted banner file and returns the id of the banner it held,
+     * or null if the file was not known (for example because we deleted it ourselves).
+     */
+    public String forgetFile(Path file) {
+        bannersByFile.remove(file.getFileName().toString());
+        unreadable.remove(file.getFileName().toString());
+        FileStamp stamp = stamps.remove(file.getFileName().toString());
+        return stamp != null ? stamp.bannerId() : null;
+    }
+
+    /**
+     * Returns every banner file that was last seen on disk.
+     */
+    public Set<Path> getKnownFiles() {
+        Set<Path> files = new HashSet<>();
+        for (String name : stamps.keySet()) {
+            files.add(directory.resolve(name));
+        }
+        return files;
+    }
+
+    private void recordStamp(Path file, SavedBanner banner, BasicFileAttributes attributes) {
+        String name = file.getFileName().toString();
+        stamps.put(name, FileStamp.of(banner, attributes.size(), attributes.lastModifiedTime().toMillis()));
+        bannersByFile.put(name, banner);
+        unreadable.remove(name);
+    }
+
+    /**
+     * Fingerprint of the banner files currently on disk.
+     */
+    public long fingerprintFiles() throws IOException {
+        LibrarySnapshot.Fingerprint fingerprint = new LibrarySnapshot.Fingerprint();
+        if (Files.isDirectory(directory)) {
+            try (Stream<Path> listing = Files.list(directory)) {
+                for (Path file : (Iterable<Path>) listing.filter(p -> p.toString().endsWith(".json"))::iterator) {
+                    BasicFileAttributes attributes = Files.readAttributes(file, BasicFileAttributes.class);
+                    fingerprint.add(file.getFileName().toString(), attributes.size(),
+                            attributes.lastModifiedTime().toMillis());
+                }
+            }
+        }
+        return fingerprint.value();
+    }
+
+    /**
+     * Captures every banner file as last read or written here. The fingerprint covers the
+     * files as we know them, including ones that could not be read, so it matches
+     * {@link #fingerprintFiles} until something changes behind our back.
+     */
+    public LibrarySnapshot snapshot() {
+        LibrarySnapshot.Fingerprint fingerprint = new LibrarySnapshot.Fingerprint();
+        List<LibrarySnapshot.Entry> entries = new ArrayList<>();
+        for (Map.Entry<String, FileStamp> stamp : stamps.entrySet()) {
+            FileStamp value = stamp.getValue();
+            fingerprint.add(stamp.getKey(), value.size(), value.modified());
+            SavedBanner banner = bannersByFile.get(stamp.getKey());
+            if (banner != null) {
+                entries.add(new LibrarySnapshot.Entry(stamp.getKey(), value.size(), value.modified(), banner));
+            }
+        }
+        for (Map.Entry<String, SkippedFile> skipped : unreadable.entrySet()) {
+            if (stamps.containsKey(skipped.getKey())) {
+                continue;
+            }
+            SkippedFile value = skipped.getValue();
+            fingerprint.add(skipped.getKey(), value.size(), value.modified());
+            // Kept without a banner so the next snapshot still counts the file
+            entries.add(new LibrarySnapshot.Entry(skipped.getKey(), value.size(), value.modified(), null));
+        }
+        return new LibrarySnapshot(fingerprint.value(), entries);
+    }
+
+    /**
+     * Takes the banners from a snapshot that matches the directory, as if their files had been read.
+     */
+    public List<SavedBanner> restore(LibrarySnapshot snapshot) {
+        List<SavedBanner> result = new ArrayList<>(snapshot.getEntries().size());
+        for (LibrarySnapshot.Entry entry : snapshot.getEntries()) {
+            if (entry.file == null) {
+                continue;
+            }
+            if (entry.banner == null || entry.banner.getId() == null) {
+                unreadable.put(entry.file, new SkippedFile(entry.size, entry.modified));
+                continue;
+            }
+            stamps.put(entry.file, FileStamp.of(entry.banner, entry.size, entry.modified));
+            bannersByFile.put(entry.file, entry.banner);
+            result.add(entry.banner);
+        }
+        return result;
+    }
+
+    /**
+     * Writes the banner with the next revision. When another instance rewrote the file
+     * since we last saw it, the two edits are merged first; see {@link #merge}.
+     * The revision goes on a copy, since the banner itself is already published to readers.
+     */
+    @Override
+    public void save(SavedBanner banner) {
+        try {
+            Path bannerFile = directory.resolve(banner.getId() + ".json");
+            FileStamp base = stamps.get(bannerFile.getFileName().toString());
+            SavedBanner theirs = readConcurrentEdit(bannerFile, base);
+            if (theirs == null) {
+                SavedBanner written = banner.copy();
+                written.setRevision((base != null ? base.revision() : banner.getRevision()) + 1);
+                write(bannerFile, written);
+                return;
+            }
+            SavedBanner merged = merge(base, banner, theirs);
+            merged.setRevision(Math.max(theirs.getRevision(), base.revision()) + 1);
+            write(bannerFile, merged);
+            notifyMerged(merged);
+        } catch (IOException e) {
+            Loombook.LOGGER.error("Failed to save banner to disk", e);
+        }
+    }
+
+    /**
+     * Writes to a temporary file first and moves it into place, so a crash never leaves a
+     * half-written banner file behind.
+     */
+    private void write(Path bannerFile, SavedBanner banner) throws IOException {
+        Files.createDirectories(directory);
+        Path tempFile = bannerFile.resolveSibling(bannerFile.getFileName() + ".tmp");
+        try (Writer writer = Files.newBufferedWriter(tempFile)) {
+            GSON.toJson(banner, writer);
+        }
+        try {
+            Files.move(tempFile, bannerFile, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(tempFile, bannerFile, StandardCopyOption.REPLACE_EXISTING);
+        }
+        recordStamp(bannerFile, banner, Files.readAttributes(bannerFile, BasicFileAttributes.class));
+        Loombook.LOGGER.debug("Saved banner {} revision {} to disk", banner.getId(), banner.getRevision());
+    }
+
+    /**
+     * Returns the banner file's contents if another instance wrote a different revision
+     * since we last read or wrote it, or null if the file is ours (or gone). Files we have
+     * never seen, such as those in an export target, are simply overwritten.
+     */
+    private SavedBanner readConcurrentEdit(Path bannerFile, FileStamp base) {
+        if (base == null) {
+            return null;
+        }
+        BasicFileAttributes attributes;
+        try {
+            attributes = Files.readAttributes(bannerFile, BasicFileAttributes.class);
+        } catch (IOException e) {
+            return null;
+        }
+        if (base.matches(attributes)) {
+            return null;
+        }
+        SavedBanner theirs;
+        try (Reader reader = Files.newBufferedReader(bannerFile)) {
+            theirs = GSON.fromJson(reader, SavedBanner.class);
+        } catch (IOException | JsonParseException e) {
+            Loombook.LOGGER.warn("Overwriting unreadable banner file {}", bannerFile, e);
+            return null;
+        }
+        if (theirs == null || theirs.getRevision() == base.revision()) {
+            return null;
+        }
+        return theirs;
+    }
+
+    /**
+     * Three-way merge of the name and the design (base color and layers) against the
+     * version both sides started from. A field changed on one side only takes that side's
+     * value. When both sides changed the design differently, ours is kept and theirs is
+     * saved as a separate conflict copy; a conflicting name keeps ours.
+     */
+    private SavedBanner merge(FileStamp base, SavedBanner ours, SavedBanner theirs) throws IOException {
+        boolean ourName = !Objects.equals(base.name(), ours.getName());
+        boolean theirName = !Objects.equals(base.name(), theirs.getName());
+        boolean ourDesign = base.design() != ours.getFingerprint();
+        boolean theirDesign = base.design() != theirs.getFingerprint();
+
+        SavedBanner merged = new SavedBanner();
+        merged.setId(ours.getId());
+        merged.setCreatedAt(ours.getCreatedAt());
+        merged.setName(ourName || !theirName ? ours.getName() : theirs.getName());
+        SavedBanner design = ourDesign || !theirDesign ? ours : theirs;
+        merged.setBaseColor(design.getBaseColor());
+        merged.setLayers(new ArrayList<>(design.getLayers()));
+
+        if (ourDesign && theirDesign && ours.getFingerprint() != theirs.getFingerprint()) {
+            SavedBanner copy = new SavedBanner();
+            copy.setName(theirs.getDisplayName() + " (conflict)");
+            copy.setBaseColor(theirs.getBaseColor());
+            copy.setLayers(new ArrayList<>(theirs.getLayers()));
+            copy.setRevision(1);
+            write(directory.resolve(copy.getId() + ".json"), copy);
+            notifyMerged(copy);
+            Loombook.LOGGER.warn("Banner {} was edited by another instance too, kept their design as {}",
+                    ours.getId(), copy.getId());
+        } else if (ourName && theirName && !Objects.equals(ours.getName(), theirs.getName())) {
+            Loombook.LOGGER.warn("Banner {} was renamed by another instance too, keeping '{}'",
+                    ours.getId(), ours.getName());
+        } else {
+            Loombook.LOGGER.info("Merged banner {} with an edit from another instance", ours.getId());
+        }
+        return merged;
+    }
+
+    private void notifyMerged(SavedBanner banner) {
+        if (mergeListener != null) {
+            mergeExecutor.execute(() -> mergeListener.bannerChanged(banner));
+        }
+    }
+
+    /**
+     * Deletes the banner file, unless another instance edited it since we last saw it;
+     * that edit wins and the banner comes back.
+     */
+    @Override
+    public void delete(String id) {
+        try {
+            Path bannerFile = directory.resolve(id + ".json");
+            FileStamp base = stamps.remove(bannerFile.getFileName().toString());
+            bannersByFile.remove(bannerFile.getFileName().toString());
+            unreadable.remove(bannerFile.getFileName().toString());
+            SavedBanner theirs = readConcurrentEdit(bannerFile, base);
+            if (theirs != null) {
+                recordStamp(bannerFile, theirs, Files.readAttributes(bannerFile, BasicFileAttributes.class));
+                notifyMerged(theirs);
+                Loombook.LOGGER.info("Kept banner {}: it was edited by another instance", id);
+                return;
+            }
+            Files.deleteIfExists(bannerFile);
+        } catch (IOException e) {
+            Loombook.LOGGER.error("Failed to delete banner file for id: {}", id, e);
+        }
+    }
+
+    /**
+     * Writes the metadata index so the next start can skip reading unchanged banner files.
+     */
+    @Override
+    public void close() {
+        if (layerCache == null) {
+            return;
+        }
+        List<BannerMetadataIndex.Entry> entries = new ArrayList<>();
+        for (Map.Entry<String, FileStamp> stamp : stamps.entrySet()) {
+            SavedBanner banner = bannersByFile.get(stamp.getKey());
+            if (banner != null) {
+                entries.add(BannerMetadataIndex.Entry.of(stamp.getKey(), stamp.getValue().size(),
+                        stamp.getValue().modified(), banner));
+            }
+        }
+        lock.run(() -> BannerMetadataIndex.write(directory.resolve(BannerMetadataIndex.INDEX_FILE), entries));
+    }
+}
@@ -0,0 +1,28 @@
+package dogwhale65.loombook.data;
+
+/**
+ * What to do when a saved or imported banner has the same design as one already in the library.
+ */
+public enum DuplicatePolicy {
+    /** Drop the new banner and keep the existing one untouched. */
+    SKIP("Skip"),
+    /** Keep the existing banner, taking the new name if the existing one has none. */
+    MERGE("Merge"),
+    /** Add the new banner anyway. */
+    KEEP_BOTH("Keep both");
+
+    private final String displayName;
+
+    DuplicatePolicy(String displayName) {
+        this.displayName = displayName;
+    }
+
+    public String getDisplayName() {
+        return displayName;
+    }
+
+    public DuplicatePolicy next() {
+        DuplicatePolicy[] values = values();
+        return values[(ordinal() + 1) % values.length];
+    }
+}
@@ -0,0 +1,534 @@
+package dogwhale65.loombook.data;
+
+import net.minecraft.util.DyeColor;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Single-pass parser for {@code /give} commands that hand out banners or shields. Reads
+ * the item component syntax ({@code white_banner[banner_patterns=[...],custom_name=...]})
+ * as well as the legacy NBT form ({@code white_banner{BlockEntityTag:{Patterns:[...]}}})
+ * with its short pattern codes and numeric colors. SNBT keys and strings may be quoted or
+ * bare, and components that don't describe the banner are skipped without being built.
+ * The command prefix is optional, so a bare item stack is accepted too.
+ */
+public final class GiveCommandParser {
+    // Pattern codes used by banner NBT before item components
+    private static final Map<String, String> LEGACY_PATTERNS = Map.ofEntries(
+            Map.entry("b", "base"), Map.entry("bl", "square_bottom_left"), Map.entry("br", "square_bottom_right"),
+            Map.entry("tl", "square_top_left"), Map.entry("tr", "square_top_right"), Map.entry("bs", "stripe_bottom"),
+            Map.entry("ts", "stripe_top"), Map.entry("ls", "stripe_left"), Map.entry("rs", "stripe_right"),
+            Map.entry("cs", "stripe_center"), Map.entry("ms", "stripe_middle"), Map.entry("drs", "stripe_downright"),
+            Map.entry("dls", "stripe_downleft"), Map.entry("ss", "small_stripes"), Map.entry("cr", "cross"),
+            Map.entry("sc", "straight_cross"), Map.entry("bt", "triangle_bottom"), Map.entry("tt", "triangle_top"),
+            Map.entry("bts", "triangles_bottom"), Map.entry("tts", "triangles_top"), Map.entry("ld", "diagonal_left"),
+            Map.entry("rd", "diagonal_up_right"), Map.entry("lud", "diagonal_up_left"), Map.entry("rud", "diagonal_right"),
+            Map.entry("mc", "circle"), Map.entry("mr", "rhombus"), Map.entry("vh", "half_vertical"),
+            Map.entry("hh", "half_horizontal"), Map.entry("vhr", "half_vertical_right"),
+            Map.entry("hhb", "half_horizontal_bottom"), Map.entry("bo", "border"), Map.entry("cbo", "curly_border"),
+            Map.entry("gra", "gradient"), Map.entry("gru", "gradient_up"), Map.entry("bri", "bricks"),
+            Map.entry("glb", "globe"), Map.entry("cre", "creeper"), Map.entry("sku", "skull"),
+            Map.entry("flo", "flower"), Map.entry("moj", "mojang"), Map.entry("pig", "piglin"));
+    private static final DyeColor[] COLORS_BY_ID = DyeColor.values();
+
+    private final String input;
+    private int pos;
+
+    /**
+     * Where and why parsing failed. Positions are character offsets into the command.
+     */
+    public record ParseError(int position, String message) {
+        public String describe() {
+            return message + " at column " + (position + 1);
+        }
+    }
+
+    /**
+     * Either a banner or an error.
+     */
+    public record Result(SavedBanner banner, ParseError error) {
+        public boolean isSuccess() {
+            return banner != null;
+        }
+    }
+
+    private static final class ParseException extends Exception {
+        final int position;
+
+        ParseException(int position, String message) {
+            super(message, null, false, false);
+            this.position = position;
+        }
+    }
+
+    private GiveCommandParser(String input) {
+        this.input = input;
+    }
+
+    public static Result parse(String command) {
+        GiveCommandParser parser = new GiveCommandParser(command);
+        try {
+            return new Result(parser.parseCommand(), null);
+        } catch (ParseException e) {
+            return new Result(null, new ParseError(e.position, e.getMessage()));
+        }
+    }
+
+    private SavedBanner parseCommand() throws ParseException {
+        skipWhitespace();
+        if (peek() == '/') {
+            pos++;
+        }
+        if (input.startsWith("give", pos) && (pos + 4 == input.length() || Character.isWhitespace(input.charAt(pos + 4)))) {
+            pos += 4;
+            skipWhitespace();
+            skipTarget();
+            skipWhitespace();
+        }
+
+        int itemStart = pos;
+        String item = stripNamespace(readResourceLocation());
+        DyeColor baseColor = null;
+        boolean shield = item.equals("shield");
+        if (item.endsWith("_banner")) {
+            baseColor = colorById(item.substring(0, item.length() - "_banner".length()));
+        }
+        if (baseColor == null && !shield) {
+            throw new ParseException(itemStart, "Not a banner: " + item);
+        }
+
+        String name = null;
+        List<BannerPatternLayer> layers = new ArrayList<>();
+        if (peek() == '[') {
+            pos++;
+            skipWhitespace();
+            while (peek() != ']') {
+                if (peek() == '!') {
+                    // Component removal
+                    pos++;
+                    readResourceLocation();
+                } else {
+                    int keyStart = pos;
+                    String component = stripNamespace(readResourceLocation());
+                    skipWhitespace();
+                    expect('=');
+                    skipWhitespace();
+                    switch (component) {
+                        case "banner_patterns" -> readComponentPatterns(layers);
+                        case "base_color" -> {
+                            int valueStart = pos;
+                            baseColor = requireColor(readValue(), valueStart);
+                        }
+                        case "custom_name", "item_name" -> {
+                            String text = textOf(readValue());
+                            if (text != null && (name == null || component.equals("custom_name"))) {
+                                name = text;
+                            }
+                        }
+                        default -> {
+                            if (component.isEmpty()) {
+                                throw new ParseException(keyStart, "Expected a component id");
+                            }
+                            skipValue();
+                        }
+                    }
+                }
+                skipWhitespace();
+                if (peek() == ',') {
+                    pos++;
+                    skipWhitespace();
+                } else if (peek() != ']') {
+                    throw new ParseException(pos, "Expected ',' or ']'");
+                }
+            }
+            pos++;
+        }
+        if (peek() == '{') {
+            int tagStart = pos;
+            Object tag = readValue();
+            if (tag instanceof Map<?, ?> compound) {
+                Object entity = compound.get("BlockEntityTag");
+                if (entity instanceof Map<?, ?> blockEntity) {
+                    if (blockEntity.get("Base") != null) {
+                        baseColor = requireColor(blockEntity.get("Base"), tagStart);
+                    }
+                    readLegacyPatterns(blockEntity.get("Patterns"), layers, tagStart);
+                }
+                if (compound.get("display") instanceof Map<?, ?> display) {
+                    String text = textOf(display.get("Name"));
+                    if (text != null && name == null) {
+                        name = text;
+                    }
+                }
+            }
+        }
+        skipWhitespace();
+        if (pos < input.length()) {
+            // Optional count
+            int countStart = pos;
+            while (pos < input.length() && Character.isDigit(input.charAt(pos))) {
+                pos++;
+            }
+            skipWhitespace();
+            if (countStart == pos || pos < input.length()) {
+                throw new ParseException(pos, "Unexpected text after the item");
+            }
+        }
+
+        return new SavedBanner(name, baseColor != null ? baseColor : DyeColor.WHITE, layers);
+    }
+
+    private void readComponentPatterns(List<BannerPatternLayer> layers) throws ParseException {
+        int listStart = pos;
+        if (!(readValue() instanceof List<?> list)) {
+            throw new ParseException(listStart, "banner_patterns must be a list");
+        }
+        for (Object element : list) {
+            if (!(element instanceof Map<?, ?> layer) || !(layer.get("pattern") instanceof String pattern)) {
+                throw new ParseException(listStart, "Each banner pattern needs a pattern id");
+            }
+            DyeColor color = requireColor(layer.get("color"), listStart);
+            layers.add(BannerPatternLayer.of(namespaced(pattern), color));
+        }
+    }
+
+    private void readLegacyPatterns(Object patterns, List<BannerPatternLayer> layers, int position) throws ParseException {
+        if (patterns == null) {
+            return;
+        }
+        if (!(patterns instanceof List<?> list)) {
+            throw new ParseException(position, "Patterns must be a list");
+        }
+        for (Object element : list) {
+            if (!(element instanceof Map<?, ?> layer) || !(layer.get("Pattern") instanceof String code)) {
+                throw new ParseException(position, "Each legacy pattern needs a Pattern code");
+            }
+            layers.add(BannerPatternLayer.of(legacyPattern(code), requireColor(layer.get("Color"), position)));
+        }
+    }
+
+    /**
+     * Resolves a legacy pattern code such as {@code "ss"} to its namespaced pattern id.
+     */
+    static String legacyPattern(String code) {
+        return namespaced(LEGACY_PATTERNS.getOrDefault(code, code));
+    }
+
+    /**
+     * Accepts a color name or, as in legacy NBT, a numeric dye id.
+     */
+    private static DyeColor requireColor(Object value, int position) throws ParseException {
+        DyeColor color = null;
+        if (value instanceof String id) {
+            color = colorById(id);
+        } else if (value instanceof Number number && number.intValue() >= 0 && number.intValue() < COLORS_BY_ID.length) {
+            color = COLORS_BY_ID[number.intValue()];
+        }
+        if (color == null) {
+            throw new ParseException(position, "Unknown dye color: " + value);
+        }
+        return color;
+    }
+
+    private static DyeColor colorById(String id) {
+        return BannerSymbols.isKnownColor(id) ? BannerSymbols.dyeColor(id) : null;
+    }
+
+    /**
+     * Plain text of a name: an SNBT text compound, or a string that may itself hold JSON text.
+     */
+    static String textOf(Object value) {
+        if (value instanceof Map<?, ?> compound) {
+            return compound.get("text") instanceof String text ? text : null;
+        }
+        if (!(value instanceof String text)) {
+            return null;
+        }
+        if (text.startsWith("{") || text.startsWith("\"")) {
+            try {
+                GiveCommandParser nested = new GiveCommandParser(text);
+                return textOf(nested.readValue());
+            } catch (ParseException e) {
+                return text;
+            }
+        }
+        return text;
+    }
+
+    private static String stripNamespace(String id) {
+        return id.startsWith("minecraft:") ? id.substring("minecraft:".length()) : id;
+    }
+
+    private static String namespaced(String id) {
+        return id.indexOf(':') >= 0 ? id : "minecraft:" + id;
+    }
+
+    // Lexing
+
+    private char peek() {
+        return pos < input.length() ? input.charAt(pos) : '\0';
+    }
+
+    private void expect(char c) throws ParseException {
+        if (peek() != c) {
+            throw new ParseException(pos, "Expected '" + c + "'");
+        }
+        pos++;
+    }
+
+    private void skipWhitespace() {
+        while (pos < input.length() && Character.isWhitespace(input.charAt(pos))) {
+            pos++;
+        }
+    }
+
+    /**
+     * Skips a player name or a selector such as {@code @a[tag=x,limit=1]}.
+     */
+    private void skipTarget() throws ParseException {
+        int start = pos;
+        while (pos < input.length() && !Character.isWhitespace(input.charAt(pos)) && input.charAt(pos) != '[') {
+            pos++;
+        }
+        if (peek() == '[') {
+            skipValue();
+        }
+        if (start == pos) {
+            throw new ParseException(pos, "Expected a target");
+        }
+    }
+
+    private static boolean isUnquotedChar(char c) {
+        return (c >= '0' && c <= '9') || (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z')
+                || c == '_' || c == '-' || c == '.' || c == '+' || c == ':' || c == '/';
+    }
+
+    private String readResourceLocation() throws ParseException {
+        int start = pos;
+        while (pos < input.length() && isUnquotedChar(input.charAt(pos))) {
+            pos++;
+        }
+        if (start == pos) {
+            throw new ParseException(pos, "Expected an id");
+        }
+        return input.substring(start, pos);
+    }
+
+    /**
+     * Reads an SNBT value: compounds become maps, lists and arrays become lists, numbers
+     * become {@link Number}s and everything else a string.
+     */
+    private Object readValue() throws ParseException {
+        skipWhitespace();
+        char c = peek();
+        if (c == '{') {
+            pos++;
+            Map<String, Object> compound = new LinkedHashMap<>();
+            skipWhitespace();
+            while (peek() != '}') {
+                String key = readKey();
+                skipWhitespace();
+                expect(':');
+                compound.put(key, readValue());
+                skipWhitespace();
+                if (peek() == ',') {
+                    pos++;
+                    skipWhitespace();
+                } else if (peek() != '}') {
+                    throw new ParseException(pos, "Expected ',' or '}'");
+                }
+            }
+            pos++;
+            return compound;
+        }
+        if (c == '[') {
+            pos++;
+            skipArrayType();
+            List<Object> list = new ArrayList<>();
+            skipWhitespace();
+            while (peek() != ']') {
+                list.add(readValue());
+                skipWhitespace();
+                if (peek() == ',') {
+                    pos++;
+                    skipWhitespace();
+                } else if (peek() != ']') {
+                    throw new ParseException(pos, "Expected ',' or ']'");
+                }
+            }
+            pos++;
+            return list;
+        }
+        if (c == '"' || c == '\'') {
+            return readQuoted();
+        }
+        int start = pos;
+        String token = readUnquoted();
+        Number number = parseNumber(token);
+        if (number != null) {
+            return number;
+        }
+        if (token.equals("true") || token.equals("false")) {
+            return token.equals("true") ? 1 : 0;
+        }
+        if (token.isEmpty()) {
+            throw new ParseException(start, pos < input.length() ? "Unexpected '" + c + "'" : "Unexpected end of input");
+        }
+        return token;
+    }
+
+    /**
+     * Moves past a value without building it.
+     */
+    private void skipValue() throws ParseException {
+        skipWhitespace();
+        char c = peek();
+        if (c == '"' || c == '\'') {
+            skipQuoted();
+            return;
+        }
+        if (c != '{' && c != '[') {
+            if (readUnquotedLength() == 0) {
+                throw new ParseException(pos, pos < input.length() ? "Unexpected '" + c + "'" : "Unexpected end of input");
+            }
+            return;
+        }
+        // Track nesting only; quoted strings may contain brackets
+        int depth = 0;
+        int start = pos;
+        while (pos < input.length()) {
+            char ch = input.charAt(pos);
+            if (ch == '"' || ch == '\'') {
+                skipQuoted();
+                continue;
+            }
+            if (ch == '{' || ch == '[') {
+                depth++;
+            } else if (ch == '}' || ch == ']') {
+                depth--;
+                if (depth == 0) {
+                    pos++;
+                    return;
+                }
+            }
+            pos++;
+        }
+        throw new ParseException(start, "Unclosed '" + c + "'");
+    }
+
+    private void skipArrayType() {
+        // Typed arrays: [B;1b,2b], [I;1,2], [L;1l]
+        if (pos + 1 < input.length() && input.charAt(pos + 1) == ';' && "BIL".indexOf(input.charAt(pos)) >= 0) {
+            pos += 2;
+        }
+    }
+
+    private String readKey() throws ParseException {
+        char c = peek();
+        if (c == '"' || c == '\'') {
+            return readQuoted();
+        }
+        int start = pos;
+        // Unlike ids, bare keys stop at the ':' separator
+        while (pos < input.length() && isUnquotedChar(input.charAt(pos)) && input.charAt(pos) != ':') {
+            pos++;
+        }
+        String key = input.substring(start, pos);
+        if (key.isEmpty()) {
+            throw new ParseException(start, "Expected a key");
+        }
+        return key;
+    }
+
+    private String readUnquoted() {
+        int start = pos;
+        readUnquotedLength();
+        return input.substring(start, pos);
+    }
+
+    private int readUnquotedLength() {
+        int start = pos;
+        while (pos < input.length() && isUnquotedChar(input.charAt(pos))) {
+            pos++;
+        }
+        return pos - start;
+    }
+
+    private String readQuoted() throws ParseException {
+        char quote = input.charAt(pos);
+        int start = pos++;
+        StringBuilder text = null;
+        int runStart = pos;
+        while (pos < input.length()) {
+            char c = input.charAt(pos);
+            if (c == quote) {
+                String result = text == null
+                        ? input.substring(runStart, pos)
+                        : text.append(input, runStart, pos).toString();
+                pos++;
+                return result;
+            }
+            if (c == '\\') {
+                if (text == null) {
+                    text = new StringBuilder();
+                }
+                text.append(input, runStart, pos);
+                if (pos + 1 >= input.length()) {
+                    break;
+                }
+                text.append(input.charAt(pos + 1));
+                pos += 2;
+                runStart = pos;
+                continue;
+            }
+            pos++;
+        }
+        throw new ParseException(start, "Unclosed string");
+    }
+
+    private void skipQuoted() throws ParseException {
+        char quote = input.charAt(pos);
+        int start = pos++;
+        while (pos < input.length()) {
+            char c = input.charAt(pos);
+            if (c == '\\') {
+                pos += 2;
+                continue;
+            }
+            pos++;
+            if (c == quote) {
+                return;
+            }
+        }
+        throw new ParseException(start, "Unclosed string");
+    }
+
+    /**
+     * Parses SNBT numbers such as {@code 5}, {@code 5b}, {@code -2s} or {@code 1.5f}; returns null for other tokens.
+     */
+    private static Number parseNumber(String token) {
+        if (token.isEmpty()) {
+            return null;
+        }
+        char first = token.charAt(0);
+        if (!(first >= '0' && first <= '9') && first != '-' && first != '+' && first != '.') {
+            return null;
+        }
+        String digits = token;
+        char last = Character.toLowerCase(token.charAt(token.length() - 1));
+        if ("bslfd".indexOf(last) >= 0) {
+            digits = token.substring(0, token.length() - 1);
+        }
+        try {
+            if (digits.indexOf('.') >= 0 || digits.indexOf('e') >= 0 || digits.indexOf('E') >= 0 || last == 'f' || last == 'd') {
+                return Double.parseDouble(digits);
+            }
+            return Long.parseLong(digits);
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,37 @@
+package dogwhale65.loombook.data;
+
+import java.nio.file.Path;
+
+/**
+ * A problem found in the banner store by {@link IntegrityScanner}.
+ */
+public record IntegrityIssue(Type type, Path file, String bannerId, String detail) {
+    public enum Type {
+        /** The file is not valid banner JSON. Can only be quarantined. */
+        MALFORMED(false),
+        /** The banner has no id, or its id doesn't match the file name. */
+        ID_MISMATCH(true),
+        /** Another file already holds a banner with the same id. */
+        DUPLICATE_ID(true),
+        /** The base color or a layer color is not a dye color. */
+        UNKNOWN_DYE(true),
+        /** A layer has no pattern id. */
+        EMPTY_PATTERN(true),
+        /** A temporary file left behind by an interrupted write. */
+        ORPHAN_TEMP(true);
+
+        private final boolean repairable;
+
+        Type(boolean repairable) {
+            this.repairable = repairable;
+        }
+
+        public boolean isRepairable() {
+            return repairable;
+        }
+    }
+
+    public String describe() {
+        return file.getFileName() + ": " + detail;
+    }
+}
@@ -0,0 +1,386 @@
+package dogwhale65.loombook.data;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonParseException;
+import com.google.gson.reflect.TypeToken;
+import dogwhale65.loombook.Loombook;
+import dogwhale65.loombook.config.LoombookConfig;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+/**
+ * Checks the per-file banner store for broken entries: malformed JSON, missing or
+ * duplicated ids, unknown dye colors, empty pattern ids and temporary files left by
+ * interrupted writes. Files are checked in parallel off the client thread. Each file's
+ * CRC-32 and findings are remembered in a checksum file, so unchanged files are not
+ * parsed again on the next scan.
+ */
+public class IntegrityScanner {
+    public static final String CHECKSUM_FILE = "library.checksums";
+
+    private static final Gson GSON = new Gson();
+    // Temp files younger than this may belong to a write that is still in progress
+    private static final long ORPHAN_AGE_MILLIS = 60_000;
+
+    private final Path directory;
+    private final Path quarantine;
+
+    /**
+     * Outcome of a scan.
+     */
+    public record Report(List<IntegrityIssue> issues, int filesChecked, int filesSkipped, long millis) {
+    }
+
+    private static class Checksum {
+        long size;
+        long modified;
+        long crc;
+        String id;
+        List<IntegrityIssue.Type> types = new ArrayList<>();
+        List<String> details = new ArrayList<>();
+    }
+
+    public IntegrityScanner(Path directory, Path quarantine) {
+        this.directory = directory;
+        this.quarantine = quarantine;
+    }
+
+    /**
+     * Scans on a background thread.
+     */
+    public CompletableFuture<Report> scanAsync() {
+        return CompletableFuture.supplyAsync(this::scan, BackgroundTasks.executor());
+    }
+
+    public Report scan() {
+        long start = System.nanoTime();
+        List<Path> bannerFiles = new ArrayList<>();
+        List<Path> tempFiles = new ArrayList<>();
+        if (Files.isDirectory(directory)) {
+            try (Stream<Path> listing = Files.list(directory)) {
+                listing.forEach(file -> {
+                    String name = file.getFileName().toString();
+                    if (name.endsWith(".json")) {
+                        bannerFiles.add(file);
+                    } else if (name.endsWith(".tmp")) {
+                        tempFiles.add(file);
+                    }
+                });
+            } catch (IOException e) {
+                Loombook.LOGGER.error("Failed to list banner directory for integrity scan", e);
+            }
+        }
+
+        Map<String, Checksum> previous = readChecksums();
+        Map<String, Checksum> current = new ConcurrentHashMap<>();
+        ForkJoinPool pool = new ForkJoinPool(LoombookConfig.getInstance().getLoadThreads());
+        try {
+            pool.submit(() -> bannerFiles.parallelStream().forEach(file -> {
+                String name = file.getFileName().toString();
+                Checksum checksum = check(file, previous.get(name));
+                if (checksum != null) {
+                    current.put(name, checksum);
+                }
+            })).join();
+        } finally {
+            pool.shutdown();
+        }
+
+        int skipped = 0;
+        List<IntegrityIssue> issues = new ArrayList<>();
+        Map<String, List<String>> filesById = new HashMap<>();
+        for (Path file : bannerFiles) {
+            String name = file.getFileName().toString();
+            Checksum checksum = current.get(name);
+            if (checksum == null) {
+                continue;
+            }
+            if (checksum == previous.get(name)) {
+                skipped++;
+            }
+            for (int i = 0; i < checksum.types.size(); i++) {
+                issues.add(new IntegrityIssue(checksum.types.get(i), file, checksum.id, checksum.details.get(i)));
+            }
+            if (checksum.id != null) {
+                filesById.computeIfAbsent(checksum.id, id -> new ArrayList<>()).add(name);
+            }
+        }
+
+        // The file named after the id keeps it; every other holder is a duplicate
+        for (Map.Entry<String, List<String>> entry : filesById.entrySet()) {
+            List<String> holders = entry.getValue();
+            if (holders.size() < 2) {
+                continue;
+            }
+            String owner = holders.contains(entry.getKey() + ".json") ? entry.getKey() + ".json" : holders.getFirst();
+            for (String holder : holders) {
+                if (!holder.equals(owner)) {
+                    issues.add(new IntegrityIssue(IntegrityIssue.Type.DUPLICATE_ID, directory.resolve(holder),
+                            entry.getKey(), "id " + entry.getKey() + " is also used by " + owner));
+                }
+            }
+        }
+
+        long now = System.currentTimeMillis();
+        for (Path file : tempFiles) {
+            try {
+                if (now - Files.getLastModifiedTime(file).toMillis() > ORPHAN_AGE_MILLIS) {
+                    issues.add(new IntegrityIssue(IntegrityIssue.Type.ORPHAN_TEMP, file, null,
+                            "leftover temporary file"));
+                }
+            } catch (IOException e) {
+                // Removed while we were looking
+            }
+        }
+
+        writeChecksums(current);
+        issues.sort(Comparator.comparing((IntegrityIssue issue) -> issue.file().getFileName().toString())
+                .thenComparing(IntegrityIssue::type));
+        long millis = (System.nanoTime() - start) / 1_000_000;
+        Loombook.LOGGER.info("Integrity scan of {} files found {} issues in {} ms ({} unchanged)",
+                bannerFiles.size(), issues.size(), millis, skipped);
+        return new Report(issues, bannerFiles.size(), skipped, millis);
+    }
+
+    /**
+     * Checks one file, reusing the previous result when the file is unchanged: by size and
+     * modification time without reading it, or by checksum when only the timestamp moved.
+     */
+    private Checksum check(Path file, Checksum previous) {
+        try {
+            BasicFileAttributes attributes = Files.readAttributes(file, BasicFileAttributes.class);
+            long modified = attributes.lastModifiedTime().toMillis();
+            if (previous != null && previous.size == attributes.size() && previous.modified == modified) {
+                return previous;
+            }
+
+            byte[] content = Files.readAllBytes(file);
+            CRC32 crc = new CRC32();
+            crc.update(content);
+            if (previous != null && previous.crc == crc.getValue() && previous.size == content.length) {
+                previous.modified = modified;
+                return previous;
+            }
+
+            Checksum checksum = new Checksum();
+            checksum.size = content.length;
+            checksum.modified = modified;
+            checksum.crc = crc.getValue();
+            inspect(file, new String(content, StandardCharsets.UTF_8), checksum);
+            return checksum;
+        } catch (IOException e) {
+            Loombook.LOGGER.debug("Skipping {} during integrity scan", file, e);
+            return null;
+        }
+    }
+
+    private static void inspect(Path file, String json, Checksum checksum) {
+        SavedBanner banner;
+        try {
+            banner = GSON.fromJson(json, SavedBanner.class);
+        } catch (JsonParseException e) {
+            checksum.types.add(IntegrityIssue.Type.MALFORMED);
+            checksum.details.add("not valid JSON");
+            return;
+        }
+        if (banner == null) {
+            checksum.types.add(IntegrityIssue.Type.MALFORMED);
+            checksum.details.add("empty file");
+            return;
+        }
+
+        checksum.id = banner.getId();
+        String expected = stem(file);
+        if (banner.getId() == null || banner.getId().isBlank()) {
+            checksum.types.add(IntegrityIssue.Type.ID_MISMATCH);
+            checksum.details.add("banner has no id");
+        } else if (!banner.getId().equals(expected)) {
+            checksum.types.add(IntegrityIssue.Type.ID_MISMATCH);
+            checksum.details.add("id " + banner.getId() + " does not match the file name");
+        }
+
+        if (!BannerSymbols.isKnownColor(banner.getBaseColor())) {
+            checksum.types.add(IntegrityIssue.Type.UNKNOWN_DYE);
+            checksum.details.add("unknown base color " + banner.getBaseColor());
+        }
+        List<BannerPatternLayer> layers = banner.getLayers() != null ? banner.getLayers() : List.of();
+        for (int i = 0; i < layers.size(); i++) {
+            BannerPatternLayer layer = layers.get(i);
+            if (layer == null || layer.patternId() == null || layer.patternId().isBlank()) {
+                checksum.types.add(IntegrityIssue.Type.EMPTY_PATTERN);
+                checksum.details.add("layer " + (i + 1) + " has no pattern");
+            } else if (!BannerSymbols.isKnownColor(layer.dyeColor())) {
+                checksum.types.add(IntegrityIssue.Type.UNKNOWN_DYE);
+                checksum.details.add("layer " + (i + 1) + " has unknown color " + layer.dyeColor());
+            }
+        }
+    }
+
+    private static String stem(Path file) {
+        String name = file.getFileName().toString();
+        return name.endsWith(".json") ? name.substring(0, name.length() - 5) : name;
+    }
+
+    /**
+     * Fixes what can be fixed: temp files are deleted, broken layers dropped, unknown colors
+     * set to white and missing or clashing ids replaced, then each banner is written back to
+     * the file named after its id. Files that can't be repaired are quarantined.
+     * Returns the number of files touched.
+     */
+    public int repair(List<IntegrityIssue> issues) {
+        Map<Path, List<IntegrityIssue>> byFile = new LinkedHashMap<>();
+        for (IntegrityIssue issue : issues) {
+            byFile.computeIfAbsent(issue.file(), file -> new ArrayList<>()).add(issue);
+        }
+
+        DirectoryBannerBackend writer = new DirectoryBannerBackend(directory);
+        int touched = 0;
+        for (Map.Entry<Path, List<IntegrityIssue>> entry : byFile.entrySet()) {
+            Path file = entry.getKey();
+            List<IntegrityIssue> fileIssues = entry.getValue();
+            try {
+                if (fileIssues.stream().anyMatch(issue -> issue.type() == IntegrityIssue.Type.ORPHAN_TEMP)) {
+                    Files.deleteIfExists(file);
+                    touched++;
+                    continue;
+                }
+                if (fileIssues.stream().anyMatch(issue -> !issue.type().isRepairable())) {
+                    quarantine(file);
+                    touched++;
+                    continue;
+                }
+
+                SavedBanner banner;
+                try (Reader reader = Files.newBufferedReader(file)) {
+                    banner = GSON.fromJson(reader, SavedBanner.class);
+                }
+                if (banner == null) {
+                    quarantine(file);
+                    touched++;
+                    continue;
+                }
+                fixDesign(banner);
+                fixId(banner, file, fileIssues);
+                writer.save(banner);
+                if (!file.equals(directory.resolve(banner.getId() + ".json"))) {
+                    Files.deleteIfExists(file);
+                }
+                touched++;
+            } catch (IOException | JsonParseException e) {
+                Loombook.LOGGER.error("Failed to repair {}", file, e);
+            }
+        }
+        Loombook.LOGGER.info("Repaired {} banner files", touched);
+        return touched;
+    }
+
+    private static void fixDesign(SavedBanner banner) {
+        if (!BannerSymbols.isKnownColor(banner.getBaseColor())) {
+            banner.setBaseColor("white");
+        }
+        List<BannerPatternLayer> layers = new ArrayList<>();
+        for (BannerPatternLayer layer : banner.getLayers() != null ? banner.getLayers() : List.<BannerPatternLayer>of()) {
+            if (layer == null || layer.patternId() == null || layer.patternId().isBlank()) {
+                continue;
+            }
+            layers.add(BannerSymbols.isKnownColor(layer.dyeColor())
+                    ? layer
+                    : new BannerPatternLayer(layer.patternId(), "white"));
+        }
+        banner.setLayers(layers);
+    }
+
+    private void fixId(SavedBanner banner, Path file, List<IntegrityIssue> fileIssues) {
+        boolean duplicate = fileIssues.stream().anyMatch(issue -> issue.type() == IntegrityIssue.Type.DUPLICATE_ID);
+        if (duplicate) {
+            banner.setId(UUID.randomUUID().toString());
+            return;
+        }
+        if (banner.getId() == null || banner.getId().isBlank()) {
+            // Adopt the file name when no other file claims it
+            String stem = stem(file);
+            banner.setId(stem.isBlank() ? UUID.randomUUID().toString() : stem);
+            return;
+        }
+        Path target = directory.resolve(banner.getId() + ".json");
+        if (!target.equals(file) && Files.exists(target)) {
+            banner.setId(UUID.randomUUID().toString());
+        }
+    }
+
+    /**
+     * Moves every affected file out of the banner directory so it is no longer loaded.
+     * Returns the number of files moved.
+     */
+    public int quarantine(List<IntegrityIssue> issues) {
+        int moved = 0;
+        for (Path file : issues.stream().map(IntegrityIssue::file).distinct().toList()) {
+            try {
+                quarantine(file);
+                moved++;
+            } catch (IOException e) {
+                Loombook.LOGGER.error("Failed to quarantine {}", file, e);
+            }
+        }
+        return moved;
+    }
+
+    private void quarantine(Path file) throws IOException {
+        if (!Files.exists(file)) {
+            return;
+        }
+        Files.createDirectories(quarantine);
+        Path target = quarantine.resolve(System.currentTimeMillis() + "-" + file.getFileName());
+        Files.move(file, target, StandardCopyOption.REPLACE_EXISTING);
+        Loombook.LOGGER.warn("Quarantined {} to {}", file.getFileName(), target);
+    }
+
+    private Map<String, Checksum> readChecksums() {
+        Path file = directory.resolve(CHECKSUM_FILE);
+        if (Files.exists(file)) {
+            try (Reader reader = Files.newBufferedReader(file)) {
+                Map<String, Checksum> checksums = GSON.fromJson(reader,
+                        new TypeToken<Map<String, Checksum>>() {}.getType());
+                if (checksums != null) {
+                    checksums.values().removeIf(Objects::isNull);
+                    return checksums;
+                }
+            } catch (IOException | JsonParseException e) {
+                Loombook.LOGGER.warn("Ignoring unreadable checksum file {}", file, e);
+            }
+        }
+        return new HashMap<>();
+    }
+
+    private void writeChecksums(Map<String, Checksum> checksums) {
+        Path file = directory.resolve(CHECKSUM_FILE);
+        try {
+            Files.createDirectories(directory);
+            try (Writer writer = Files.newBufferedWriter(file)) {
+                GSON.toJson(checksums, writer);
+            }
+        } catch (IOException e) {
+            Loombook.LOGGER.error("Failed to write checksum file", e);
+        }
+    }
+}
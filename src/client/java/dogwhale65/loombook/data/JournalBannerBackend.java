@@ -0,0 +1,367 @@
+package dogwhale65.loombook.data;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonParseException;
+import dogwhale65.loombook.Loombook;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Stores the whole library in a single append-only journal of put/rename/delete records.
+ * The journal is replayed on load and rewritten in the background as a snapshot of
+ * live banners once too many of its records have been superseded. The rewrite holds the
+ * collection's {@link LibraryLock} and replays the file again first, so records appended
+ * by another game instance sharing it are kept.
+ */
+public class JournalBannerBackend implements BannerBackend {
+    public static final String JOURNAL_FILE = "library.journal";
+
+    private static final Gson GSON = new Gson();
+    private static final String OP_PUT = "put";
+    private static final String OP_RENAME = "rename";
+    private static final String OP_DELETE = "delete";
+    // Small journals are cheap to replay, so don't bother compacting them
+    private static final int MIN_COMPACTION_RECORDS = 256;
+
+    private final Path journalFile;
+    private final double compactionRatio;
+    private final LibraryLock lock;
+    private final Map<String, SavedBanner> live = new LinkedHashMap<>();
+    private FileChannel channel;
+    private long recordCount = 0;
+    private boolean compacting = false;
+    private boolean claimed = false;
+    private boolean readOnly = false;
+    private ExecutorService compactor;
+
+    public JournalBannerBackend(Path directory, double compactionRatio) {
+        this.journalFile = directory.resolve(JOURNAL_FILE);
+        this.compactionRatio = compactionRatio;
+        this.lock = LibraryLock.forCollection(directory);
+    }
+
+    @Override
+    public boolean hasData() {
+        return Files.exists(journalFile);
+    }
+
+    @Override
+    public synchronized List<SavedBanner> loadAll() {
+        checkClaim(false);
+        live.clear();
+        recordCount = 0;
+
+        if (Files.exists(journalFile)) {
+            long start = System.nanoTime();
+            try {
+                recordCount = readJournal(live);
+            } catch (IOException e) {
+                Loombook.LOGGER.error("Failed to read banner journal {}", journalFile, e);
+            }
+            Loombook.LOGGER.info("Replayed {} journal records into {} saved banners in {} ms",
+                    recordCount, live.size(), (System.nanoTime() - start) / 1_000_000);
+        }
+
+        maybeCompact();
+        return new ArrayList<>(live.values());
+    }
+
+    /**
+     * Claims the collection on first use. Unlike the per-file layout, this backend can't
+     * pick up another game instance's writes, so a collection that instance has open is
+     * read-only here instead of shared. Writes to it throw {@link IllegalStateException}.
+     */
+    private void checkClaim(boolean writing) {
+        if (!claimed && !readOnly) {
+            claimed = lock.claim();
+            readOnly = !claimed;
+            if (readOnly) {
+                Loombook.LOGGER.error("Banner collection {} is open in another game instance and can only be "
+                        + "read here. Use the directory storage backend to share a collection.", journalFile.getParent());
+            }
+        }
+        if (writing && readOnly) {
+            throw new IllegalStateException("Banner collection " + journalFile.getParent() + " is open in another game instance");
+        }
+    }
+
+    /**
+     * Replays the journal file into the given map and returns how many records it held.
+     */
+    private long readJournal(Map<String, SavedBanner> banners) throws IOException {
+        long records = 0;
+        try (BufferedReader reader = Files.newBufferedReader(journalFile, StandardCharsets.UTF_8)) {
+            String line;
+            int lineNumber = 0;
+            while ((line = reader.readLine()) != null) {
+                lineNumber++;
+                if (line.isBlank()) {
+                    continue;
+                }
+                try {
+                    replay(banners, GSON.fromJson(line, JournalRecord.class));
+                    records++;
+                } catch (JsonParseException e) {
+                    // A torn final line is expected after a crash mid-append
+                    Loombook.LOGGER.warn("Skipping unreadable journal record on line {} of {}", lineNumber, journalFile);
+                }
+            }
+        }
+        return records;
+    }
+
+    private static void replay(Map<String, SavedBanner> banners, JournalRecord record) {
+        if (record == null || record.op == null) {
+            return;
+        }
+        switch (record.op) {
+            case OP_PUT -> {
+                if (record.banner != null && record.banner.getId() != null) {
+                    banners.put(record.banner.getId(), record.banner);
+                }
+            }
+            case OP_RENAME -> {
+                SavedBanner banner = banners.get(record.id);
+                if (banner != null) {
+                    banner.setName(record.name);
+                }
+            }
+            case OP_DELETE -> banners.remove(record.id);
+            default -> Loombook.LOGGER.warn("Unknown journal operation: {}", record.op);
+        }
+    }
+
+    @Override
+    public synchronized void save(SavedBanner banner) {
+        checkClaim(true);
+        live.put(banner.getId(), banner);
+        append(JournalRecord.put(banner));
+    }
+
+    /**
+     * Appends one put record per banner in a single write.
+     */
+    @Override
+    public synchronized void saveAll(List<SavedBanner> banners) {
+        checkClaim(true);
+        List<JournalRecord> records = new ArrayList<>(banners.size());
+        for (SavedBanner banner : banners) {
+            live.put(banner.getId(), banner);
+            records.add(JournalRecord.put(banner));
+        }
+        appendAll(records);
+    }
+
+    @Override
+    public synchronized void rename(SavedBanner banner) {
+        checkClaim(true);
+        if (!live.containsKey(banner.getId())) {
+            save(banner);
+            return;
+        }
+        append(JournalRecord.rename(banner.getId(), banner.getName()));
+    }
+
+    @Override
+    public synchronized void delete(String id) {
+        checkClaim(true);
+        if (live.remove(id) != null) {
+            append(JournalRecord.delete(id));
+        }
+    }
+
+    private void append(JournalRecord record) {
+        appendAll(List.of(record));
+    }
+
+    /**
+     * Writes records at the end of the journal. Appends hold the collection's lock, so the
+     * end of the file can't move while this writes there.
+     */
+    private void appendAll(List<JournalRecord> records) {
+        if (records.isEmpty()) {
+            return;
+        }
+        try {
+            if (channel == null) {
+                Files.createDirectories(journalFile.getParent());
+                // Not APPEND, since that rules out reading the last byte back
+                channel = FileChannel.open(journalFile, StandardOpenOption.CREATE,
+                        StandardOpenOption.READ, StandardOpenOption.WRITE);
+            }
+            long end = channel.size();
+            StringBuilder text = new StringBuilder();
+            if (endsInTornRecord(end)) {
+                // A crash mid-append, here or in another instance, left a partial last line.
+                // End it, so it is skipped on replay instead of swallowing the first record.
+                text.append('\n');
+            }
+            for (JournalRecord record : records) {
+                text.append(GSON.toJson(record)).append('\n');
+            }
+            ByteBuffer buffer = ByteBuffer.wrap(text.toString().getBytes(StandardCharsets.UTF_8));
+            while (buffer.hasRemaining()) {
+                end += channel.write(buffer, end);
+            }
+            recordCount += records.size();
+        } catch (IOException e) {
+            Loombook.LOGGER.error("Failed to append to banner journal", e);
+        }
+        maybeCompact();
+    }
+
+    private boolean endsInTornRecord(long size) throws IOException {
+        if (size == 0) {
+            return false;
+        }
+        ByteBuffer last = ByteBuffer.allocate(1);
+        return channel.read(last, size - 1) == 1 && last.get(0) != '\n';
+    }
+
+    private void maybeCompact() {
+        if (compacting || recordCount < MIN_COMPACTION_RECORDS) {
+            return;
+        }
+        double deadRatio = (double) (recordCount - live.size()) / recordCount;
+        if (deadRatio < compactionRatio) {
+            return;
+        }
+
+        compacting = true;
+        if (compactor == null) {
+            compactor = Executors.newSingleThreadExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "Loombook journal compactor");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+        compactor.execute(this::compact);
+    }
+
+    /**
+     * Rewrites the journal as one put record per live banner. Appends from this instance
+     * wait for the lock meanwhile, and the file is replayed again under it, so the rewrite
+     * covers every record in the file rather than only what this instance has seen.
+     */
+    private void compact() {
+        lock.run(() -> {
+            synchronized (this) {
+                try {
+                    rewriteJournal();
+                } finally {
+                    compacting = false;
+                }
+            }
+        });
+    }
+
+    private void rewriteJournal() {
+        Path temp = journalFile.resolveSibling(JOURNAL_FILE + ".compact");
+        try {
+            Map<String, SavedBanner> current = new LinkedHashMap<>();
+            if (Files.exists(journalFile)) {
+                readJournal(current);
+            }
+
+            try (Writer writer = Files.newBufferedWriter(temp, StandardCharsets.UTF_8)) {
+                for (SavedBanner banner : current.values()) {
+                    writer.write(GSON.toJson(JournalRecord.put(banner)));
+                    writer.write('\n');
+                }
+            }
+            try (FileChannel out = FileChannel.open(temp, StandardOpenOption.WRITE)) {
+                out.force(true);
+            }
+            if (channel != null) {
+                channel.close();
+                channel = null;
+            }
+            Files.move(temp, journalFile, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            live.clear();
+            live.putAll(current);
+            recordCount = current.size();
+            Loombook.LOGGER.info("Compacted banner journal to {} records", recordCount);
+        } catch (IOException e) {
+            Loombook.LOGGER.error("Failed to compact banner journal", e);
+            try {
+                Files.deleteIfExists(temp);
+            } catch (IOException ignored) {
+            }
+        }
+    }
+
+    @Override
+    public void close() {
+        if (compactor != null) {
+            compactor.shutdown();
+            try {
+                compactor.awaitTermination(10, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        synchronized (this) {
+            if (channel != null) {
+                try {
+                    channel.force(true);
+                    channel.close();
+                } catch (IOException e) {
+                    Loombook.LOGGER.error("Failed to close banner journal", e);
+                }
+                channel = null;
+            }
+            if (claimed) {
+                lock.release();
+                claimed = false;
+            }
+        }
+    }
+
+    /**
+     * One line of the journal.
+     */
+    private static class JournalRecord {
+        String op;
+        String id;
+        String name;
+        SavedBanner banner;
+
+        static JournalRecord put(SavedBanner banner) {
+            JournalRecord record = new JournalRecord();
+            record.op = OP_PUT;
+            record.banner = banner;
+            return record;
+        }
+
+        static JournalRecord rename(String id, String name) {
+            JournalRecord record = new JournalRecord();
+            record.op = OP_RENAME;
+            record.id = id;
+            record.name = name;
+            return record;
+        }
+
+        static JournalRecord delete(String id) {
+            JournalRecord record = new JournalRecord();
+            record.op = OP_DELETE;
+            record.id = id;
+            return record;
+        }
+    }
+}
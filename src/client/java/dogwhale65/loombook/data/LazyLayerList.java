@@ -0,0 +1,61 @@
+package dogwhale65.loombook.data;
+
+import java.util.AbstractList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.function.Supplier;
+
+/**
+ * Layer list of a banner loaded from the metadata index. The size is known up front;
+ * the layers themselves are fetched (through a {@link BannerLayerCache}) only when read.
+ * Serializing the banner reads the list, so writes always see the real layers.
+ * If the fetched layers don't match the indexed size, because the file changed or
+ * vanished behind the index's back, the list reads as empty from then on and the owner
+ * is told, so it can replace the banner; it never hands out layers that disagree with
+ * its size.
+ */
+class LazyLayerList extends AbstractList<BannerPatternLayer> {
+    private final int size;
+    private final Supplier<List<BannerPatternLayer>> source;
+    private final Runnable onMismatch;
+    private volatile boolean mismatched = false;
+
+    LazyLayerList(int size, Supplier<List<BannerPatternLayer>> source) {
+        this(size, source, () -> {
+        });
+    }
+
+    LazyLayerList(int size, Supplier<List<BannerPatternLayer>> source, Runnable onMismatch) {
+        this.size = size;
+        this.source = source;
+        this.onMismatch = onMismatch;
+    }
+
+    private List<BannerPatternLayer> layers() {
+        if (mismatched) {
+            return List.of();
+        }
+        List<BannerPatternLayer> layers = source.get();
+        if (layers.size() != size) {
+            mismatched = true;
+            onMismatch.run();
+            return List.of();
+        }
+        return layers;
+    }
+
+    @Override
+    public BannerPatternLayer get(int index) {
+        return layers().get(index);
+    }
+
+    @Override
+    public Iterator<BannerPatternLayer> iterator() {
+        return layers().iterator();
+    }
+
+    @Override
+    public int size() {
+        return mismatched ? 0 : size;
+    }
+}
@@ -0,0 +1,22 @@
+package dogwhale65.loombook.data;
+
+/**
+ * One change to the banner library, as delivered to {@link LibraryListener}s.
+ *
+ * @param banner   the banner after the change; null for {@link Type#RELOADED}
+ * @param previous the banner object it replaced, when a different object took its place
+ */
+public record LibraryChange(Type type, SavedBanner banner, SavedBanner previous) {
+    public enum Type {
+        ADDED,
+        REMOVED,
+        RENAMED,
+        LAYERS_CHANGED,
+        /** The whole library was replaced (loaded, restored or switched); rebuild from the snapshot. */
+        RELOADED
+    }
+
+    static LibraryChange of(Type type, SavedBanner banner) {
+        return new LibraryChange(type, banner, null);
+    }
+}
@@ -0,0 +1,16 @@
+package dogwhale65.loombook.data;
+
+import java.util.List;
+
+/**
+ * The changes made by one library operation, e.g. a single delete or a whole import.
+ *
+ * @param version  increases by one with every change set; a consumer that sees a gap
+ *                 should rebuild from {@code snapshot}
+ * @param snapshot the library right after these changes
+ */
+public record LibraryChangeSet(long version, List<LibraryChange> changes, List<SavedBanner> snapshot) {
+    public boolean isReload() {
+        return changes.stream().anyMatch(change -> change.type() == LibraryChange.Type.RELOADED);
+    }
+}
@@ -0,0 +1,9 @@
+package dogwhale65.loombook.data;
+
+/**
+ * Receives library changes on the client thread, in version order.
+ */
+@FunctionalInterface
+public interface LibraryListener {
+    void libraryChanged(LibraryChangeSet changes);
+}
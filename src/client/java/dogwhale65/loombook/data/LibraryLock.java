@@ -0,0 +1,172 @@
+package dogwhale65.loombook.data;
+
+import dogwhale65.loombook.Loombook;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Cross-process lock on a collection, so game instances sharing one config directory
+ * never write the same collection at the same time. There is one lock per file in this
+ * process, and its holders are serialized by the monitor, since a JVM cannot take the
+ * same file lock twice. The holder may run nested actions without locking again.
+ * Backends that can't pick up another instance's writes also {@link #claim} the
+ * collection for as long as they have it open.
+ */
+public class LibraryLock {
+    public static final String LOCK_FILE = "library.lock";
+    public static final String OWNER_FILE = "library.owner";
+
+    private static final Map<Path, LibraryLock> LOCKS = new HashMap<>();
+
+    private final Path file;
+    private FileChannel channel;
+    private int depth = 0;
+    // Claims have their own monitor: backends claim while holding theirs, which run() takes after this one
+    private final Object claimMonitor = new Object();
+    private FileChannel ownerChannel;
+    private FileLock ownerLock;
+    private int claims = 0;
+
+    private LibraryLock(Path file) {
+        this.file = file;
+    }
+
+    /**
+     * Returns the lock of the collection stored in the given banner directory.
+     */
+    public static LibraryLock forCollection(Path directory) {
+        Path file = directory.toAbsolutePath().normalize().resolveSibling(LOCK_FILE);
+        synchronized (LOCKS) {
+            return LOCKS.computeIfAbsent(file, LibraryLock::new);
+        }
+    }
+
+    /**
+     * Runs the action while holding the lock, blocking until other instances release it.
+     * If the lock file cannot be used the action still runs, unprotected, rather than
+     * losing the write.
+     */
+    public synchronized void run(Runnable action) {
+        if (depth > 0) {
+            // Already held by this thread further up the stack
+            depth++;
+            try {
+                action.run();
+            } finally {
+                depth--;
+            }
+            return;
+        }
+        FileLock lock = null;
+        try {
+            lock = channel().lock();
+        } catch (IOException | OverlappingFileLockException e) {
+            // Overlapping means something else in this process locked the file directly
+            Loombook.LOGGER.warn("Failed to lock {}, writing without it", file, e);
+        }
+        depth++;
+        try {
+            action.run();
+        } finally {
+            depth--;
+            if (lock != null) {
+                try {
+                    lock.release();
+                } catch (IOException e) {
+                    Loombook.LOGGER.debug("Failed to release {}", file, e);
+                }
+            }
+        }
+    }
+
+    /**
+     * Claims the collection for this game instance until {@link #release}. Returns false
+     * if another instance has claimed it. Claims within this process stack, so a
+     * collection reopened while its old copy is still closing keeps the claim. If the
+     * owner file cannot be used the claim is granted, as with {@link #run}.
+     */
+    public boolean claim() {
+        synchronized (claimMonitor) {
+            if (claims > 0) {
+                claims++;
+                return true;
+            }
+            Path ownerFile = file.resolveSibling(OWNER_FILE);
+            try {
+                Files.createDirectories(ownerFile.getParent());
+                ownerChannel = FileChannel.open(ownerFile, StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+                ownerLock = ownerChannel.tryLock();
+            } catch (IOException | OverlappingFileLockException e) {
+                Loombook.LOGGER.warn("Failed to claim {}, opening it without a claim", ownerFile, e);
+                closeOwnerChannel();
+            }
+            if (ownerChannel != null && ownerLock == null) {
+                closeOwnerChannel();
+                return false;
+            }
+            claims++;
+            return true;
+        }
+    }
+
+    /**
+     * Gives up a claim taken with {@link #claim}.
+     */
+    public void release() {
+        synchronized (claimMonitor) {
+            if (claims == 0 || --claims > 0) {
+                return;
+            }
+            if (ownerLock != null) {
+                try {
+                    ownerLock.release();
+                } catch (IOException e) {
+                    Loombook.LOGGER.debug("Failed to release {}", file.resolveSibling(OWNER_FILE), e);
+                }
+                ownerLock = null;
+            }
+            closeOwnerChannel();
+        }
+    }
+
+    private void closeOwnerChannel() {
+        if (ownerChannel != null) {
+            try {
+                ownerChannel.close();
+            } catch (IOException e) {
+                Loombook.LOGGER.debug("Failed to close {}", file.resolveSibling(OWNER_FILE), e);
+            }
+            ownerChannel = null;
+        }
+    }
+
+    private FileChannel channel() throws IOException {
+        if (channel == null || !channel.isOpen()) {
+            Files.createDirectories(file.getParent());
+            channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+        }
+        return channel;
+    }
+
+    /**
+     * Closes the lock file. It is opened again if the lock is used afterwards.
+     */
+    public synchronized void close() {
+        if (channel != null) {
+            try {
+                channel.close();
+            } catch (IOException e) {
+                Loombook.LOGGER.debug("Failed to close {}", file, e);
+            }
+            channel = null;
+        }
+    }
+}
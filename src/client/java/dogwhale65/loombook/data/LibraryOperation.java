@@ -0,0 +1,102 @@
+package dogwhale65.loombook.data;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * One reversible change to the library, holding only what is needed to apply it again
+ * or take it back: the banner and its position for adds and removes, the old and new
+ * values for renames and layer edits, and the individual changes for bulk operations.
+ */
+public class LibraryOperation {
+    public enum Type {
+        ADD,
+        REMOVE,
+        RENAME,
+        EDIT_LAYERS,
+        BATCH
+    }
+
+    final Type type;
+    SavedBanner banner;
+    int position;
+    String id;
+    String oldName;
+    String newName;
+    String oldBaseColor;
+    String newBaseColor;
+    List<BannerPatternLayer> oldLayers;
+    List<BannerPatternLayer> newLayers;
+    String label;
+    List<LibraryOperation> children;
+
+    private LibraryOperation(Type type) {
+        this.type = type;
+    }
+
+    static LibraryOperation add(SavedBanner banner, int position) {
+        LibraryOperation operation = new LibraryOperation(Type.ADD);
+        operation.banner = banner;
+        operation.position = position;
+        return operation;
+    }
+
+    static LibraryOperation remove(SavedBanner banner, int position) {
+        LibraryOperation operation = new LibraryOperation(Type.REMOVE);
+        operation.banner = banner;
+        operation.position = position;
+        return operation;
+    }
+
+    static LibraryOperation rename(String id, String oldName, String newName) {
+        LibraryOperation operation = new LibraryOperation(Type.RENAME);
+        operation.id = id;
+        operation.oldName = oldName;
+        operation.newName = newName;
+        return operation;
+    }
+
+    static LibraryOperation editLayers(String id, String oldBaseColor, List<BannerPatternLayer> oldLayers,
+                                       String newBaseColor, List<BannerPatternLayer> newLayers) {
+        LibraryOperation operation = new LibraryOperation(Type.EDIT_LAYERS);
+        operation.id = id;
+        operation.oldBaseColor = oldBaseColor;
+        operation.oldLayers = List.copyOf(oldLayers);
+        operation.newBaseColor = newBaseColor;
+        operation.newLayers = List.copyOf(newLayers);
+        return operation;
+    }
+
+    static LibraryOperation batch(String label) {
+        LibraryOperation operation = new LibraryOperation(Type.BATCH);
+        operation.label = label;
+        operation.children = new ArrayList<>();
+        return operation;
+    }
+
+    public Type getType() {
+        return type;
+    }
+
+    /**
+     * Short description for status messages, e.g. "Undid Import (240 changes)".
+     */
+    public String describe() {
+        return switch (type) {
+            case ADD -> "Add";
+            case REMOVE -> "Delete";
+            case RENAME -> "Rename";
+            case EDIT_LAYERS -> "Edit";
+            case BATCH -> label + " (" + children.size() + " changes)";
+        };
+    }
+
+    boolean isValid() {
+        return switch (type) {
+            case ADD, REMOVE -> banner != null && banner.getId() != null;
+            case RENAME -> id != null;
+            case EDIT_LAYERS -> id != null && oldLayers != null && newLayers != null;
+            case BATCH -> children != null && children.stream().allMatch(LibraryOperation::isValid);
+        };
+    }
+}
@@ -0,0 +1,117 @@
+package dogwhale65.loombook.data;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonParseException;
+import dogwhale65.loombook.Loombook;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.List;
+
+/**
+ * The whole per-file library consolidated into one file, written on shutdown and read
+ * back on the next start instead of parsing every banner file. It carries a fingerprint
+ * of the banner directory as it was when written, and is only trusted while the
+ * directory still has the same fingerprint.
+ */
+public class LibrarySnapshot {
+    public static final String SNAPSHOT_FILE = "library.snapshot";
+
+    private static final Gson GSON = new Gson();
+    private static final int VERSION = 1;
+
+    private int version;
+    private long fingerprint;
+    private List<Entry> entries;
+
+    /**
+     * One banner file and the banner it held, or null if the file could not be read.
+     */
+    public static class Entry {
+        String file;
+        long size;
+        long modified;
+        SavedBanner banner;
+
+        Entry(String file, long size, long modified, SavedBanner banner) {
+            this.file = file;
+            this.size = size;
+            this.modified = modified;
+            this.banner = banner;
+        }
+    }
+
+    /**
+     * Order-independent fingerprint over the names, sizes and modification times of a
+     * set of banner files, including how many there are.
+     */
+    public static class Fingerprint {
+        private long sum = 0;
+        private int count = 0;
+
+        public void add(String file, long size, long modified) {
+            sum += BannerFingerprint.finish(file.hashCode() * 0x9e3779b97f4a7c15L + size)
+                    ^ BannerFingerprint.finish(modified);
+            count++;
+        }
+
+        public long value() {
+            return BannerFingerprint.finish(sum + count);
+        }
+    }
+
+    public LibrarySnapshot(long fingerprint, List<Entry> entries) {
+        this.version = VERSION;
+        this.fingerprint = fingerprint;
+        this.entries = entries;
+    }
+
+    public long getFingerprint() {
+        return fingerprint;
+    }
+
+    public List<Entry> getEntries() {
+        return entries;
+    }
+
+    /**
+     * Reads a snapshot, or returns null if there is none or it can't be used.
+     */
+    public static LibrarySnapshot read(Path file) {
+        if (!Files.exists(file)) {
+            return null;
+        }
+        try (Reader reader = Files.newBufferedReader(file)) {
+            LibrarySnapshot snapshot = GSON.fromJson(reader, LibrarySnapshot.class);
+            if (snapshot != null && snapshot.version == VERSION && snapshot.entries != null) {
+                return snapshot;
+            }
+        } catch (IOException | JsonParseException e) {
+            Loombook.LOGGER.warn("Ignoring unreadable library snapshot {}", file, e);
+        }
+        return null;
+    }
+
+    public void write(Path file) {
+        Path temp = file.resolveSibling(SNAPSHOT_FILE + ".tmp");
+        try {
+            Files.createDirectories(file.getParent());
+            try (Writer writer = Files.newBufferedWriter(temp)) {
+                GSON.toJson(this, writer);
+            }
+            try {
+                Files.move(temp, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING);
+            }
+            Loombook.LOGGER.info("Wrote library snapshot with {} banners", entries.size());
+        } catch (IOException e) {
+            Loombook.LOGGER.error("Failed to write library snapshot", e);
+        }
+    }
+}
@@ -0,0 +1,57 @@
+package dogwhale65.loombook.data;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * A set of adds, removes and renames applied together by {@link BannerStorage#commit}:
+ * one library update, one undo step, one change event and one queued disk flush.
+ * Removes are applied first, then renames, then adds.
+ */
+public class LibraryTransaction {
+    final String label;
+    final Set<String> removals = new LinkedHashSet<>();
+    final Map<String, String> renames = new LinkedHashMap<>();
+    final List<Add> adds = new ArrayList<>();
+
+    record Add(SavedBanner banner, DuplicatePolicy policy) {
+    }
+
+    /**
+     * @param label names the change in the undo history, e.g. "Import"
+     */
+    public LibraryTransaction(String label) {
+        this.label = label;
+    }
+
+    /**
+     * Adds a banner, resolving a design that is already saved with the given policy. A banner
+     * whose id is already taken gets a new one.
+     */
+    public LibraryTransaction add(SavedBanner banner, DuplicatePolicy policy) {
+        adds.add(new Add(banner, policy));
+        return this;
+    }
+
+    public LibraryTransaction add(SavedBanner banner) {
+        return add(banner, DuplicatePolicy.KEEP_BOTH);
+    }
+
+    public LibraryTransaction remove(String id) {
+        removals.add(id);
+        return this;
+    }
+
+    public LibraryTransaction rename(String id, String name) {
+        renames.put(id, name);
+        return this;
+    }
+
+    public boolean isEmpty() {
+        return removals.isEmpty() && renames.isEmpty() && adds.isEmpty();
+    }
+}
@@ -0,0 +1,125 @@
+package dogwhale65.loombook.data;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonParseException;
+import com.google.gson.reflect.TypeToken;
+import dogwhale65.loombook.Loombook;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.List;
+
+/**
+ * Undo and redo stacks of library changes. A transaction such as an import is recorded as
+ * one batch entry, so it is undone in one step. Only the most recent entries are kept.
+ */
+public class OperationLog {
+    private static final Gson GSON = new Gson();
+
+    private final int limit;
+    private final Deque<LibraryOperation> undo = new ArrayDeque<>();
+    private final Deque<LibraryOperation> redo = new ArrayDeque<>();
+
+    public OperationLog(int limit) {
+        this.limit = Math.max(1, limit);
+    }
+
+    /**
+     * Records a change as the latest undo step. A batch with a single change is recorded
+     * as that change, and an empty one not at all.
+     */
+    public synchronized void record(LibraryOperation operation) {
+        if (operation.type == LibraryOperation.Type.BATCH && operation.children.size() <= 1) {
+            if (!operation.children.isEmpty()) {
+                push(operation.children.getFirst());
+            }
+            return;
+        }
+        push(operation);
+    }
+
+    private void push(LibraryOperation operation) {
+        undo.push(operation);
+        redo.clear();
+        while (undo.size() > limit) {
+            undo.removeLast();
+        }
+    }
+
+    /**
+     * Moves the latest change to the redo stack and returns it, or returns null if there is none.
+     */
+    public synchronized LibraryOperation takeUndo() {
+        LibraryOperation operation = undo.poll();
+        if (operation != null) {
+            redo.push(operation);
+        }
+        return operation;
+    }
+
+    /**
+     * Moves the latest undone change back to the undo stack and returns it, or returns null if there is none.
+     */
+    public synchronized LibraryOperation takeRedo() {
+        LibraryOperation operation = redo.poll();
+        if (operation != null) {
+            undo.push(operation);
+        }
+        return operation;
+    }
+
+    public synchronized boolean canUndo() {
+        return !undo.isEmpty();
+    }
+
+    public synchronized boolean canRedo() {
+        return !redo.isEmpty();
+    }
+
+    public synchronized void clear() {
+        undo.clear();
+        redo.clear();
+    }
+
+    /**
+     * Restores the undo stack written by {@link #write}. A missing or unreadable file leaves it empty.
+     */
+    public synchronized void read(Path file) {
+        if (!Files.exists(file)) {
+            return;
+        }
+        try (Reader reader = Files.newBufferedReader(file)) {
+            List<LibraryOperation> operations = GSON.fromJson(reader, new TypeToken<List<LibraryOperation>>() {}.getType());
+            if (operations != null) {
+                // Stored oldest first
+                for (LibraryOperation operation : operations) {
+                    if (operation != null && operation.isValid()) {
+                        push(operation);
+                    }
+                }
+            }
+        } catch (IOException | JsonParseException e) {
+            Loombook.LOGGER.warn("Ignoring unreadable undo history {}", file, e);
+        }
+    }
+
+    public synchronized void write(Path file) {
+        List<LibraryOperation> operations = new ArrayList<>(undo);
+        Collections.reverse(operations);
+        try {
+            Files.createDirectories(file.getParent());
+            try (Writer writer = Files.newBufferedWriter(file)) {
+                GSON.toJson(operations, writer);
+            }
+        } catch (IOException e) {
+            Loombook.LOGGER.error("Failed to save undo history", e);
+        }
+    }
+}
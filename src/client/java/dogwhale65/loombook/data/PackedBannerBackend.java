@@ -0,0 +1,276 @@
+package dogwhale65.loombook.data;
+
+import dogwhale65.loombook.Loombook;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Stores the library in a memory-mapped {@link PackedBannerFile}.
+ * Edits are kept as an overlay on top of the mapped file and folded into a new
+ * generation of the file shortly after the last edit and on shutdown. Generations are
+ * written side by side because a file that is still mapped cannot be replaced on Windows.
+ * A repack holds the collection's {@link LibraryLock} and builds on the newest generation
+ * on disk, so generations written by another game instance sharing the files are kept.
+ */
+public class PackedBannerBackend implements BannerBackend {
+    private static final String FILE_PREFIX = "library-";
+    private static final String FILE_SUFFIX = ".pack";
+    private static final long REPACK_DELAY_SECONDS = 5;
+
+    private final Path directory;
+    private final LibraryLock lock;
+    private final Map<String, SavedBanner> upserts = new LinkedHashMap<>();
+    private final Set<String> deletes = new HashSet<>();
+    private PackedBannerFile current;
+    private long generation = 0;
+    private ScheduledExecutorService repacker;
+    private ScheduledFuture<?> pendingRepack;
+    private boolean claimed = false;
+    private boolean readOnly = false;
+
+    public PackedBannerBackend(Path directory) {
+        this.directory = directory;
+        this.lock = LibraryLock.forCollection(directory);
+    }
+
+    @Override
+    public synchronized boolean hasData() {
+        return findLatestGeneration() >= 0;
+    }
+
+    @Override
+    public synchronized List<SavedBanner> loadAll() {
+        checkClaim(false);
+        generation = findLatestGeneration();
+        if (generation < 0) {
+            generation = 0;
+            return new ArrayList<>();
+        }
+
+        Path file = generationFile(generation);
+        try {
+            current = PackedBannerFile.open(file);
+            Loombook.LOGGER.info("Mapped packed banner library {} with {} banners", file, current.size());
+            deleteOldGenerations();
+            return new PackedBannerList(current);
+        } catch (IOException e) {
+            Loombook.LOGGER.error("Failed to open packed banner library {}", file, e);
+            return new ArrayList<>();
+        }
+    }
+
+    /**
+     * Claims the collection on first use. Unlike the per-file layout, this backend can't
+     * pick up another game instance's writes, so a collection that instance has open is
+     * read-only here instead of shared. Writes to it throw {@link IllegalStateException}.
+     */
+    private void checkClaim(boolean writing) {
+        if (!claimed && !readOnly) {
+            claimed = lock.claim();
+            readOnly = !claimed;
+            if (readOnly) {
+                Loombook.LOGGER.error("Banner collection {} is open in another game instance and can only be "
+                        + "read here. Use the directory storage backend to share a collection.", directory);
+            }
+        }
+        if (writing && readOnly) {
+            throw new IllegalStateException("Banner collection " + directory + " is open in another game instance");
+        }
+    }
+
+    @Override
+    public synchronized void save(SavedBanner banner) {
+        checkClaim(true);
+        deletes.remove(banner.getId());
+        upserts.put(banner.getId(), banner);
+        scheduleRepack();
+    }
+
+    @Override
+    public void saveAll(List<SavedBanner> banners) {
+        synchronized (this) {
+            checkClaim(true);
+            for (SavedBanner banner : banners) {
+                deletes.remove(banner.getId());
+                upserts.put(banner.getId(), banner);
+            }
+        }
+        // Outside the monitor, which is always taken after the lock
+        repack();
+    }
+
+    @Override
+    public synchronized void delete(String id) {
+        checkClaim(true);
+        upserts.remove(id);
+        deletes.add(id);
+        scheduleRepack();
+    }
+
+    private void scheduleRepack() {
+        if (pendingRepack != null && !pendingRepack.isDone()) {
+            return;
+        }
+        if (repacker == null) {
+            repacker = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "Loombook library packer");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+        pendingRepack = repacker.schedule(this::repack, REPACK_DELAY_SECONDS, TimeUnit.SECONDS);
+    }
+
+    private void repack() {
+        lock.run(this::repackLocked);
+    }
+
+    /**
+     * Merges the overlay into the newest generation's records and writes them as the next
+     * generation. Stored order is kept; replaced banners stay in place and new ones go at the end.
+     */
+    private synchronized void repackLocked() {
+        if (upserts.isEmpty() && deletes.isEmpty()) {
+            return;
+        }
+        long latest = findLatestGeneration();
+        if (latest > generation) {
+            // Another instance wrote a newer generation since this one was mapped
+            Path file = generationFile(latest);
+            try {
+                current = PackedBannerFile.open(file);
+                generation = latest;
+                Loombook.LOGGER.info("Repacking on top of newer packed banner library {}", file);
+            } catch (IOException e) {
+                Loombook.LOGGER.error("Failed to open newer packed banner library {}, keeping changes for later", file, e);
+                return;
+            }
+        }
+
+        Map<String, SavedBanner> pending = new LinkedHashMap<>(upserts);
+        List<SavedBanner> merged = new ArrayList<>();
+        if (current != null) {
+            for (int i = 0; i < current.size(); i++) {
+                String id = current.readId(i);
+                if (deletes.contains(id)) {
+                    continue;
+                }
+                SavedBanner replacement = pending.remove(id);
+                merged.add(replacement != null ? replacement : current.read(i));
+            }
+        }
+        merged.addAll(pending.values());
+
+        long nextGeneration = generation + 1;
+        Path file = generationFile(nextGeneration);
+        try {
+            PackedBannerFile.write(file, merged);
+            current = PackedBannerFile.open(file);
+            generation = nextGeneration;
+            upserts.clear();
+            deletes.clear();
+            deleteOldGenerations();
+            Loombook.LOGGER.debug("Packed {} banners into {}", merged.size(), file);
+        } catch (IOException e) {
+            Loombook.LOGGER.error("Failed to write packed banner library", e);
+        }
+    }
+
+    private Path generationFile(long generation) {
+        return directory.resolve(FILE_PREFIX + generation + FILE_SUFFIX);
+    }
+
+    private long findLatestGeneration() {
+        long latest = -1;
+        for (Path file : listPackFiles()) {
+            latest = Math.max(latest, parseGeneration(file));
+        }
+        return latest;
+    }
+
+    private void deleteOldGenerations() {
+        for (Path file : listPackFiles()) {
+            if (parseGeneration(file) < generation) {
+                try {
+                    Files.deleteIfExists(file);
+                } catch (IOException e) {
+                    // Still mapped somewhere (Windows); it is cleaned up on a later start
+                    Loombook.LOGGER.debug("Could not delete old packed library {}", file);
+                }
+            }
+        }
+    }
+
+    private List<Path> listPackFiles() {
+        if (!Files.isDirectory(directory)) {
+            return List.of();
+        }
+        try (Stream<Path> listing = Files.list(directory)) {
+            return listing
+                    .filter(p -> parseGeneration(p) >= 0)
+                    .toList();
+        } catch (IOException e) {
+            Loombook.LOGGER.error("Failed to list packed banner libraries", e);
+            return List.of();
+        }
+    }
+
+    private static long parseGeneration(Path file) {
+        String name = file.getFileName().toString();
+        if (!name.startsWith(FILE_PREFIX) || !name.endsWith(FILE_SUFFIX)) {
+            return -1;
+        }
+        try {
+            return Long.parseLong(name.substring(FILE_PREFIX.length(), name.length() - FILE_SUFFIX.length()));
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    /**
+     * Folds the rest of the overlay into a last generation on the packer thread. A repack
+     * that is already running finishes first instead of being interrupted mid-write.
+     */
+    @Override
+    public void close() {
+        ScheduledExecutorService packer;
+        synchronized (this) {
+            packer = repacker;
+            if (pendingRepack != null) {
+                pendingRepack.cancel(false);
+            }
+        }
+        if (packer == null) {
+            repack();
+        } else {
+            packer.execute(this::repack);
+            packer.shutdown();
+            try {
+                if (!packer.awaitTermination(30, TimeUnit.SECONDS)) {
+                    Loombook.LOGGER.warn("Timed out waiting for the packed banner library to be written");
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        synchronized (this) {
+            if (claimed) {
+                lock.release();
+                claimed = false;
+            }
+        }
+    }
+}
@@ -0,0 +1,291 @@
+package dogwhale65.loombook.data;
+
+import net.minecraft.util.DyeColor;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
+
+/**
+ * Compact binary library file, read through a memory mapping so opening it is nearly free.
+ *
+ * <pre>
+ * header   magic, version, record width, record count, string count,
+ *          string table offset, record offset, max layers      (32 bytes)
+ * strings  (count + 1) end offsets, then UTF-8 bytes of ids, names and pattern ids
+ * records  fixed width: id string, name string (-1 = none), createdAt, revision,
+ *          design fingerprint, base color, layer count,
+ *          then maxLayers x (pattern string (0xFFFF = none), color)
+ * </pre>
+ *
+ * Colors are stored as dye ordinals, so unknown color names are written as white.
+ * Decoding a record reads its id, name and stored fingerprint; its layers are only
+ * decoded when first read, so indexing the library doesn't touch them. Version 1 files,
+ * which lack the revision and fingerprint, are still read.
+ */
+public class PackedBannerFile {
+    private static final int MAGIC = 0x4C42504B; // "LBPK"
+    private static final short VERSION = 2;
+    private static final int HEADER_SIZE = 32;
+    private static final int FIXED_RECORD_SIZE_V1 = 4 + 4 + 8 + 1 + 1;
+    private static final int FIXED_RECORD_SIZE = 4 + 4 + 8 + 8 + 8 + 1 + 1;
+    private static final int NO_PATTERN = 0xFFFF;
+    private static final int LAYER_SIZE = 3;
+    private static final DyeColor[] COLORS = DyeColor.values();
+
+    private final ByteBuffer buffer;
+    private final short version;
+    private final int recordWidth;
+    private final int recordCount;
+    private final int stringCount;
+    private final int stringTableOffset;
+    private final int stringDataOffset;
+    private final int recordOffset;
+    private final String[] strings;
+
+    private PackedBannerFile(ByteBuffer buffer) throws IOException {
+        this.buffer = buffer;
+        if (buffer.capacity() < HEADER_SIZE || buffer.getInt(0) != MAGIC) {
+            throw new IOException("Not a packed banner library");
+        }
+        this.version = buffer.getShort(4);
+        if (version != 1 && version != VERSION) {
+            throw new IOException("Unsupported packed banner library version " + version);
+        }
+        this.recordWidth = buffer.getShort(6) & 0xFFFF;
+        this.recordCount = buffer.getInt(8);
+        this.stringCount = buffer.getInt(12);
+        this.stringTableOffset = buffer.getInt(16);
+        this.recordOffset = buffer.getInt(20);
+        this.stringDataOffset = stringTableOffset + (stringCount + 1) * 4;
+        this.strings = new String[stringCount];
+        if ((long) recordOffset + (long) recordCount * recordWidth > buffer.capacity()) {
+            throw new IOException("Packed banner library is truncated");
+        }
+    }
+
+    /**
+     * Maps a packed library file. Only the header is read here; records are decoded on demand.
+     */
+    public static PackedBannerFile open(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            return new PackedBannerFile(mapped);
+        }
+    }
+
+    public int size() {
+        return recordCount;
+    }
+
+    /**
+     * Reads only the id of a record, without decoding its name or layers.
+     */
+    public String readId(int index) {
+        return string(buffer.getInt(recordPosition(index)));
+    }
+
+    public SavedBanner read(int index) {
+        int position = recordPosition(index);
+        String id = string(buffer.getInt(position));
+        int nameIndex = buffer.getInt(position + 4);
+        long createdAt = buffer.getLong(position + 8);
+        int colorPosition = version == 1 ? position + 16 : position + 32;
+        DyeColor baseColor = color(buffer.get(colorPosition));
+        int layerCount = buffer.get(colorPosition + 1) & 0xFF;
+        int layerPosition = position + (version == 1 ? FIXED_RECORD_SIZE_V1 : FIXED_RECORD_SIZE);
+
+        SavedBanner banner = new SavedBanner(nameIndex >= 0 ? string(nameIndex) : null, baseColor, List.of());
+        banner.setId(id);
+        banner.setCreatedAt(createdAt);
+        banner.setLayers(new LazyLayerList(layerCount, new LayerDecoder(layerPosition, layerCount)));
+        if (version != 1) {
+            banner.setRevision(buffer.getLong(position + 16));
+            banner.setKnownFingerprint(buffer.getLong(position + 24));
+        }
+        return banner;
+    }
+
+    /**
+     * Decodes a record's layers on first use and keeps them. The mapping is read-only, so
+     * decoding twice from two threads gives equal lists and either may be kept.
+     */
+    private class LayerDecoder implements Supplier<List<BannerPatternLayer>> {
+        private final int position;
+        private final int count;
+        private volatile List<BannerPatternLayer> layers;
+
+        LayerDecoder(int position, int count) {
+            this.position = position;
+            this.count = count;
+        }
+
+        @Override
+        public List<BannerPatternLayer> get() {
+            List<BannerPatternLayer> decoded = layers;
+            if (decoded == null) {
+                List<BannerPatternLayer> list = new ArrayList<>(count);
+                int layerPosition = position;
+                for (int i = 0; i < count; i++) {
+                    int patternIndex = buffer.getShort(layerPosition) & 0xFFFF;
+                    DyeColor color = color(buffer.get(layerPosition + 2));
+                    list.add(BannerPatternLayer.of(patternIndex != NO_PATTERN ? string(patternIndex) : null, color));
+                    layerPosition += LAYER_SIZE;
+                }
+                decoded = List.copyOf(list);
+                layers = decoded;
+            }
+            return decoded;
+        }
+    }
+
+    private int recordPosition(int index) {
+        if (index < 0 || index >= recordCount) {
+            throw new IndexOutOfBoundsException(index);
+        }
+        return recordOffset + index * recordWidth;
+    }
+
+    private String string(int index) {
+        String cached = strings[index];
+        if (cached == null) {
+            int start = buffer.getInt(stringTableOffset + index * 4);
+            int end = buffer.getInt(stringTableOffset + (index + 1) * 4);
+            byte[] bytes = new byte[end - start];
+            buffer.get(stringDataOffset + start, bytes);
+            cached = new String(bytes, StandardCharsets.UTF_8);
+            strings[index] = cached;
+        }
+        return cached;
+    }
+
+    private static DyeColor color(byte ordinal) {
+        int index = ordinal & 0x0F;
+        return index < COLORS.length ? COLORS[index] : DyeColor.WHITE;
+    }
+
+    /**
+     * Writes banners to a packed library file through a temporary file and an atomic move.
+     */
+    public static void write(Path file, List<SavedBanner> banners) throws IOException {
+        // Pattern ids go first so layers can address them with an unsigned short
+        StringTable table = new StringTable();
+        int maxLayers = 0;
+        for (SavedBanner banner : banners) {
+            for (BannerPatternLayer layer : banner.getLayers()) {
+                if (layer.patternId() != null) {
+                    table.add(layer.patternId());
+                }
+            }
+            maxLayers = Math.max(maxLayers, banner.getLayers().size());
+        }
+        // The largest index marks a layer without a pattern
+        if (table.size() >= NO_PATTERN) {
+            throw new IOException("Too many distinct pattern ids to pack: " + table.size());
+        }
+        if (maxLayers > 255) {
+            throw new IOException("Banner has too many layers to pack: " + maxLayers);
+        }
+        for (SavedBanner banner : banners) {
+            table.add(banner.getId());
+            if (banner.getName() != null) {
+                table.add(banner.getName());
+            }
+        }
+
+        int recordWidth = FIXED_RECORD_SIZE + maxLayers * LAYER_SIZE;
+        int stringTableOffset = HEADER_SIZE;
+        int recordOffset = stringTableOffset + (table.size() + 1) * 4 + table.byteLength();
+
+        Files.createDirectories(file.getParent());
+        Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+        try (OutputStream raw = Files.newOutputStream(temp);
+             DataOutputStream out = new DataOutputStream(new BufferedOutputStream(raw, 1 << 16))) {
+            out.writeInt(MAGIC);
+            out.writeShort(VERSION);
+            out.writeShort(recordWidth);
+            out.writeInt(banners.size());
+            out.writeInt(table.size());
+            out.writeInt(stringTableOffset);
+            out.writeInt(recordOffset);
+            out.writeInt(maxLayers);
+            out.writeInt(0);
+
+            int end = 0;
+            out.writeInt(end);
+            for (byte[] bytes : table.encoded) {
+                end += bytes.length;
+                out.writeInt(end);
+            }
+            for (byte[] bytes : table.encoded) {
+                out.write(bytes);
+            }
+
+            for (SavedBanner banner : banners) {
+                List<BannerPatternLayer> layers = banner.getLayers();
+                out.writeInt(table.indexOf(banner.getId()));
+                out.writeInt(banner.getName() != null ? table.indexOf(banner.getName()) : -1);
+                out.writeLong(banner.getCreatedAt());
+                out.writeLong(banner.getRevision());
+                out.writeLong(banner.getFingerprint());
+                out.writeByte(banner.getBaseColorEnum().ordinal());
+                out.writeByte(layers.size());
+                for (int i = 0; i < maxLayers; i++) {
+                    if (i < layers.size()) {
+                        String patternId = layers.get(i).patternId();
+                        out.writeShort(patternId != null ? table.indexOf(patternId) : NO_PATTERN);
+                        out.writeByte(layers.get(i).getDyeColorEnum().ordinal());
+                    } else {
+                        out.writeShort(0);
+                        out.writeByte(0);
+                    }
+                }
+            }
+        }
+        Files.move(temp, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    /**
+     * Deduplicating string table used while writing.
+     */
+    private static class StringTable {
+        private final Map<String, Integer> indexes = new HashMap<>();
+        private final List<byte[]> encoded = new ArrayList<>();
+        private int byteLength = 0;
+
+        void add(String value) {
+            if (!indexes.containsKey(value)) {
+                byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+                indexes.put(value, encoded.size());
+                encoded.add(bytes);
+                byteLength += bytes.length;
+            }
+        }
+
+        int indexOf(String value) {
+            return indexes.get(value);
+        }
+
+        int size() {
+            return encoded.size();
+        }
+
+        int byteLength() {
+            return byteLength;
+        }
+    }
+}
@@ -0,0 +1,35 @@
+package dogwhale65.loombook.data;
+
+import java.util.AbstractList;
+import java.util.RandomAccess;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Read-only list over a {@link PackedBannerFile} that decodes each record the first time it is read.
+ * Reads are safe from any thread without locking: when two threads decode the same record
+ * at once, both end up with the copy that was published first.
+ */
+public class PackedBannerList extends AbstractList<SavedBanner> implements RandomAccess {
+    private final PackedBannerFile file;
+    private final AtomicReferenceArray<SavedBanner> decoded;
+
+    public PackedBannerList(PackedBannerFile file) {
+        this.file = file;
+        this.decoded = new AtomicReferenceArray<>(file.size());
+    }
+
+    @Override
+    public SavedBanner get(int index) {
+        SavedBanner banner = decoded.get(index);
+        if (banner != null) {
+            return banner;
+        }
+        banner = file.read(index);
+        return decoded.compareAndSet(index, null, banner) ? banner : decoded.get(index);
+    }
+
+    @Override
+    public int size() {
+        return decoded.length();
+    }
+}
@@ -0,0 +1,542 @@
+package dogwhale65.loombook.data;
+
+import dogwhale65.loombook.Loombook;
+import dogwhale65.loombook.config.LoombookConfig;
+import net.minecraft.util.DyeColor;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ForkJoinPool;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * Collects the banners placed in a world by reading its region files directly, without
+ * loading the world. Region files are memory-mapped and scanned in parallel; each chunk
+ * is decompressed and streamed through an NBT reader that only keeps block entities and
+ * the block palettes that contain banners, skipping everything else. A banner's base
+ * color comes from its block state, its layers from the block entity's patterns.
+ * Designs found more than once are imported once, named after where they were first
+ * found. Supports chunks saved by 1.18 and later.
+ */
+public class RegionBannerHarvester {
+    private static final Pattern REGION_FILE = Pattern.compile("r\\.(-?\\d+)\\.(-?\\d+)\\.mca");
+    private static final int SECTOR_SIZE = 4096;
+
+    private static final byte TAG_END = 0;
+    private static final byte TAG_BYTE = 1;
+    private static final byte TAG_SHORT = 2;
+    private static final byte TAG_INT = 3;
+    private static final byte TAG_LONG = 4;
+    private static final byte TAG_FLOAT = 5;
+    private static final byte TAG_DOUBLE = 6;
+    private static final byte TAG_BYTE_ARRAY = 7;
+    private static final byte TAG_STRING = 8;
+    private static final byte TAG_LIST = 9;
+    private static final byte TAG_COMPOUND = 10;
+    private static final byte TAG_INT_ARRAY = 11;
+    private static final byte TAG_LONG_ARRAY = 12;
+
+    private final BannerStorage storage;
+    private final DuplicatePolicy policy;
+
+    private record RegionResult(Path file, List<SavedBanner> banners, int chunks, int unreadable) {
+    }
+
+    /**
+     * A section's block palette and packed block states, kept only if the palette has a banner.
+     */
+    private record Section(int y, List<String> palette, long[] data) {
+    }
+
+    public RegionBannerHarvester(BannerStorage storage, DuplicatePolicy policy) {
+        this.storage = storage;
+        this.policy = policy;
+    }
+
+    /**
+     * Returns true if the directory looks like a world save or a folder of region files.
+     */
+    public static boolean isWorld(Path directory) {
+        return Files.isRegularFile(directory.resolve("level.dat")) || Files.isDirectory(directory.resolve("region"))
+                || directory.getFileName() != null && directory.getFileName().toString().equals("region");
+    }
+
+    /**
+     * Harvests every dimension of a world on a background thread. The report has one
+     * line per region file that held banners or could not be read.
+     */
+    public CompletableFuture<BulkBannerImporter.Report> harvest(Path world) {
+        return CompletableFuture.supplyAsync(() -> harvestNow(world), BackgroundTasks.executor());
+    }
+
+    private BulkBannerImporter.Report harvestNow(Path world) {
+        long start = System.nanoTime();
+        List<Path> regions;
+        try (Stream<Path> files = Files.walk(world, 5)) {
+            // Entity and POI folders use the same file names, so only look in region folders
+            regions = files.filter(file -> REGION_FILE.matcher(file.getFileName().toString()).matches())
+                    .filter(file -> file.getParent().getFileName().toString().equals("region"))
+                    .sorted(Comparator.comparing(Path::toString))
+                    .toList();
+        } catch (IOException e) {
+            Loombook.LOGGER.error("Failed to list region files in {}", world, e);
+            return new BulkBannerImporter.Report(
+                    List.of(new BulkBannerImporter.LineResult(0, false, "Could not read world: " + e.getMessage())), 0, 0, 1);
+        }
+
+        ForkJoinPool pool = new ForkJoinPool(LoombookConfig.getInstance().getLoadThreads());
+        List<RegionResult> results;
+        try {
+            // Parallel streams run inside the pool they are submitted from; collecting keeps file order
+            results = pool.submit(() -> regions.parallelStream()
+                    .map(file -> scanRegion(world, file))
+                    .toList()).join();
+        } finally {
+            pool.shutdown();
+        }
+
+        LibraryTransaction transaction = new LibraryTransaction("Harvest");
+        Map<Long, SavedBanner> designs = new LinkedHashMap<>();
+        List<BulkBannerImporter.LineResult> lines = new ArrayList<>();
+        int found = 0;
+        int unreadable = 0;
+        int chunks = 0;
+        for (RegionResult result : results) {
+            chunks += result.chunks();
+            unreadable += result.unreadable();
+            found += result.banners().size();
+            for (SavedBanner banner : result.banners()) {
+                designs.putIfAbsent(banner.getFingerprint(), banner);
+            }
+            if (!result.banners().isEmpty() || result.unreadable() > 0) {
+                StringBuilder message = new StringBuilder(world.relativize(result.file()).toString())
+                        .append(": ").append(result.banners().size()).append(" banners");
+                if (result.unreadable() > 0) {
+                    message.append(", ").append(result.unreadable()).append(" unreadable chunks");
+                }
+                lines.add(new BulkBannerImporter.LineResult(0, result.unreadable() == 0, message.toString()));
+            }
+        }
+        designs.values().forEach(banner -> transaction.add(banner, policy));
+
+        int imported = 0;
+        if (!transaction.isEmpty()) {
+            List<SavedBanner> representatives = storage.commit(transaction);
+            for (int i = 0; i < representatives.size(); i++) {
+                if (representatives.get(i) == transaction.adds.get(i).banner()) {
+                    imported++;
+                }
+            }
+        }
+        if (lines.isEmpty()) {
+            lines.add(new BulkBannerImporter.LineResult(0, false, "No banners found in " + regions.size() + " region files"));
+        }
+        Loombook.LOGGER.info("Harvested {} banners ({} designs, {} imported) from {} chunks in {} region files in {} ms",
+                found, designs.size(), imported, chunks, regions.size(), (System.nanoTime() - start) / 1_000_000);
+        return new BulkBannerImporter.Report(lines, imported, found - imported, unreadable);
+    }
+
+    private RegionResult scanRegion(Path world, Path file) {
+        Matcher name = REGION_FILE.matcher(file.getFileName().toString());
+        name.matches();
+        int regionX = Integer.parseInt(name.group(1));
+        int regionZ = Integer.parseInt(name.group(2));
+        String dimension = dimensionOf(world, file.getParent());
+
+        List<SavedBanner> banners = new ArrayList<>();
+        int chunks = 0;
+        int unreadable = 0;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size < 2 * SECTOR_SIZE) {
+                return new RegionResult(file, banners, 0, 0);
+            }
+            MappedByteBuffer map = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            for (int i = 0; i < 1024; i++) {
+                int location = map.getInt(i * 4);
+                if (location == 0) {
+                    continue;
+                }
+                chunks++;
+                long offset = (long) (location >>> 8) * SECTOR_SIZE;
+                try {
+                    InputStream data = openChunk(map, offset, file, regionX * 32 + (i & 31), regionZ * 32 + (i >> 5));
+                    if (data == null) {
+                        unreadable++;
+                        continue;
+                    }
+                    try (DataInputStream in = new DataInputStream(new BufferedInputStream(data))) {
+                        readChunk(in, dimension, banners);
+                    }
+                } catch (IOException | RuntimeException e) {
+                    Loombook.LOGGER.debug("Skipping unreadable chunk {} in {}", i, file, e);
+                    unreadable++;
+                }
+            }
+        } catch (IOException e) {
+            Loombook.LOGGER.warn("Failed to read region file {}", file, e);
+            unreadable++;
+        }
+        return new RegionResult(file, banners, chunks, unreadable);
+    }
+
+    /**
+     * Returns the decompressed chunk, or null if it uses a compression this can't read.
+     */
+    private static InputStream openChunk(MappedByteBuffer map, long offset, Path file, int chunkX, int chunkZ) throws IOException {
+        if (offset < 2 * SECTOR_SIZE || offset + 5 > map.capacity()) {
+            throw new IOException("Chunk outside region file");
+        }
+        int length = map.getInt((int) offset);
+        int compression = map.get((int) offset + 4) & 0xFF;
+        InputStream raw;
+        if ((compression & 0x80) != 0) {
+            // Oversized chunks are stored in their own file next to the region
+            raw = new ByteArrayInputStream(Files.readAllBytes(file.resolveSibling("c." + chunkX + "." + chunkZ + ".mcc")));
+            compression &= 0x7F;
+        } else {
+            if (length < 1 || offset + 4 + length > map.capacity()) {
+                throw new IOException("Chunk length out of range");
+            }
+            raw = new ByteBufferInputStream(map.slice((int) offset + 5, length - 1));
+        }
+        return switch (compression) {
+            case 1 -> new GZIPInputStream(raw);
+            case 2 -> new InflaterInputStream(raw);
+            case 3 -> raw;
+            default -> null;
+        };
+    }
+
+    private static String dimensionOf(Path world, Path regionDirectory) {
+        Path dimension = regionDirectory.getParent();
+        if (dimension == null || dimension.equals(world) || regionDirectory.equals(world)) {
+            return null;
+        }
+        String name = dimension.getFileName().toString();
+        if (name.equals("DIM-1")) {
+            return "the_nether";
+        }
+        if (name.equals("DIM1")) {
+            return "the_end";
+        }
+        Path namespace = dimension.getParent();
+        return namespace != null && namespace.getParent() != null
+                && namespace.getParent().getFileName().toString().equals("dimensions")
+                ? namespace.getFileName() + ":" + name : name;
+    }
+
+    // Chunk NBT
+
+    private void readChunk(DataInputStream in, String dimension, List<SavedBanner> banners) throws IOException {
+        if (in.readByte() != TAG_COMPOUND) {
+            throw new IOException("Chunk is not a compound");
+        }
+        skipString(in);
+        List<Map<?, ?>> blockEntities = new ArrayList<>();
+        List<Section> sections = new ArrayList<>();
+        readChunkCompound(in, blockEntities, sections);
+
+        for (Map<?, ?> entity : blockEntities) {
+            if (!"minecraft:banner".equals(entity.get("id"))) {
+                continue;
+            }
+            if (!(entity.get("x") instanceof Number x) || !(entity.get("y") instanceof Number y)
+                    || !(entity.get("z") instanceof Number z)) {
+                continue;
+            }
+            DyeColor baseColor = baseColor(sections, x.intValue(), y.intValue(), z.intValue());
+            List<BannerPatternLayer> layers = readLayers(entity);
+            if (baseColor == null || layers == null) {
+                continue;
+            }
+            String where = x + " " + y + " " + z + (dimension != null ? " in " + dimension : "");
+            String customName = GiveCommandParser.textOf(entity.get("CustomName"));
+            String name = customName != null ? customName + " (" + where + ")" : "Found at " + where;
+            banners.add(new SavedBanner(name, baseColor, layers));
+        }
+    }
+
+    /**
+     * Reads the entries of the chunk's root compound, or of the older {@code Level} wrapper.
+     */
+    private void readChunkCompound(DataInputStream in, List<Map<?, ?>> blockEntities, List<Section> sections) throws IOException {
+        byte type;
+        while ((type = in.readByte()) != TAG_END) {
+            String key = in.readUTF();
+            if (type == TAG_COMPOUND && key.equals("Level")) {
+                readChunkCompound(in, blockEntities, sections);
+            } else if (type == TAG_LIST && (key.equals("block_entities") || key.equals("TileEntities"))) {
+                for (Object entity : (List<?>) readPayload(in, TAG_LIST)) {
+                    if (entity instanceof Map<?, ?> compound) {
+                        blockEntities.add(compound);
+                    }
+                }
+            } else if (type == TAG_LIST && (key.equals("sections") || key.equals("Sections"))) {
+                readSections(in, sections);
+            } else {
+                skipPayload(in, type);
+            }
+        }
+    }
+
+    private void readSections(DataInputStream in, List<Section> sections) throws IOException {
+        byte elementType = in.readByte();
+        int count = in.readInt();
+        if (elementType != TAG_COMPOUND) {
+            for (int i = 0; i < count; i++) {
+                skipPayload(in, elementType);
+            }
+            return;
+        }
+        for (int i = 0; i < count; i++) {
+            int y = 0;
+            List<String> palette = null;
+            long[] data = null;
+            byte type;
+            while ((type = in.readByte()) != TAG_END) {
+                String key = in.readUTF();
+                if (key.equals("Y") && type == TAG_BYTE) {
+                    y = in.readByte();
+                } else if (key.equals("block_states") && type == TAG_COMPOUND) {
+                    byte stateType;
+                    while ((stateType = in.readByte()) != TAG_END) {
+                        String stateKey = in.readUTF();
+                        if (stateKey.equals("palette") && stateType == TAG_LIST) {
+                            palette = readPaletteNames(in);
+                        } else if (stateKey.equals("data") && stateType == TAG_LONG_ARRAY) {
+                            data = new long[in.readInt()];
+                            for (int j = 0; j < data.length; j++) {
+                                data[j] = in.readLong();
+                            }
+                        } else {
+                            skipPayload(in, stateType);
+                        }
+                    }
+                } else {
+                    skipPayload(in, type);
+                }
+            }
+            if (palette != null && palette.stream().anyMatch(block -> block.endsWith("_banner"))) {
+                sections.add(new Section(y, palette, data));
+            }
+        }
+    }
+
+    private List<String> readPaletteNames(DataInputStream in) throws IOException {
+        byte elementType = in.readByte();
+        int count = in.readInt();
+        List<String> names = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            if (elementType != TAG_COMPOUND) {
+                skipPayload(in, elementType);
+                continue;
+            }
+            String name = "";
+            byte type;
+            while ((type = in.readByte()) != TAG_END) {
+                String key = in.readUTF();
+                if (key.equals("Name") && type == TAG_STRING) {
+                    name = in.readUTF();
+                } else {
+                    skipPayload(in, type);
+                }
+            }
+            names.add(name);
+        }
+        return names;
+    }
+
+    /**
+     * Looks up the banner block at a position and returns its color.
+     */
+    private static DyeColor baseColor(List<Section> sections, int x, int y, int z) {
+        for (Section section : sections) {
+            if (section.y() != Math.floorDiv(y, 16)) {
+                continue;
+            }
+            String block;
+            if (section.palette().size() == 1 || section.data() == null) {
+                block = section.palette().getFirst();
+            } else {
+                // Since 1.16 entries don't span longs
+                int bits = Math.max(4, 32 - Integer.numberOfLeadingZeros(section.palette().size() - 1));
+                int perLong = 64 / bits;
+                int index = ((y & 15) << 8) | ((z & 15) << 4) | (x & 15);
+                if (index / perLong >= section.data().length) {
+                    return null;
+                }
+                int value = (int) ((section.data()[index / perLong] >>> ((index % perLong) * bits)) & ((1L << bits) - 1));
+                if (value >= section.palette().size()) {
+                    return null;
+                }
+                block = section.palette().get(value);
+            }
+            String id = block.startsWith("minecraft:") ? block.substring("minecraft:".length()) : block;
+            String color = id.endsWith("_wall_banner") ? id.substring(0, id.length() - "_wall_banner".length())
+                    : id.endsWith("_banner") ? id.substring(0, id.length() - "_banner".length()) : null;
+            return BannerSymbols.isKnownColor(color) ? BannerSymbols.dyeColor(color) : null;
+        }
+        return null;
+    }
+
+    /**
+     * Reads the layers of a banner block entity, in the current or the pre-1.20.5 format.
+     * Returns null if a layer can't be understood.
+     */
+    private static List<BannerPatternLayer> readLayers(Map<?, ?> entity) {
+        List<BannerPatternLayer> layers = new ArrayList<>();
+        if (entity.get("patterns") instanceof List<?> patterns) {
+            for (Object element : patterns) {
+                if (!(element instanceof Map<?, ?> layer) || !(layer.get("pattern") instanceof String pattern)
+                        || !(layer.get("color") instanceof String color) || !BannerSymbols.isKnownColor(color)) {
+                    // Inline pattern definitions have no id to save
+                    return null;
+                }
+                layers.add(BannerPatternLayer.of(pattern, BannerSymbols.dyeColor(color)));
+            }
+        } else if (entity.get("Patterns") instanceof List<?> patterns) {
+            DyeColor[] colors = DyeColor.values();
+            for (Object element : patterns) {
+                if (!(element instanceof Map<?, ?> layer) || !(layer.get("Pattern") instanceof String code)
+                        || !(layer.get("Color") instanceof Number color) || color.intValue() < 0 || color.intValue() >= colors.length) {
+                    return null;
+                }
+                layers.add(BannerPatternLayer.of(GiveCommandParser.legacyPattern(code), colors[color.intValue()]));
+            }
+        }
+        return layers;
+    }
+
+    /**
+     * Reads a tag into plain values: compounds as maps, lists as lists, arrays as Java arrays.
+     */
+    private static Object readPayload(DataInputStream in, byte type) throws IOException {
+        return switch (type) {
+            case TAG_BYTE -> in.readByte();
+            case TAG_SHORT -> in.readShort();
+            case TAG_INT -> in.readInt();
+            case TAG_LONG -> in.readLong();
+            case TAG_FLOAT -> in.readFloat();
+            case TAG_DOUBLE -> in.readDouble();
+            case TAG_STRING -> in.readUTF();
+            case TAG_LIST -> {
+                byte elementType = in.readByte();
+                int count = in.readInt();
+                List<Object> list = new ArrayList<>(Math.min(Math.max(count, 0), 1024));
+                for (int i = 0; i < count; i++) {
+                    list.add(readPayload(in, elementType));
+                }
+                yield list;
+            }
+            case TAG_COMPOUND -> {
+                Map<String, Object> compound = new HashMap<>();
+                byte entryType;
+                while ((entryType = in.readByte()) != TAG_END) {
+                    compound.put(in.readUTF(), readPayload(in, entryType));
+                }
+                yield compound;
+            }
+            case TAG_BYTE_ARRAY, TAG_INT_ARRAY, TAG_LONG_ARRAY -> {
+                // Nothing a banner needs is stored in an array
+                skipPayload(in, type);
+                yield null;
+            }
+            default -> throw new IOException("Unknown NBT tag " + type);
+        };
+    }
+
+    private static void skipPayload(DataInputStream in, byte type) throws IOException {
+        switch (type) {
+            case TAG_BYTE -> skipFully(in, 1);
+            case TAG_SHORT -> skipFully(in, 2);
+            case TAG_INT, TAG_FLOAT -> skipFully(in, 4);
+            case TAG_LONG, TAG_DOUBLE -> skipFully(in, 8);
+            case TAG_BYTE_ARRAY -> skipFully(in, in.readInt());
+            case TAG_INT_ARRAY -> skipFully(in, in.readInt() * 4L);
+            case TAG_LONG_ARRAY -> skipFully(in, in.readInt() * 8L);
+            case TAG_STRING -> skipString(in);
+            case TAG_LIST -> {
+                byte elementType = in.readByte();
+                int count = in.readInt();
+                for (int i = 0; i < count; i++) {
+                    skipPayload(in, elementType);
+                }
+            }
+            case TAG_COMPOUND -> {
+                byte entryType;
+                while ((entryType = in.readByte()) != TAG_END) {
+                    skipString(in);
+                    skipPayload(in, entryType);
+                }
+            }
+            case TAG_END -> {
+            }
+            default -> throw new IOException("Unknown NBT tag " + type);
+        }
+    }
+
+    private static void skipString(DataInputStream in) throws IOException {
+        skipFully(in, in.readUnsignedShort());
+    }
+
+    private static void skipFully(DataInputStream in, long count) throws IOException {
+        while (count > 0) {
+            long skipped = in.skip(count);
+            if (skipped <= 0) {
+                if (in.read() < 0) {
+                    throw new EOFException();
+                }
+                skipped = 1;
+            }
+            count -= skipped;
+        }
+    }
+
+    /**
+     * Reads a slice of the mapped region file without copying it.
+     */
+    private static final class ByteBufferInputStream extends InputStream {
+        private final ByteBuffer buffer;
+
+        ByteBufferInputStream(ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        @Override
+        public int read() {
+            return buffer.hasRemaining() ? buffer.get() & 0xFF : -1;
+        }
+
+        @Override
+        public int read(byte[] bytes, int offset, int length) {
+            if (!buffer.hasRemaining()) {
+                return -1;
+            }
+            int count = Math.min(length, buffer.remaining());
+            buffer.get(bytes, offset, count);
+            return count;
+        }
+    }
+}
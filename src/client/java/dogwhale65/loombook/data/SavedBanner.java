@@ -1,5 +1,6 @@
 package dogwhale65.loombook.data;
 
+import com.google.gson.annotations.JsonAdapter;
 import net.minecraft.item.Item;
 import net.minecraft.item.Items;
 import net.minecraft.util.DyeColor;
@@ -10,13 +11,21 @@ import java.util.UUID;
 
 /**
  * Represents a saved banner design with all its pattern layers.
+ * Banners in the library are read from several threads and are not modified once added;
+ * an edit puts a changed {@link #copy()} in their place.
  */
 public class SavedBanner {
     private String id;
     private String name;
+    @JsonAdapter(BannerSymbols.ColorAdapter.class)
     private String baseColor;
     private List<BannerPatternLayer> layers;
     private long createdAt;
+    // Bumped on every write, so other game instances sharing the files can tell their copy is stale
+    private long revision;
+    private transient long fingerprint;
+    // Set after the fingerprint is written, so a thread that sees it set also sees the value
+    private transient volatile boolean fingerprintValid;
 
     public SavedBanner() {
         this.id = UUID.randomUUID().toString();
@@ -27,10 +36,31 @@ public class SavedBanner {
     public SavedBanner(String name, DyeColor baseColor, List<BannerPatternLayer> layers) {
         this();
         this.name = name;
-        this.baseColor = baseColor.getId();
+        this.baseColor = BannerSymbols.color(baseColor.getId());
         this.layers = new ArrayList<>(layers);
     }
 
+    private SavedBanner(SavedBanner other) {
+        this.id = other.id;
+        this.name = other.name;
+        this.baseColor = other.baseColor;
+        this.layers = other.layers;
+        this.createdAt = other.createdAt;
+        this.revision = other.revision;
+        if (other.fingerprintValid) {
+            this.fingerprint = other.fingerprint;
+            this.fingerprintValid = true;
+        }
+    }
+
+    /**
+     * Returns a copy to make an edit on before it replaces this banner. The layer list is
+     * shared, since it is only ever replaced as a whole.
+     */
+    SavedBanner copy() {
+        return new SavedBanner(this);
+    }
+
     public String getId() {
         return id;
     }
@@ -52,11 +82,12 @@ public class SavedBanner {
     }
 
     public DyeColor getBaseColorEnum() {
-        return DyeColor.byId(baseColor, DyeColor.WHITE);
+        return BannerSymbols.dyeColor(baseColor);
     }
 
     public void setBaseColor(String baseColor) {
-        this.baseColor = baseColor;
+        this.baseColor = BannerSymbols.color(baseColor);
+        this.fingerprintValid = false;
     }
 
     public List<BannerPatternLayer> getLayers() {
@@ -65,12 +96,65 @@ public class SavedBanner {
 
     public void setLayers(List<BannerPatternLayer> layers) {
         this.layers = layers;
+        this.fingerprintValid = false;
+    }
+
+    /**
+     * Sets a fingerprint that is already known, so lazily loaded layers don't have to be read to compute it.
+     */
+    void setKnownFingerprint(long fingerprint) {
+        this.fingerprint = fingerprint;
+        this.fingerprintValid = true;
+    }
+
+    /**
+     * Fingerprint of the design, see {@link BannerFingerprint}.
+     */
+    public long getFingerprint() {
+        if (!fingerprintValid) {
+            fingerprint = BannerFingerprint.of(this);
+            fingerprintValid = true;
+        }
+        return fingerprint;
+    }
+
+    /**
+     * Checks a banner decoded from imported JSON before it goes into the library: the base
+     * color must be a dye color and every layer must name a pattern. A missing layer list
+     * is taken as no layers. Returns false if the banner can't be stored.
+     */
+    boolean acceptImported() {
+        if (!BannerSymbols.isKnownColor(baseColor)) {
+            return false;
+        }
+        if (layers == null) {
+            setLayers(new ArrayList<>());
+            return true;
+        }
+        for (BannerPatternLayer layer : layers) {
+            if (layer == null || layer.patternId() == null || layer.patternId().isBlank()) {
+                return false;
+            }
+        }
+        return true;
     }
 
     public long getCreatedAt() {
         return createdAt;
     }
 
+    public void setCreatedAt(long createdAt) {
+        this.createdAt = createdAt;
+    }
+
+    public long getRevision() {
+        return revision;
+    }
+
+    public void setRevision(long revision) {
+        this.revision = revision;
+    }
+
     public String getDisplayName() {
         if (name != null && !name.isEmpty()) {
             return name;
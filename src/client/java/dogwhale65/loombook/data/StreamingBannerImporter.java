@@ -0,0 +1,215 @@
+package dogwhale65.loombook.data;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonParseException;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import dogwhale65.loombook.Loombook;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Imports banner JSON one banner at a time instead of parsing the whole input first.
+ * Accepts a JSON array of banners, a single banner, or banners written one after another,
+ * and reads gzipped files such as compressed exports.
+ * Banners are committed to the library in batches from a background thread, so even
+ * very large packs neither hold the whole input as a tree nor stall the client thread.
+ * Each batch is its own undo step; cancelling keeps the batches committed so far.
+ */
+public class StreamingBannerImporter {
+    private static final Gson GSON = new Gson();
+    private static final int BATCH_SIZE = 500;
+
+    private final BannerStorage storage;
+    private final DuplicatePolicy policy;
+    private volatile int processed = 0;
+    private volatile int imported = 0;
+    private volatile int skipped = 0;
+    private volatile long bytesRead = 0;
+    private volatile long totalBytes = -1;
+    private volatile boolean cancelled = false;
+
+    /**
+     * Outcome of an import. {@code error} is null unless the input could not be read to the end.
+     */
+    public record Result(int processed, int imported, int skipped, boolean cancelled, String error) {
+    }
+
+    public StreamingBannerImporter(BannerStorage storage, DuplicatePolicy policy) {
+        this.storage = storage;
+        this.policy = policy;
+    }
+
+    public CompletableFuture<Result> importFile(Path file) {
+        return runAsync(() -> {
+            totalBytes = Files.size(file);
+            try (InputStream in = Files.newInputStream(file)) {
+                return importStream(in, file.getFileName().toString().endsWith(".gz"));
+            }
+        });
+    }
+
+    public CompletableFuture<Result> importText(String text) {
+        return runAsync(() -> {
+            byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+            totalBytes = bytes.length;
+            return importStream(new ByteArrayInputStream(bytes), false);
+        });
+    }
+
+    private interface ImportTask {
+        Result run() throws IOException;
+    }
+
+    private CompletableFuture<Result> runAsync(ImportTask task) {
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                return task.run();
+            } catch (IOException e) {
+                Loombook.LOGGER.error("Failed to read banner import", e);
+                return result(e.getMessage());
+            }
+        }, BackgroundTasks.executor());
+    }
+
+    /**
+     * Progress counts bytes of the input as stored, so it matches the file size when gzipped.
+     */
+    private Result importStream(InputStream in, boolean gzip) throws IOException {
+        long start = System.nanoTime();
+        InputStream counting = new FilterInputStream(new BufferedInputStream(in)) {
+            @Override
+            public int read() throws IOException {
+                int b = super.read();
+                if (b >= 0) {
+                    bytesRead++;
+                }
+                return b;
+            }
+
+            @Override
+            public int read(byte[] buffer, int offset, int length) throws IOException {
+                int count = super.read(buffer, offset, length);
+                if (count > 0) {
+                    bytesRead += count;
+                }
+                return count;
+            }
+        };
+
+        LibraryTransaction batch = new LibraryTransaction("Import");
+        int batched = 0;
+        String error = null;
+        try (JsonReader reader = new JsonReader(new InputStreamReader(
+                gzip ? new GZIPInputStream(counting) : counting, StandardCharsets.UTF_8))) {
+            // Lenient so several top-level banners may follow each other
+            reader.setLenient(true);
+            boolean inArray = false;
+            while (!cancelled && reader.peek() != JsonToken.END_DOCUMENT) {
+                JsonToken next = reader.peek();
+                if (!inArray && next == JsonToken.BEGIN_ARRAY) {
+                    reader.beginArray();
+                    inArray = true;
+                    continue;
+                }
+                if (inArray && next == JsonToken.END_ARRAY) {
+                    reader.endArray();
+                    inArray = false;
+                    continue;
+                }
+                // Banners in an array and banners following each other are batched alike
+                if (readBanner(reader, batch)) {
+                    batched++;
+                }
+                if (batched >= BATCH_SIZE) {
+                    commit(batch);
+                    batch = new LibraryTransaction("Import");
+                    batched = 0;
+                }
+            }
+        } catch (JsonParseException | IOException | IllegalStateException e) {
+            // The stream can't be resumed after a syntax error; keep what was read before it
+            Loombook.LOGGER.warn("Banner import stopped at byte {}", bytesRead, e);
+            error = "Invalid JSON near byte " + bytesRead;
+        }
+        if (!cancelled && batched > 0) {
+            commit(batch);
+        }
+        Loombook.LOGGER.info("Imported {} of {} banners ({} skipped) in {} ms{}", imported, processed, skipped,
+                (System.nanoTime() - start) / 1_000_000, cancelled ? ", cancelled" : "");
+        return result(error);
+    }
+
+    /**
+     * Decodes the next value as a banner and queues it. Returns false if it was skipped.
+     */
+    private boolean readBanner(JsonReader reader, LibraryTransaction batch) throws IOException {
+        processed++;
+        if (reader.peek() != JsonToken.BEGIN_OBJECT) {
+            reader.skipValue();
+            skipped++;
+            return false;
+        }
+        SavedBanner banner = GSON.fromJson(reader, SavedBanner.class);
+        if (banner == null || !banner.acceptImported()) {
+            skipped++;
+            return false;
+        }
+        batch.add(banner, policy);
+        return true;
+    }
+
+    private void commit(LibraryTransaction batch) {
+        List<SavedBanner> representatives = storage.commit(batch);
+        int added = 0;
+        for (int i = 0; i < representatives.size(); i++) {
+            // Duplicates are represented by the banner already in the library
+            if (representatives.get(i) == batch.adds.get(i).banner()) {
+                added++;
+            }
+        }
+        imported += added;
+        skipped += representatives.size() - added;
+    }
+
+    private Result result(String error) {
+        return new Result(processed, imported, skipped, cancelled, error);
+    }
+
+    /**
+     * Stops the import after the current banner. Batches already committed stay in the library.
+     */
+    public void cancel() {
+        cancelled = true;
+    }
+
+    public int getProcessed() {
+        return processed;
+    }
+
+    public int getImported() {
+        return imported;
+    }
+
+    public long getBytesRead() {
+        return bytesRead;
+    }
+
+    /**
+     * Size of the input in bytes, or -1 until it is known.
+     */
+    public long getTotalBytes() {
+        return totalBytes;
+    }
+}
@@ -0,0 +1,192 @@
+package dogwhale65.loombook.data;
+
+import dogwhale65.loombook.Loombook;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Moves backend writes off the calling thread. Mutations are queued per banner id, so
+ * repeated writes to the same banner (rapid renames, an import followed by an edit)
+ * collapse into one, and a background worker applies them once changes have stopped for
+ * a moment, or at the latest a few seconds after the first one.
+ * Each batch is written while holding the collection's {@link LibraryLock}.
+ */
+public class WriteBehindPersister implements BannerBackend {
+    private static final long FLUSH_DELAY_MILLIS = 250;
+    // A steady stream of changes still reaches the disk this soon after the first of them
+    private static final long MAX_FLUSH_DELAY_MILLIS = 2000;
+
+    private final BannerBackend backend;
+    private final LibraryLock lock;
+    private final ScheduledExecutorService worker;
+    private Map<String, PendingWrite> pending = new LinkedHashMap<>();
+    private boolean flushScheduled = false;
+    private boolean closed = false;
+    // System.nanoTime() of the first and the latest change still queued
+    private long firstChange;
+    private long lastChange;
+
+    public WriteBehindPersister(BannerBackend backend, LibraryLock lock) {
+        this.backend = backend;
+        this.lock = lock;
+        this.worker = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "Loombook write-behind");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    private enum WriteType {
+        SAVE,
+        RENAME,
+        DELETE
+    }
+
+    private record PendingWrite(WriteType type, SavedBanner banner) {
+    }
+
+    @Override
+    public boolean hasData() {
+        return backend.hasData();
+    }
+
+    @Override
+    public List<SavedBanner> loadAll() {
+        return backend.loadAll();
+    }
+
+    @Override
+    public synchronized void save(SavedBanner banner) {
+        enqueue(banner.getId(), new PendingWrite(WriteType.SAVE, banner));
+    }
+
+    @Override
+    public synchronized void rename(SavedBanner banner) {
+        // A queued full save of the banner it replaced becomes a full save of the renamed copy
+        PendingWrite queued = pending.get(banner.getId());
+        WriteType type = queued != null && queued.type() == WriteType.SAVE ? WriteType.SAVE : WriteType.RENAME;
+        enqueue(banner.getId(), new PendingWrite(type, banner));
+    }
+
+    @Override
+    public synchronized void delete(String id) {
+        enqueue(id, new PendingWrite(WriteType.DELETE, null));
+    }
+
+    /**
+     * Queues a write and pushes the flush back, up to the maximum delay. Writes after
+     * {@link #close} are rejected rather than lost without a trace.
+     */
+    private void enqueue(String id, PendingWrite write) {
+        if (closed) {
+            throw new IllegalStateException("Banner storage is closed, can't write banner " + id);
+        }
+        long now = System.nanoTime();
+        if (pending.isEmpty()) {
+            firstChange = now;
+        }
+        lastChange = now;
+        pending.put(id, write);
+        // Once the worker is shut down, close() writes whatever is queued
+        if (!flushScheduled && !worker.isShutdown()) {
+            flushScheduled = true;
+            worker.schedule(this::flushWhenQuiet, FLUSH_DELAY_MILLIS, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Flushes once no change has come in for the flush delay, or the oldest queued change
+     * has waited the maximum delay. Otherwise checks again when that time comes.
+     */
+    private void flushWhenQuiet() {
+        synchronized (this) {
+            long due = Math.min(lastChange + TimeUnit.MILLISECONDS.toNanos(FLUSH_DELAY_MILLIS),
+                    firstChange + TimeUnit.MILLISECONDS.toNanos(MAX_FLUSH_DELAY_MILLIS));
+            long wait = due - System.nanoTime();
+            if (wait > 0 && !worker.isShutdown()) {
+                worker.schedule(this::flushWhenQuiet, wait, TimeUnit.NANOSECONDS);
+                return;
+            }
+            flushScheduled = false;
+        }
+        flush(takePending());
+    }
+
+    private synchronized Map<String, PendingWrite> takePending() {
+        Map<String, PendingWrite> batch = pending;
+        pending = new LinkedHashMap<>();
+        return batch;
+    }
+
+    /**
+     * Applies the writes to the backend on the calling thread.
+     */
+    private void flush(Map<String, PendingWrite> batch) {
+        if (batch.isEmpty()) {
+            return;
+        }
+
+        lock.run(() -> {
+            // Each id has one queued write, so saves can go to the backend together
+            List<SavedBanner> saves = new ArrayList<>();
+            for (Map.Entry<String, PendingWrite> entry : batch.entrySet()) {
+                PendingWrite write = entry.getValue();
+                try {
+                    switch (write.type()) {
+                        case SAVE -> saves.add(write.banner());
+                        case RENAME -> backend.rename(write.banner());
+                        case DELETE -> backend.delete(entry.getKey());
+                    }
+                } catch (RuntimeException e) {
+                    Loombook.LOGGER.error("Failed to persist change to banner {}", entry.getKey(), e);
+                }
+            }
+            if (!saves.isEmpty()) {
+                try {
+                    if (saves.size() == 1) {
+                        backend.save(saves.getFirst());
+                    } else {
+                        backend.saveAll(saves);
+                    }
+                } catch (RuntimeException e) {
+                    Loombook.LOGGER.error("Failed to persist {} banners", saves.size(), e);
+                }
+            }
+        });
+        Loombook.LOGGER.debug("Persisted {} banner changes", batch.size());
+    }
+
+    /**
+     * Stops the worker, writes everything still queued and closes the backend. Later
+     * writes throw {@link IllegalStateException}.
+     */
+    @Override
+    public void close() {
+        synchronized (this) {
+            // Under the monitor, so no write can be scheduled on a worker that is shutting down
+            worker.shutdown();
+        }
+        try {
+            if (!worker.awaitTermination(10, TimeUnit.SECONDS)) {
+                Loombook.LOGGER.warn("Timed out waiting for banner writes to finish");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        Map<String, PendingWrite> batch;
+        synchronized (this) {
+            closed = true;
+            batch = takePending();
+        }
+        flush(batch);
+        // Backends take the lock themselves for what they write on close, possibly from their own threads
+        backend.close();
+        lock.close();
+    }
+}
@@ -29,6 +29,10 @@ public abstract class LoomScreenMixin extends HandledScreen<LoomScreenHandler> {
         // Position the panel to the right of the loom UI
         int panelX = this.x + this.backgroundWidth + 4;
         int panelY = this.y;
+        if (loombook$sidePanel != null) {
+            // init runs again on resize; the old panel must stop listening
+            loombook$sidePanel.close();
+        }
         loombook$sidePanel = new LoomSidePanel((LoomScreen)(Object)this, this.handler, panelX, panelY);
     }
 
@@ -48,6 +52,23 @@ public abstract class LoomScreenMixin extends HandledScreen<LoomScreenHandler> {
         }
     }
 
+    @Override
+    public boolean keyPressed(int keyCode, int scanCode, int modifiers) {
+        // LoomScreen doesn't override keyPressed, so the mixin adds the override itself
+        if (loombook$sidePanel != null && loombook$sidePanel.keyPressed(keyCode, scanCode, modifiers)) {
+            return true;
+        }
+        return super.keyPressed(keyCode, scanCode, modifiers);
+    }
+
+    @Override
+    public void removed() {
+        if (loombook$sidePanel != null) {
+            loombook$sidePanel.close();
+        }
+        super.removed();
+    }
+
     @Inject(method = "mouseScrolled", at = @At("HEAD"), cancellable = true)
     private void loombook$onMouseScrolled(double mouseX, double mouseY, double horizontalAmount, double verticalAmount, CallbackInfoReturnable<Boolean> cir) {
         if (loombook$sidePanel != null && loombook$sidePanel.mouseScrolled(mouseX, mouseY, horizontalAmount, verticalAmount)) {
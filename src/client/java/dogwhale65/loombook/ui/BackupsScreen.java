@@ -0,0 +1,190 @@
+package dogwhale65.loombook.ui;
+
+import dogwhale65.loombook.Loombook;
+import dogwhale65.loombook.data.BackupManager;
+import dogwhale65.loombook.data.BannerStorage;
+import net.minecraft.client.MinecraftClient;
+import net.minecraft.client.gui.DrawContext;
+import net.minecraft.client.gui.screen.Screen;
+import net.minecraft.text.Text;
+
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Screen listing the library backups, newest first, with a restore button for each.
+ * Restoring replaces the whole library, so the button asks for a second click, and the
+ * restore itself runs in the background.
+ */
+public class BackupsScreen extends Screen {
+    private static final int LIST_WIDTH = 300;
+    private static final int LIST_HEIGHT = 200;
+    private static final int PADDING = 10;
+    private static final int ROW_HEIGHT = 16;
+    private static final int RESTORE_BUTTON_WIDTH = 50;
+    private static final DateTimeFormatter TIME_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm")
+            .withZone(ZoneId.systemDefault());
+
+    private final Screen previousScreen;
+    private List<BackupManager.BackupInfo> backups = List.of();
+    private int scrollOffset = 0;
+    private String status = null;
+    // Sequence of the backup whose restore button was clicked once and now asks to confirm
+    private int armedSequence = -1;
+    private CompletableFuture<Boolean> restoring = null;
+
+    public BackupsScreen(Screen previousScreen) {
+        super(Text.literal("Backups"));
+        this.previousScreen = previousScreen;
+    }
+
+    @Override
+    protected void init() {
+        List<BackupManager.BackupInfo> list = new ArrayList<>(BannerStorage.getInstance().getBackups());
+        Collections.reverse(list);
+        backups = list;
+    }
+
+    @Override
+    public void render(DrawContext context, int mouseX, int mouseY, float delta) {
+        // Draw semi-transparent background
+        context.fill(0, 0, this.width, this.height, 0xAA000000);
+
+        int listX = (this.width - LIST_WIDTH) / 2;
+        int listY = (this.height - LIST_HEIGHT) / 2;
+        context.fill(listX, listY, listX + LIST_WIDTH, listY + LIST_HEIGHT, 0xFF1F1F1F);
+        context.drawBorder(listX, listY, LIST_WIDTH, LIST_HEIGHT, 0xFFFFFFFF);
+
+        // Draw title
+        context.drawText(this.textRenderer, Text.literal("Restore the library as of a backup"),
+            listX, listY - 20, 0xFFFFFFFF, true);
+
+        if (backups.isEmpty()) {
+            context.drawText(this.textRenderer, Text.literal("No backups yet"),
+                listX + PADDING, listY + PADDING, 0xFF888888, true);
+        }
+
+        context.enableScissor(listX, listY + PADDING / 2, listX + LIST_WIDTH, listY + LIST_HEIGHT - PADDING / 2);
+        for (int i = 0; i < backups.size(); i++) {
+            int rowY = listY + PADDING + i * ROW_HEIGHT - scrollOffset;
+            if (rowY + ROW_HEIGHT < listY || rowY > listY + LIST_HEIGHT) continue;
+
+            BackupManager.BackupInfo backup = backups.get(i);
+            String label = TIME_FORMAT.format(Instant.ofEpochMilli(backup.createdAt()))
+                    + "  " + backup.total() + " banners"
+                    + (backup.full() ? " (full)" : " (+" + backup.changed() + ")");
+            context.drawText(this.textRenderer, Text.literal(label), listX + PADDING, rowY + 3, 0xFFFFFFFF, true);
+
+            int buttonX = listX + LIST_WIDTH - PADDING - RESTORE_BUTTON_WIDTH;
+            boolean hovered = mouseX >= buttonX && mouseX < buttonX + RESTORE_BUTTON_WIDTH
+                    && mouseY >= rowY && mouseY < rowY + ROW_HEIGHT - 2;
+            boolean armed = backup.sequence() == armedSequence;
+            int color;
+            if (isRestoring()) {
+                color = 0xFF444444;
+            } else if (armed) {
+                color = hovered ? 0xFFFF6B6B : 0xFFCC0000;
+            } else {
+                color = hovered ? 0xFF5C7CFA : 0xFF1E40AF;
+            }
+            context.fill(buttonX, rowY, buttonX + RESTORE_BUTTON_WIDTH, rowY + ROW_HEIGHT - 2, color);
+            String restoreText = armed ? "Confirm" : "Restore";
+            int restoreTextWidth = this.textRenderer.getWidth(restoreText);
+            context.drawText(this.textRenderer, Text.literal(restoreText),
+                buttonX + (RESTORE_BUTTON_WIDTH - restoreTextWidth) / 2, rowY + 3, 0xFFFFFFFF, true);
+        }
+        context.disableScissor();
+
+        // Draw back button and status
+        int buttonY = listY + LIST_HEIGHT + PADDING;
+        int backButtonX = (this.width / 2) - 25;
+        boolean backHovered = mouseX >= backButtonX && mouseX < backButtonX + 50 && mouseY >= buttonY && mouseY < buttonY + 20;
+        context.fill(backButtonX, buttonY, backButtonX + 50, buttonY + 20, backHovered ? 0xFFFF6B6B : 0xFFCC0000);
+        int backTextWidth = this.textRenderer.getWidth("Back");
+        context.drawText(this.textRenderer, Text.literal("Back"), backButtonX + (50 - backTextWidth) / 2, buttonY + 6, 0xFFFFFFFF, true);
+
+        if (status != null) {
+            context.drawText(this.textRenderer, Text.literal(status), listX, buttonY + 26, 0xFFAAAAAA, true);
+        }
+
+        super.render(context, mouseX, mouseY, delta);
+    }
+
+    @Override
+    public boolean mouseClicked(double mouseX, double mouseY, int button) {
+        if (button != 0) return false;
+
+        int listX = (this.width - LIST_WIDTH) / 2;
+        int listY = (this.height - LIST_HEIGHT) / 2;
+
+        int buttonY = listY + LIST_HEIGHT + PADDING;
+        int backButtonX = (this.width / 2) - 25;
+        if (mouseX >= backButtonX && mouseX < backButtonX + 50 && mouseY >= buttonY && mouseY < buttonY + 20) {
+            this.client.setScreen(previousScreen);
+            return true;
+        }
+
+        if (isRestoring() || mouseY < listY || mouseY >= listY + LIST_HEIGHT) return false;
+        int buttonX = listX + LIST_WIDTH - PADDING - RESTORE_BUTTON_WIDTH;
+        if (mouseX < buttonX || mouseX >= buttonX + RESTORE_BUTTON_WIDTH) {
+            armedSequence = -1;
+            return false;
+        }
+
+        int row = ((int) mouseY - listY - PADDING + scrollOffset) / ROW_HEIGHT;
+        if (row >= 0 && row < backups.size()) {
+            BackupManager.BackupInfo backup = backups.get(row);
+            if (backup.sequence() != armedSequence) {
+                armedSequence = backup.sequence();
+                status = "Click Confirm to replace the library with this backup";
+                return true;
+            }
+            restore(backup);
+            return true;
+        }
+        return false;
+    }
+
+    private void restore(BackupManager.BackupInfo backup) {
+        armedSequence = -1;
+        status = "Restoring backup...";
+        String time = TIME_FORMAT.format(Instant.ofEpochMilli(backup.createdAt()));
+        restoring = BannerStorage.getInstance().restoreBackup(backup.sequence());
+        restoring.whenComplete((restored, error) -> MinecraftClient.getInstance().execute(() -> {
+            if (error == null && restored) {
+                status = "Restored backup from " + time;
+                // Restoring backs up the current library first, so refresh the list
+                init();
+            } else {
+                status = "Backup could not be read";
+                Loombook.LOGGER.error("Failed to restore backup {}", backup.sequence(), error);
+            }
+        }));
+    }
+
+    private boolean isRestoring() {
+        return restoring != null && !restoring.isDone();
+    }
+
+    @Override
+    public boolean mouseScrolled(double mouseX, double mouseY, double horizontalAmount, double verticalAmount) {
+        int maxScroll = Math.max(0, backups.size() * ROW_HEIGHT + PADDING * 2 - LIST_HEIGHT);
+        scrollOffset = Math.max(0, Math.min(scrollOffset - (int) (verticalAmount * ROW_HEIGHT), maxScroll));
+        return true;
+    }
+
+    @Override
+    public void close() {
+        this.client.setScreen(previousScreen);
+    }
+
+    @Override
+    public boolean shouldCloseOnEsc() {
+        return true;
+    }
+}
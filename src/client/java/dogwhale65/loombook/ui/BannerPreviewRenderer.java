@@ -2,6 +2,9 @@ package dogwhale65.loombook.ui;
 
 import dogwhale65.loombook.Loombook;
 import dogwhale65.loombook.data.BannerPatternLayer;
+import dogwhale65.loombook.data.BannerStorage;
+import dogwhale65.loombook.data.LibraryChange;
+import dogwhale65.loombook.data.LibraryChangeSet;
 import dogwhale65.loombook.data.SavedBanner;
 import net.minecraft.component.DataComponentTypes;
 import net.minecraft.component.type.BannerPatternsComponent;
@@ -18,22 +21,63 @@ import net.minecraft.util.DyeColor;
 import net.minecraft.util.Identifier;
 
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 
 /**
  * Renders banner preview thumbnails in the side panel.
  */
 public class BannerPreviewRenderer {
+    // Resolved pattern entries for the registry of the current world
+    private static final Map<String, Optional<RegistryEntry<Object>>> cachedEntries = new HashMap<>();
+    private static Registry<Object> cachedRegistry;
+    private static final int MAX_CACHED_STACKS = 256;
+    // Built preview stacks for recently drawn banners; entries are dropped as the library reports edits
+    private static final Map<SavedBanner, ItemStack> cachedStacks = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<SavedBanner, ItemStack> eldest) {
+            return size() > MAX_CACHED_STACKS;
+        }
+    };
+
+    static {
+        BannerStorage.addListener(BannerPreviewRenderer::onLibraryChanged);
+    }
 
     public static void render(DrawContext context, SavedBanner banner, LoomScreenHandler handler, int x, int y, int size) {
         // Create a banner item stack with patterns applied
-        ItemStack bannerStack = createBannerWithPatterns(banner);
+        Registry<Object> registry = getBannerPatternRegistry();
+        if (registry != cachedRegistry) {
+            cachedRegistry = registry;
+            cachedEntries.clear();
+            cachedStacks.clear();
+        }
+        ItemStack bannerStack = cachedStacks.computeIfAbsent(banner, BannerPreviewRenderer::createBannerWithPatterns);
 
         // Render the item using DrawContext
         context.drawItem(bannerStack, x, y);
     }
 
+    private static void onLibraryChanged(LibraryChangeSet changes) {
+        if (changes.isReload()) {
+            cachedStacks.clear();
+            return;
+        }
+        for (LibraryChange change : changes.changes()) {
+            switch (change.type()) {
+                case REMOVED, LAYERS_CHANGED -> cachedStacks.remove(change.banner());
+                default -> {
+                }
+            }
+            if (change.previous() != null) {
+                cachedStacks.remove(change.previous());
+            }
+        }
+    }
+
     /**
      * Creates a banner ItemStack with all patterns from the SavedBanner applied.
      */
@@ -49,24 +93,9 @@ public class BannerPreviewRenderer {
                 
                 if (registry != null) {
                     for (BannerPatternLayer layer : layers) {
-                        try {
-                            String patternIdStr = layer.patternId();
-                            Identifier patternId = Identifier.tryParse(patternIdStr);
-                            
-                            if (patternId != null) {
-                                Optional<RegistryEntry.Reference<Object>> entry = registry.getEntry(patternId);
-                                
-                                if (entry.isPresent()) {
-                                    // We need to cast to the specific type expected by the builder
-                                    @SuppressWarnings("unchecked")
-                                    RegistryEntry<Object> castedEntry = entry.get();
-                                    builder.add((RegistryEntry) castedEntry, layer.getDyeColorEnum());
-                                } else {
-                                    Loombook.LOGGER.debug("Pattern not found in registry: {}", patternId);
-                                }
-                            }
-                        } catch (Exception e) {
-                            Loombook.LOGGER.debug("Error processing banner pattern: {}", layer.patternId(), e);
+                        RegistryEntry<Object> entry = getPatternEntry(registry, layer.patternId());
+                        if (entry != null) {
+                            builder.add((RegistryEntry) entry, layer.getDyeColorEnum());
                         }
                     }
                 }
@@ -80,6 +109,34 @@ public class BannerPreviewRenderer {
         return stack;
     }
 
+    /**
+     * Looks up a pattern's registry entry, remembering the result (including misses)
+     * until the registry changes, i.e. until the player joins another world.
+     */
+    private static RegistryEntry<Object> getPatternEntry(Registry<Object> registry, String patternId) {
+        if (registry != cachedRegistry) {
+            cachedRegistry = registry;
+            cachedEntries.clear();
+        }
+        return cachedEntries.computeIfAbsent(patternId, id -> lookupPatternEntry(registry, id)).orElse(null);
+    }
+
+    private static Optional<RegistryEntry<Object>> lookupPatternEntry(Registry<Object> registry, String patternIdStr) {
+        try {
+            Identifier patternId = Identifier.tryParse(patternIdStr);
+            if (patternId != null) {
+                Optional<RegistryEntry.Reference<Object>> entry = registry.getEntry(patternId);
+                if (entry.isPresent()) {
+                    return Optional.of(entry.get());
+                }
+                Loombook.LOGGER.debug("Pattern not found in registry: {}", patternId);
+            }
+        } catch (Exception e) {
+            Loombook.LOGGER.debug("Error processing banner pattern: {}", patternIdStr, e);
+        }
+        return Optional.empty();
+    }
+
     @SuppressWarnings("unchecked")
     private static Registry<Object> getBannerPatternRegistry() {
         MinecraftClient client = MinecraftClient.getInstance();
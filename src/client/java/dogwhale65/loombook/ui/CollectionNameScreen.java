@@ -0,0 +1,188 @@
+package dogwhale65.loombook.ui;
+
+import dogwhale65.loombook.Loombook;
+import dogwhale65.loombook.data.BannerCollections;
+import dogwhale65.loombook.data.BannerStorage;
+import net.minecraft.client.gui.DrawContext;
+import net.minecraft.client.gui.screen.Screen;
+import net.minecraft.text.Text;
+
+import java.util.List;
+
+/**
+ * Screen for naming a new banner collection and switching to it, or for naming the
+ * collection (new or existing) that selected banners are moved to.
+ */
+public class CollectionNameScreen extends Screen {
+    private static final int EDITOR_WIDTH = 250;
+    private static final int EDITOR_HEIGHT = 60;
+    private static final int PADDING = 10;
+
+    private final Screen previousScreen;
+    // Banners to move instead of switching collections, or null
+    private final List<String> movingIds;
+    private StringBuilder textBuffer = new StringBuilder();
+    private int cursorPos = 0;
+
+    public CollectionNameScreen(Screen previousScreen) {
+        this(previousScreen, null);
+    }
+
+    public CollectionNameScreen(Screen previousScreen, List<String> movingIds) {
+        super(Text.literal(movingIds != null ? "Move Banners" : "New Collection"));
+        this.previousScreen = previousScreen;
+        this.movingIds = movingIds;
+    }
+
+    @Override
+    public void render(DrawContext context, int mouseX, int mouseY, float delta) {
+        // Draw semi-transparent background
+        context.fill(0, 0, this.width, this.height, 0xAA000000);
+
+        // Draw editor background
+        int editorX = (this.width - EDITOR_WIDTH) / 2;
+        int editorY = (this.height - EDITOR_HEIGHT) / 2;
+        context.fill(editorX, editorY, editorX + EDITOR_WIDTH, editorY + EDITOR_HEIGHT, 0xFF1F1F1F);
+        context.drawBorder(editorX, editorY, EDITOR_WIDTH, EDITOR_HEIGHT, 0xFFFFFFFF);
+
+        // Draw title
+        context.drawText(this.textRenderer, Text.literal(movingIds != null
+            ? "Move " + movingIds.size() + " banners to collection:" : "Enter collection name:"),
+            editorX + PADDING, editorY - 20, 0xFFFFFFFF, true);
+
+        // Draw text content
+        int textStartX = editorX + PADDING;
+        int textStartY = editorY + PADDING;
+        String text = textBuffer.toString();
+        context.drawText(this.textRenderer, Text.literal(text), textStartX, textStartY, 0xFFFFFFFF, true);
+
+        // Draw cursor
+        if (cursorPos >= 0 && cursorPos <= text.length()) {
+            String beforeCursor = text.substring(0, cursorPos);
+            int cursorX = textStartX + this.textRenderer.getWidth(beforeCursor);
+            context.fill(cursorX, textStartY, cursorX + 1, textStartY + 10, 0xFFFFFFFF);
+        }
+
+        // Draw buttons
+        int buttonY = editorY + EDITOR_HEIGHT + PADDING;
+        
+        // OK button
+        int okButtonX = (this.width / 2) - 60;
+        boolean okHovered = mouseX >= okButtonX && mouseX < okButtonX + 50 && mouseY >= buttonY && mouseY < buttonY + 20;
+        int okColor = okHovered ? 0xFF4CAF50 : 0xFF2E7D32;
+        context.fill(okButtonX, buttonY, okButtonX + 50, buttonY + 20, okColor);
+        context.drawText(this.textRenderer, Text.literal("OK"), okButtonX + 15, buttonY + 6, 0xFFFFFFFF, true);
+
+        // Cancel button
+        int cancelButtonX = (this.width / 2) + 10;
+        boolean cancelHovered = mouseX >= cancelButtonX && mouseX < cancelButtonX + 50 && mouseY >= buttonY && mouseY < buttonY + 20;
+        int cancelColor = cancelHovered ? 0xFFFF5555 : 0xFFCC0000;
+        context.fill(cancelButtonX, buttonY, cancelButtonX + 50, buttonY + 20, cancelColor);
+        context.drawText(this.textRenderer, Text.literal("Cancel"), cancelButtonX + 5, buttonY + 6, 0xFFFFFFFF, true);
+
+        super.render(context, mouseX, mouseY, delta);
+    }
+
+    @Override
+    public boolean mouseClicked(double mouseX, double mouseY, int button) {
+        if (button != 0) return false;
+
+        int editorX = (this.width - EDITOR_WIDTH) / 2;
+        int editorY = (this.height - EDITOR_HEIGHT) / 2;
+        int buttonY = editorY + EDITOR_HEIGHT + PADDING;
+
+        // OK button
+        int okButtonX = (this.width / 2) - 60;
+        if (mouseX >= okButtonX && mouseX < okButtonX + 50 && mouseY >= buttonY && mouseY < buttonY + 20) {
+            createCollection();
+            return true;
+        }
+
+        // Cancel button
+        int cancelButtonX = (this.width / 2) + 10;
+        if (mouseX >= cancelButtonX && mouseX < cancelButtonX + 50 && mouseY >= buttonY && mouseY < buttonY + 20) {
+            this.client.setScreen(previousScreen);
+            return true;
+        }
+
+        // Click in text area
+        int textStartX = editorX + PADDING;
+        int textStartY = editorY + PADDING;
+        if (mouseX >= textStartX && mouseX < textStartX + EDITOR_WIDTH - (PADDING * 2) && 
+            mouseY >= textStartY && mouseY < textStartY + 20) {
+            cursorPos = textBuffer.length();
+            return true;
+        }
+
+        return false;
+    }
+
+    @Override
+    public boolean keyPressed(int keyCode, int scanCode, int modifiers) {
+        String text = textBuffer.toString();
+
+        if (keyCode == 259) { // Backspace
+            if (cursorPos > 0) {
+                textBuffer.deleteCharAt(cursorPos - 1);
+                cursorPos--;
+            }
+            return true;
+        } else if (keyCode == 261) { // Delete
+            if (cursorPos < text.length()) {
+                textBuffer.deleteCharAt(cursorPos);
+            }
+            return true;
+        } else if (keyCode == 262) { // Right arrow
+            if (cursorPos < text.length()) {
+                cursorPos++;
+            }
+            return true;
+        } else if (keyCode == 263) { // Left arrow
+            if (cursorPos > 0) {
+                cursorPos--;
+            }
+            return true;
+        } else if (keyCode == 257) { // Enter
+            createCollection();
+            return true;
+        }
+
+        return super.keyPressed(keyCode, scanCode, modifiers);
+    }
+
+    @Override
+    public boolean charTyped(char chr, int modifiers) {
+        if (chr >= 32 && chr <= 126) { // Printable ASCII
+            textBuffer.insert(cursorPos, chr);
+            cursorPos++;
+            return true;
+        }
+        return false;
+    }
+
+    private void createCollection() {
+        String name = BannerCollections.sanitize(textBuffer.toString());
+        if (name == null) {
+            Loombook.LOGGER.warn("Collection name cannot be empty");
+            return;
+        }
+
+        if (movingIds != null) {
+            int moved = BannerStorage.getInstance().moveToCollection(movingIds, name);
+            Loombook.LOGGER.info("Moved {} banners to collection '{}'", moved, name);
+        } else {
+            BannerStorage.switchCollection(name);
+        }
+        this.client.setScreen(previousScreen);
+    }
+
+    @Override
+    public void close() {
+        this.client.setScreen(previousScreen);
+    }
+
+    @Override
+    public boolean shouldCloseOnEsc() {
+        return true;
+    }
+}
@@ -1,18 +1,35 @@
 package dogwhale65.loombook.ui;
 
 import dogwhale65.loombook.Loombook;
+import dogwhale65.loombook.config.LoombookConfig;
 import dogwhale65.loombook.data.BannerStorage;
+import dogwhale65.loombook.data.BulkBannerImporter;
+import dogwhale65.loombook.data.DuplicatePolicy;
+import dogwhale65.loombook.data.RegionBannerHarvester;
+import dogwhale65.loombook.data.StreamingBannerImporter;
 import net.minecraft.client.gui.DrawContext;
 import net.minecraft.client.gui.screen.Screen;
 import net.minecraft.text.Text;
 
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
 /**
- * Screen for importing banner JSON data with a text editor.
+ * Screen for importing banner JSON data, /give commands or share codes with a text editor,
+ * or from files and world folders dropped onto the window. JSON is imported in the
+ * background by {@link StreamingBannerImporter}; anything else goes to
+ * {@link BulkBannerImporter}, worlds to {@link RegionBannerHarvester}, and other folders
+ * are read as one JSON file per banner.
  */
 public class ImportBannerScreen extends Screen {
     private static final int EDITOR_WIDTH = 300;
     private static final int EDITOR_HEIGHT = 200;
     private static final int PADDING = 10;
+    private static final int POLICY_BUTTON_WIDTH = 120;
+    private static final int POLICY_BUTTON_HEIGHT = 14;
+    private static final int BACKUPS_BUTTON_WIDTH = 60;
+    private static final int CHECK_BUTTON_WIDTH = 50;
 
     private final Screen previousScreen;
     private StringBuilder textBuffer = new StringBuilder();
@@ -36,8 +53,8 @@ public class ImportBannerScreen extends Screen {
         context.drawBorder(editorX, editorY, EDITOR_WIDTH, EDITOR_HEIGHT, 0xFFFFFFFF);
 
         // Draw title
-        context.drawText(this.textRenderer, Text.literal("Paste Banner JSON or /give Command"),
-            this.width / 2 - 120, editorY - 20, 0xFFFFFFFF, true);
+        context.drawText(this.textRenderer, Text.literal("Paste Banner JSON, /give Commands or Share Codes, or drop a file"),
+            this.width / 2 - 150, editorY - 20, 0xFFFFFFFF, true);
 
         // Draw text content with scrolling
         int textStartX = editorX + PADDING;
@@ -74,6 +91,37 @@ public class ImportBannerScreen extends Screen {
 
         context.disableScissor();
 
+        // Draw duplicate policy toggle
+        int policyButtonX = editorX + PADDING;
+        int policyButtonY = editorY + EDITOR_HEIGHT - PADDING - POLICY_BUTTON_HEIGHT;
+        boolean policyHovered = mouseX >= policyButtonX && mouseX < policyButtonX + POLICY_BUTTON_WIDTH
+                && mouseY >= policyButtonY && mouseY < policyButtonY + POLICY_BUTTON_HEIGHT;
+        int policyColor = policyHovered ? 0xFF5C7CFA : 0xFF1E40AF;
+        context.fill(policyButtonX, policyButtonY, policyButtonX + POLICY_BUTTON_WIDTH, policyButtonY + POLICY_BUTTON_HEIGHT, policyColor);
+        String policyText = "Duplicates: " + LoombookConfig.getInstance().getDuplicatePolicy().getDisplayName();
+        int policyTextWidth = this.textRenderer.getWidth(policyText);
+        context.drawText(this.textRenderer, Text.literal(policyText), policyButtonX + (POLICY_BUTTON_WIDTH - policyTextWidth) / 2, policyButtonY + 3, 0xFFFFFFFF, true);
+
+        // Draw backups button
+        int backupsButtonX = editorX + EDITOR_WIDTH - PADDING - BACKUPS_BUTTON_WIDTH;
+        boolean backupsHovered = mouseX >= backupsButtonX && mouseX < backupsButtonX + BACKUPS_BUTTON_WIDTH
+                && mouseY >= policyButtonY && mouseY < policyButtonY + POLICY_BUTTON_HEIGHT;
+        int backupsColor = backupsHovered ? 0xFF5C7CFA : 0xFF1E40AF;
+        context.fill(backupsButtonX, policyButtonY, backupsButtonX + BACKUPS_BUTTON_WIDTH, policyButtonY + POLICY_BUTTON_HEIGHT, backupsColor);
+        String backupsText = "Backups...";
+        int backupsTextWidth = this.textRenderer.getWidth(backupsText);
+        context.drawText(this.textRenderer, Text.literal(backupsText), backupsButtonX + (BACKUPS_BUTTON_WIDTH - backupsTextWidth) / 2, policyButtonY + 3, 0xFFFFFFFF, true);
+
+        // Draw integrity check button
+        int checkButtonX = backupsButtonX - 4 - CHECK_BUTTON_WIDTH;
+        boolean checkHovered = mouseX >= checkButtonX && mouseX < checkButtonX + CHECK_BUTTON_WIDTH
+                && mouseY >= policyButtonY && mouseY < policyButtonY + POLICY_BUTTON_HEIGHT;
+        int checkColor = checkHovered ? 0xFF5C7CFA : 0xFF1E40AF;
+        context.fill(checkButtonX, policyButtonY, checkButtonX + CHECK_BUTTON_WIDTH, policyButtonY + POLICY_BUTTON_HEIGHT, checkColor);
+        String checkText = "Check...";
+        int checkTextWidth = this.textRenderer.getWidth(checkText);
+        context.drawText(this.textRenderer, Text.literal(checkText), checkButtonX + (CHECK_BUTTON_WIDTH - checkTextWidth) / 2, policyButtonY + 3, 0xFFFFFFFF, true);
+
         // Draw buttons
         int buttonY = editorY + EDITOR_HEIGHT + PADDING;
         int buttonWidth = 50;
@@ -124,6 +172,32 @@ public class ImportBannerScreen extends Screen {
             return true;
         }
 
+        // Duplicate policy toggle
+        int policyButtonX = editorX + PADDING;
+        int policyButtonY = editorY + EDITOR_HEIGHT - PADDING - POLICY_BUTTON_HEIGHT;
+        if (mouseX >= policyButtonX && mouseX < policyButtonX + POLICY_BUTTON_WIDTH
+                && mouseY >= policyButtonY && mouseY < policyButtonY + POLICY_BUTTON_HEIGHT) {
+            LoombookConfig config = LoombookConfig.getInstance();
+            config.setDuplicatePolicy(config.getDuplicatePolicy().next());
+            return true;
+        }
+
+        // Backups button
+        int backupsButtonX = editorX + EDITOR_WIDTH - PADDING - BACKUPS_BUTTON_WIDTH;
+        if (mouseX >= backupsButtonX && mouseX < backupsButtonX + BACKUPS_BUTTON_WIDTH
+                && mouseY >= policyButtonY && mouseY < policyButtonY + POLICY_BUTTON_HEIGHT) {
+            this.client.setScreen(new BackupsScreen(this));
+            return true;
+        }
+
+        // Integrity check button
+        int checkButtonX = backupsButtonX - 4 - CHECK_BUTTON_WIDTH;
+        if (mouseX >= checkButtonX && mouseX < checkButtonX + CHECK_BUTTON_WIDTH
+                && mouseY >= policyButtonY && mouseY < policyButtonY + POLICY_BUTTON_HEIGHT) {
+            this.client.setScreen(new IntegrityScreen(this));
+            return true;
+        }
+
         // Click in text area
         int textStartX = editorX + PADDING;
         int textStartY = editorY + PADDING;
@@ -254,12 +328,53 @@ public class ImportBannerScreen extends Screen {
         }
 
         BannerStorage storage = BannerStorage.getInstance();
-        if (storage.importBannerFromJson(input) != null) {
-            Loombook.LOGGER.info("Banner imported successfully");
-            this.client.setScreen(previousScreen);
-        } else {
-            String format = input.startsWith("/give") ? "/give command" : "JSON";
-            Loombook.LOGGER.error("Failed to import banner - invalid {}", format);
+        DuplicatePolicy policy = LoombookConfig.getInstance().getDuplicatePolicy();
+        if (BulkBannerImporter.isBulkInput(input)) {
+            BulkBannerImporter importer = new BulkBannerImporter(storage, policy);
+            this.client.setScreen(new ImportReportScreen(previousScreen, importer.importTextAsync(input)));
+            return;
+        }
+        StreamingBannerImporter importer = new StreamingBannerImporter(storage, policy);
+        this.client.setScreen(new ImportProgressScreen(previousScreen, importer, importer.importText(input)));
+    }
+
+    /**
+     * Imports the first dropped file: JSON is streamed from disk, anything else is read
+     * as a list of commands. A dropped world folder has its placed banners harvested, and
+     * any other folder is read as banner files in the per-file layout.
+     */
+    @Override
+    public void onFilesDropped(List<Path> paths) {
+        for (Path path : paths) {
+            if (Files.isDirectory(path) && RegionBannerHarvester.isWorld(path)) {
+                Loombook.LOGGER.info("Harvesting banners from world {}", path);
+                RegionBannerHarvester harvester = new RegionBannerHarvester(BannerStorage.getInstance(),
+                        LoombookConfig.getInstance().getDuplicatePolicy());
+                this.client.setScreen(new ImportReportScreen(previousScreen, harvester.harvest(path)));
+                return;
+            }
+            if (Files.isDirectory(path)) {
+                // A folder in the per-file layout, such as an exported one or another library's banners
+                Loombook.LOGGER.info("Importing banner files from {}", path);
+                this.client.setScreen(new ImportReportScreen(previousScreen, BannerStorage.getInstance()
+                        .importFromDirectory(path, LoombookConfig.getInstance().getDuplicatePolicy())));
+                return;
+            }
+            if (Files.isRegularFile(path)) {
+                Loombook.LOGGER.info("Importing banners from {}", path);
+                BannerStorage storage = BannerStorage.getInstance();
+                DuplicatePolicy policy = LoombookConfig.getInstance().getDuplicatePolicy();
+                String fileName = path.getFileName().toString();
+                if (!fileName.endsWith(".json") && !fileName.endsWith(".json.gz")) {
+                    // Command lists such as .mcfunction or .txt files
+                    BulkBannerImporter importer = new BulkBannerImporter(storage, policy);
+                    this.client.setScreen(new ImportReportScreen(previousScreen, importer.importFile(path)));
+                    return;
+                }
+                StreamingBannerImporter importer = new StreamingBannerImporter(storage, policy);
+                this.client.setScreen(new ImportProgressScreen(previousScreen, importer, importer.importFile(path)));
+                return;
+            }
         }
     }
 
@@ -0,0 +1,140 @@
+package dogwhale65.loombook.ui;
+
+import dogwhale65.loombook.data.StreamingBannerImporter;
+import net.minecraft.client.gui.DrawContext;
+import net.minecraft.client.gui.screen.Screen;
+import net.minecraft.text.Text;
+
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Screen that follows a streaming import: banners processed, bytes read and a progress
+ * bar while it runs, with a button to cancel it, then a summary once it is done.
+ */
+public class ImportProgressScreen extends Screen {
+    private static final int BOX_WIDTH = 300;
+    private static final int BOX_HEIGHT = 60;
+    private static final int PADDING = 10;
+    private static final int BUTTON_WIDTH = 70;
+
+    private final Screen previousScreen;
+    private final StreamingBannerImporter importer;
+    private final CompletableFuture<StreamingBannerImporter.Result> result;
+
+    public ImportProgressScreen(Screen previousScreen, StreamingBannerImporter importer,
+                                CompletableFuture<StreamingBannerImporter.Result> result) {
+        super(Text.literal("Importing Banners"));
+        this.previousScreen = previousScreen;
+        this.importer = importer;
+        this.result = result;
+    }
+
+    private StreamingBannerImporter.Result getResult() {
+        return result.isDone() && !result.isCompletedExceptionally() ? result.join() : null;
+    }
+
+    @Override
+    public void render(DrawContext context, int mouseX, int mouseY, float delta) {
+        // Draw semi-transparent background
+        context.fill(0, 0, this.width, this.height, 0xAA000000);
+
+        int boxX = (this.width - BOX_WIDTH) / 2;
+        int boxY = (this.height - BOX_HEIGHT) / 2;
+        context.fill(boxX, boxY, boxX + BOX_WIDTH, boxY + BOX_HEIGHT, 0xFF1F1F1F);
+        context.drawBorder(boxX, boxY, BOX_WIDTH, BOX_HEIGHT, 0xFFFFFFFF);
+
+        StreamingBannerImporter.Result done = getResult();
+        String title;
+        if (result.isCompletedExceptionally()) {
+            title = "Import failed, see the log";
+        } else if (done == null) {
+            title = "Importing...";
+        } else if (done.cancelled()) {
+            title = "Import cancelled";
+        } else if (done.error() != null) {
+            title = "Import stopped: " + done.error();
+        } else {
+            title = "Import finished";
+        }
+        context.drawText(this.textRenderer, Text.literal(title), boxX, boxY - 20, 0xFFFFFFFF, true);
+
+        String counts = done != null
+                ? done.imported() + " imported, " + done.skipped() + " skipped of " + done.processed()
+                : importer.getImported() + " imported, " + importer.getProcessed() + " read";
+        context.drawText(this.textRenderer, Text.literal(counts), boxX + PADDING, boxY + PADDING, 0xFFFFFFFF, true);
+
+        // Draw progress bar
+        long total = importer.getTotalBytes();
+        long read = Math.min(importer.getBytesRead(), Math.max(total, 0));
+        int barX = boxX + PADDING;
+        int barY = boxY + PADDING + 16;
+        int barWidth = BOX_WIDTH - PADDING * 2;
+        context.fill(barX, barY, barX + barWidth, barY + 8, 0xFF333333);
+        if (total > 0) {
+            int filled = (int) (barWidth * read / total);
+            context.fill(barX, barY, barX + filled, barY + 8, 0xFF2E7D32);
+        }
+        String bytes = formatBytes(read) + (total >= 0 ? " / " + formatBytes(total) : "");
+        context.drawText(this.textRenderer, Text.literal(bytes), barX, barY + 12, 0xFFAAAAAA, true);
+
+        // Draw cancel or done button
+        int buttonX = getButtonX();
+        int buttonY = getButtonY();
+        boolean hovered = mouseX >= buttonX && mouseX < buttonX + BUTTON_WIDTH && mouseY >= buttonY && mouseY < buttonY + 20;
+        int color = result.isDone() ? (hovered ? 0xFF66BB6A : 0xFF2E7D32) : (hovered ? 0xFFFF6B6B : 0xFFCC0000);
+        context.fill(buttonX, buttonY, buttonX + BUTTON_WIDTH, buttonY + 20, color);
+        String label = result.isDone() ? "Done" : "Cancel";
+        int labelWidth = this.textRenderer.getWidth(label);
+        context.drawText(this.textRenderer, Text.literal(label), buttonX + (BUTTON_WIDTH - labelWidth) / 2, buttonY + 6, 0xFFFFFFFF, true);
+
+        super.render(context, mouseX, mouseY, delta);
+    }
+
+    private static String formatBytes(long bytes) {
+        if (bytes < 1024) {
+            return bytes + " B";
+        }
+        if (bytes < 1024 * 1024) {
+            return bytes / 1024 + " KB";
+        }
+        return String.format("%.1f MB", bytes / (1024.0 * 1024.0));
+    }
+
+    private int getButtonX() {
+        return (this.width - BUTTON_WIDTH) / 2;
+    }
+
+    private int getButtonY() {
+        return (this.height - BOX_HEIGHT) / 2 + BOX_HEIGHT + PADDING;
+    }
+
+    @Override
+    public boolean mouseClicked(double mouseX, double mouseY, int button) {
+        if (button != 0) return false;
+
+        int buttonX = getButtonX();
+        int buttonY = getButtonY();
+        if (mouseX >= buttonX && mouseX < buttonX + BUTTON_WIDTH && mouseY >= buttonY && mouseY < buttonY + 20) {
+            if (result.isDone()) {
+                this.client.setScreen(previousScreen);
+            } else {
+                importer.cancel();
+            }
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Leaving the screen lets the import carry on in the background.
+     */
+    @Override
+    public void close() {
+        this.client.setScreen(previousScreen);
+    }
+
+    @Override
+    public boolean shouldCloseOnEsc() {
+        return true;
+    }
+}
@@ -0,0 +1,130 @@
+package dogwhale65.loombook.ui;
+
+import dogwhale65.loombook.data.BulkBannerImporter;
+import net.minecraft.client.gui.DrawContext;
+import net.minecraft.client.gui.screen.Screen;
+import net.minecraft.text.Text;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Screen that waits for a bulk import or a world harvest and then lists what happened to
+ * each line or region file.
+ */
+public class ImportReportScreen extends Screen {
+    private static final int LIST_WIDTH = 300;
+    private static final int LIST_HEIGHT = 200;
+    private static final int PADDING = 10;
+    private static final int ROW_HEIGHT = 11;
+    private static final int BUTTON_WIDTH = 70;
+
+    private final Screen previousScreen;
+    private final CompletableFuture<BulkBannerImporter.Report> result;
+    private int scrollOffset = 0;
+
+    public ImportReportScreen(Screen previousScreen, CompletableFuture<BulkBannerImporter.Report> result) {
+        super(Text.literal("Import Report"));
+        this.previousScreen = previousScreen;
+        this.result = result;
+    }
+
+    private BulkBannerImporter.Report getReport() {
+        return result.isDone() && !result.isCompletedExceptionally() ? result.join() : null;
+    }
+
+    @Override
+    public void render(DrawContext context, int mouseX, int mouseY, float delta) {
+        // Draw semi-transparent background
+        context.fill(0, 0, this.width, this.height, 0xAA000000);
+
+        int listX = (this.width - LIST_WIDTH) / 2;
+        int listY = (this.height - LIST_HEIGHT) / 2;
+        context.fill(listX, listY, listX + LIST_WIDTH, listY + LIST_HEIGHT, 0xFF1F1F1F);
+        context.drawBorder(listX, listY, LIST_WIDTH, LIST_HEIGHT, 0xFFFFFFFF);
+
+        BulkBannerImporter.Report report = getReport();
+        String title;
+        if (result.isCompletedExceptionally()) {
+            title = "Import failed, see the log";
+        } else if (report == null) {
+            title = "Importing...";
+        } else {
+            title = report.imported() + " imported, " + report.skipped() + " duplicates, " + report.failed() + " failed";
+        }
+        context.drawText(this.textRenderer, Text.literal(title), listX, listY - 20, 0xFFFFFFFF, true);
+
+        if (report != null) {
+            List<BulkBannerImporter.LineResult> lines = report.lines();
+            context.enableScissor(listX, listY + PADDING / 2, listX + LIST_WIDTH, listY + LIST_HEIGHT - PADDING / 2);
+            for (int i = 0; i < lines.size(); i++) {
+                int rowY = listY + PADDING + i * ROW_HEIGHT - scrollOffset;
+                if (rowY + ROW_HEIGHT < listY || rowY > listY + LIST_HEIGHT) continue;
+                BulkBannerImporter.LineResult entry = lines.get(i);
+                int color = entry.success() ? 0xFF66BB6A : 0xFFFF5555;
+                // Results that don't come from a line of text, like region files, have no line number
+                String line = entry.line() > 0 ? "Line " + entry.line() + ": " + entry.message() : entry.message();
+                while (line.length() > 1 && this.textRenderer.getWidth(line) > LIST_WIDTH - PADDING * 2) {
+                    line = line.substring(0, line.length() - 1);
+                }
+                context.drawText(this.textRenderer, Text.literal(line), listX + PADDING, rowY, color, true);
+            }
+            context.disableScissor();
+        }
+
+        // Draw done button
+        int buttonX = getButtonX();
+        int buttonY = getButtonY();
+        boolean hovered = mouseX >= buttonX && mouseX < buttonX + BUTTON_WIDTH && mouseY >= buttonY && mouseY < buttonY + 20;
+        int color = result.isDone() ? (hovered ? 0xFF66BB6A : 0xFF2E7D32) : 0xFF444444;
+        context.fill(buttonX, buttonY, buttonX + BUTTON_WIDTH, buttonY + 20, color);
+        String label = "Done";
+        int labelWidth = this.textRenderer.getWidth(label);
+        context.drawText(this.textRenderer, Text.literal(label), buttonX + (BUTTON_WIDTH - labelWidth) / 2, buttonY + 6, 0xFFFFFFFF, true);
+
+        super.render(context, mouseX, mouseY, delta);
+    }
+
+    private int getButtonX() {
+        return (this.width - BUTTON_WIDTH) / 2;
+    }
+
+    private int getButtonY() {
+        return (this.height - LIST_HEIGHT) / 2 + LIST_HEIGHT + PADDING;
+    }
+
+    @Override
+    public boolean mouseClicked(double mouseX, double mouseY, int button) {
+        if (button != 0) return false;
+
+        int buttonX = getButtonX();
+        int buttonY = getButtonY();
+        if (result.isDone() && mouseX >= buttonX && mouseX < buttonX + BUTTON_WIDTH && mouseY >= buttonY && mouseY < buttonY + 20) {
+            this.client.setScreen(previousScreen);
+            return true;
+        }
+        return false;
+    }
+
+    @Override
+    public boolean mouseScrolled(double mouseX, double mouseY, double horizontalAmount, double verticalAmount) {
+        BulkBannerImporter.Report report = getReport();
+        int rows = report != null ? report.lines().size() : 0;
+        int maxScroll = Math.max(0, rows * ROW_HEIGHT + PADDING * 2 - LIST_HEIGHT);
+        scrollOffset = Math.max(0, Math.min(scrollOffset - (int) (verticalAmount * ROW_HEIGHT * 3), maxScroll));
+        return true;
+    }
+
+    /**
+     * Leaving the screen lets the import carry on in the background.
+     */
+    @Override
+    public void close() {
+        this.client.setScreen(previousScreen);
+    }
+
+    @Override
+    public boolean shouldCloseOnEsc() {
+        return true;
+    }
+}
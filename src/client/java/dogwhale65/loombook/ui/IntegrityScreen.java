@@ -0,0 +1,180 @@
+package dogwhale65.loombook.ui;
+
+import dogwhale65.loombook.data.BannerStorage;
+import dogwhale65.loombook.data.IntegrityIssue;
+import dogwhale65.loombook.data.IntegrityScanner;
+import net.minecraft.client.MinecraftClient;
+import net.minecraft.client.gui.DrawContext;
+import net.minecraft.client.gui.screen.Screen;
+import net.minecraft.text.Text;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Screen that runs an integrity scan of the active collection in the background and
+ * offers to repair or quarantine what it finds. Repairs run in the background too, and
+ * the collection is rescanned once they are done.
+ */
+public class IntegrityScreen extends Screen {
+    private static final int LIST_WIDTH = 300;
+    private static final int LIST_HEIGHT = 200;
+    private static final int PADDING = 10;
+    private static final int ROW_HEIGHT = 11;
+    private static final int BUTTON_WIDTH = 70;
+
+    private final Screen previousScreen;
+    private CompletableFuture<IntegrityScanner.Report> scan;
+    private CompletableFuture<Void> resolving;
+    private int scrollOffset = 0;
+    private String status = null;
+
+    public IntegrityScreen(Screen previousScreen) {
+        super(Text.literal("Check Library"));
+        this.previousScreen = previousScreen;
+    }
+
+    @Override
+    protected void init() {
+        if (scan == null) {
+            scan = BannerStorage.getInstance().checkIntegrity();
+        }
+    }
+
+    private IntegrityScanner.Report getReport() {
+        return scan != null && scan.isDone() && !scan.isCompletedExceptionally() ? scan.join() : null;
+    }
+
+    @Override
+    public void render(DrawContext context, int mouseX, int mouseY, float delta) {
+        // Draw semi-transparent background
+        context.fill(0, 0, this.width, this.height, 0xAA000000);
+
+        int listX = (this.width - LIST_WIDTH) / 2;
+        int listY = (this.height - LIST_HEIGHT) / 2;
+        context.fill(listX, listY, listX + LIST_WIDTH, listY + LIST_HEIGHT, 0xFF1F1F1F);
+        context.drawBorder(listX, listY, LIST_WIDTH, LIST_HEIGHT, 0xFFFFFFFF);
+
+        IntegrityScanner.Report report = getReport();
+        String title;
+        if (isResolving()) {
+            title = "Resolving issues...";
+        } else if (scan == null) {
+            title = "Only the per-file store can be checked";
+        } else if (scan.isCompletedExceptionally()) {
+            title = "Scan failed, see the log";
+        } else if (report == null) {
+            title = "Scanning...";
+        } else {
+            title = report.filesChecked() + " files checked, " + report.issues().size() + " issues";
+        }
+        context.drawText(this.textRenderer, Text.literal(title), listX, listY - 20, 0xFFFFFFFF, true);
+
+        if (report != null && !isResolving()) {
+            List<IntegrityIssue> issues = report.issues();
+            context.enableScissor(listX, listY + PADDING / 2, listX + LIST_WIDTH, listY + LIST_HEIGHT - PADDING / 2);
+            for (int i = 0; i < issues.size(); i++) {
+                int rowY = listY + PADDING + i * ROW_HEIGHT - scrollOffset;
+                if (rowY + ROW_HEIGHT < listY || rowY > listY + LIST_HEIGHT) continue;
+                IntegrityIssue issue = issues.get(i);
+                int color = issue.type().isRepairable() ? 0xFFFFDD55 : 0xFFFF5555;
+                String line = issue.describe();
+                while (line.length() > 1 && this.textRenderer.getWidth(line) > LIST_WIDTH - PADDING * 2) {
+                    line = line.substring(0, line.length() - 1);
+                }
+                context.drawText(this.textRenderer, Text.literal(line), listX + PADDING, rowY, color, true);
+            }
+            context.disableScissor();
+        }
+
+        // Draw buttons
+        int buttonY = listY + LIST_HEIGHT + PADDING;
+        boolean canResolve = report != null && !report.issues().isEmpty() && !isResolving();
+        drawButton(context, "Repair", getRepairButtonX(), buttonY, mouseX, mouseY, canResolve ? 0xFF2E7D32 : 0xFF444444, 0xFF66BB6A);
+        drawButton(context, "Quarantine", getQuarantineButtonX(), buttonY, mouseX, mouseY, canResolve ? 0xFFB26A00 : 0xFF444444, 0xFFE09000);
+        drawButton(context, "Back", getBackButtonX(), buttonY, mouseX, mouseY, 0xFFCC0000, 0xFFFF6B6B);
+
+        if (status != null) {
+            context.drawText(this.textRenderer, Text.literal(status), listX, buttonY + 26, 0xFFAAAAAA, true);
+        }
+
+        super.render(context, mouseX, mouseY, delta);
+    }
+
+    private void drawButton(DrawContext context, String label, int buttonX, int buttonY, int mouseX, int mouseY, int color, int hoverColor) {
+        boolean hovered = mouseX >= buttonX && mouseX < buttonX + BUTTON_WIDTH && mouseY >= buttonY && mouseY < buttonY + 20;
+        context.fill(buttonX, buttonY, buttonX + BUTTON_WIDTH, buttonY + 20, hovered ? hoverColor : color);
+        int textWidth = this.textRenderer.getWidth(label);
+        context.drawText(this.textRenderer, Text.literal(label), buttonX + (BUTTON_WIDTH - textWidth) / 2, buttonY + 6, 0xFFFFFFFF, true);
+    }
+
+    private int getRepairButtonX() {
+        return this.width / 2 - BUTTON_WIDTH * 3 / 2 - 10;
+    }
+
+    private int getQuarantineButtonX() {
+        return this.width / 2 - BUTTON_WIDTH / 2;
+    }
+
+    private int getBackButtonX() {
+        return this.width / 2 + BUTTON_WIDTH / 2 + 10;
+    }
+
+    @Override
+    public boolean mouseClicked(double mouseX, double mouseY, int button) {
+        if (button != 0) return false;
+
+        int buttonY = (this.height - LIST_HEIGHT) / 2 + LIST_HEIGHT + PADDING;
+        if (mouseY < buttonY || mouseY >= buttonY + 20) return false;
+
+        if (mouseX >= getBackButtonX() && mouseX < getBackButtonX() + BUTTON_WIDTH) {
+            this.client.setScreen(previousScreen);
+            return true;
+        }
+
+        IntegrityScanner.Report report = getReport();
+        if (report == null || report.issues().isEmpty() || isResolving()) return false;
+
+        boolean repair = mouseX >= getRepairButtonX() && mouseX < getRepairButtonX() + BUTTON_WIDTH;
+        boolean quarantine = mouseX >= getQuarantineButtonX() && mouseX < getQuarantineButtonX() + BUTTON_WIDTH;
+        if (repair || quarantine) {
+            resolve(report.issues(), quarantine);
+            return true;
+        }
+        return false;
+    }
+
+    private void resolve(List<IntegrityIssue> issues, boolean quarantine) {
+        status = (quarantine ? "Quarantining " : "Repairing ") + issues.size() + " issues...";
+        scrollOffset = 0;
+        resolving = BannerStorage.resolveIntegrityIssues(issues, quarantine);
+        resolving.whenComplete((ignored, error) -> MinecraftClient.getInstance().execute(() -> {
+            status = error != null ? "Could not resolve the issues, see the log"
+                    : (quarantine ? "Quarantined " : "Repaired ") + issues.size() + " issues, rescanning";
+            scan = BannerStorage.getInstance().checkIntegrity();
+        }));
+    }
+
+    private boolean isResolving() {
+        return resolving != null && !resolving.isDone();
+    }
+
+    @Override
+    public boolean mouseScrolled(double mouseX, double mouseY, double horizontalAmount, double verticalAmount) {
+        IntegrityScanner.Report report = getReport();
+        int rows = report != null ? report.issues().size() : 0;
+        int maxScroll = Math.max(0, rows * ROW_HEIGHT + PADDING * 2 - LIST_HEIGHT);
+        scrollOffset = Math.max(0, Math.min(scrollOffset - (int) (verticalAmount * ROW_HEIGHT * 3), maxScroll));
+        return true;
+    }
+
+    @Override
+    public void close() {
+        this.client.setScreen(previousScreen);
+    }
+
+    @Override
+    public boolean shouldCloseOnEsc() {
+        return true;
+    }
+}
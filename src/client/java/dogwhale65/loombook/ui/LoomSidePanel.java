@@ -2,7 +2,18 @@ package dogwhale65.loombook.ui;
 
 import dogwhale65.loombook.Loombook;
 import dogwhale65.loombook.autocraft.AutoCraftStateMachine;
+import dogwhale65.loombook.config.LoombookConfig;
+import dogwhale65.loombook.data.BannerCollections;
+import dogwhale65.loombook.data.BannerPatternLayer;
+import dogwhale65.loombook.data.BannerShareCode;
 import dogwhale65.loombook.data.BannerStorage;
+import dogwhale65.loombook.data.BannerSymbols;
+import dogwhale65.loombook.data.DuplicatePolicy;
+import dogwhale65.loombook.data.LibraryChange;
+import dogwhale65.loombook.data.LibraryChangeSet;
+import dogwhale65.loombook.data.LibraryListener;
+import dogwhale65.loombook.data.LibraryOperation;
+import dogwhale65.loombook.data.LibraryTransaction;
 import dogwhale65.loombook.data.SavedBanner;
 import net.minecraft.client.MinecraftClient;
 import net.minecraft.client.font.TextRenderer;
@@ -42,6 +53,30 @@ public class LoomSidePanel {
     private Set<String> selectedBannerIds = new HashSet<>();
     private int lastClickedIndex = -1;
     private java.util.Queue<String> craftQueue = new java.util.LinkedList<>();
+    private BannerStorage shownStorage;
+    private String statusMessage = null;
+    private long statusUntil = 0;
+    private final LibraryListener libraryListener = this::onLibraryChanged;
+    // Alt+click narrows the list to banners sharing the clicked banner's base color, top pattern or top dye
+    private Filter filter = null;
+    private List<SavedBanner> filteredBanners = List.of();
+    private long filteredVersion = -1;
+
+    private enum FilterKind {
+        BASE_COLOR,
+        PATTERN,
+        DYE_COLOR
+    }
+
+    private record Filter(FilterKind kind, String value) {
+        String describe() {
+            return switch (kind) {
+                case BASE_COLOR -> value + " banners";
+                case PATTERN -> "banners with " + value.substring(value.indexOf(':') + 1);
+                case DYE_COLOR -> "banners with " + value + " dye";
+            };
+        }
+    }
 
     public LoomSidePanel(LoomScreen screen, LoomScreenHandler handler, int x, int y) {
         this.screen = screen;
@@ -49,6 +84,7 @@ public class LoomSidePanel {
         this.x = x;
         this.y = y;
         this.autoCraft = new AutoCraftStateMachine(handler);
+        BannerStorage.addListener(libraryListener);
         Loombook.LOGGER.info("LoomSidePanel created at x={}, y={}", x, y);
     }
 
@@ -67,7 +103,28 @@ public class LoomSidePanel {
 
         // Draw header with subtle background
         context.fill(x, y, x + PANEL_WIDTH, y + HEADER_HEIGHT + PADDING + 2, 0xFF1A1A2E);
-        context.drawText(textRenderer, Text.literal("Saved"), x + PADDING, y + PADDING, 0xFF4169E1, true);
+        // Title names the active collection and cycles to the next one when clicked
+        BannerStorage storage = BannerStorage.getInstance();
+        if (storage != shownStorage) {
+            // Selection and scroll position belong to the previous collection
+            shownStorage = storage;
+            selectedBannerIds.clear();
+            lastClickedIndex = -1;
+            scrollOffset = 0;
+            filter = null;
+        }
+        String title = BannerCollections.DEFAULT.equals(storage.getCollection()) ? "Saved" : storage.getCollection();
+        int maxTitleWidth = PANEL_WIDTH - PADDING - 40;
+        while (title.length() > 1 && textRenderer.getWidth(title) > maxTitleWidth) {
+            title = title.substring(0, title.length() - 1);
+        }
+        int titleColor = isInTitle(mouseX, mouseY) ? 0xFF5C7CFA : 0xFF4169E1;
+        context.drawText(textRenderer, Text.literal(title), x + PADDING, y + PADDING, titleColor, true);
+
+        // Draw new collection button
+        int newCollectionX = x + PANEL_WIDTH - 34;
+        int newCollectionColor = isInNewCollectionButton(mouseX, mouseY) ? 0xFF66BB6A : 0xFFAAAAAA;
+        context.drawText(textRenderer, Text.literal("+"), newCollectionX, y + PADDING, newCollectionColor, true);
 
         // Draw save button
         int saveButtonY = y + HEADER_HEIGHT + PADDING;
@@ -100,13 +157,23 @@ public class LoomSidePanel {
         context.drawText(textRenderer, Text.literal(exportText), exportButtonCenterX - exportTextWidth / 2, importButtonY + 1, 0xFFFFFFFF, true);
 
         // Draw saved patterns
-        List<SavedBanner> banners = BannerStorage.getInstance().getBanners();
         int listStartY = importButtonY + BUTTON_HEIGHT + PADDING;
         int visibleHeight = PANEL_HEIGHT - (listStartY - y) - PADDING;
         int maxVisible = visibleHeight / ENTRY_HEIGHT;
 
-        // Draw count of saved banners in header
-        context.drawText(textRenderer, Text.literal("(" + banners.size() + ")"), x + PANEL_WIDTH - 22, y + PADDING, 0xFFAAAAAA, true);
+        // The library is still being read in the background
+        if (!storage.isLoaded()) {
+            String loadingText = "Loading...";
+            int loadingTextWidth = textRenderer.getWidth(loadingText);
+            context.drawText(textRenderer, Text.literal(loadingText), x + PANEL_WIDTH / 2 - loadingTextWidth / 2, listStartY + PADDING, 0xFFAAAAAA, true);
+            return;
+        }
+
+        List<SavedBanner> banners = getVisibleBanners();
+
+        // Draw count of saved banners in header, highlighted while filtered
+        context.drawText(textRenderer, Text.literal("(" + banners.size() + ")"), x + PANEL_WIDTH - 22, y + PADDING,
+                filter != null ? 0xFFFFFF55 : 0xFFAAAAAA, true);
 
         for (int i = 0; i < maxVisible && i + scrollOffset < banners.size(); i++) {
             SavedBanner banner = banners.get(i + scrollOffset);
@@ -155,10 +222,21 @@ public class LoomSidePanel {
             int craftButtonY = y + PANEL_HEIGHT - BUTTON_HEIGHT - PADDING;
             boolean craftHovered = isInCraftButton(mouseX, mouseY);
             int craftButtonColor = craftHovered ? 0xFF66BB6A : 0xFF2E7D32;
-            context.fill(x + PADDING, craftButtonY, x + PANEL_WIDTH - PADDING, craftButtonY + BUTTON_HEIGHT, craftButtonColor);
+            int craftButtonRight = getCraftButtonRight();
+            context.fill(x + PADDING, craftButtonY, craftButtonRight, craftButtonY + BUTTON_HEIGHT, craftButtonColor);
             String craftText = selectedBannerIds.size() > 1 ? "Craft (" + selectedBannerIds.size() + ")" : "Craft";
             int craftTextWidth = textRenderer.getWidth(craftText);
-            context.drawText(textRenderer, Text.literal(craftText), x + PANEL_WIDTH / 2 - craftTextWidth / 2, craftButtonY + 1, 0xFFFFFFFF, true);
+            context.drawText(textRenderer, Text.literal(craftText), (x + PADDING + craftButtonRight) / 2 - craftTextWidth / 2, craftButtonY + 1, 0xFFFFFFFF, true);
+
+            // Draw move button for multi-selections
+            if (selectedBannerIds.size() > 1) {
+                int moveButtonX = craftButtonRight + 2;
+                boolean moveHovered = isInMoveButton(mouseX, mouseY);
+                int moveButtonColor = moveHovered ? 0xFF5C7CFA : 0xFF1E40AF;
+                context.fill(moveButtonX, craftButtonY, x + PANEL_WIDTH - PADDING, craftButtonY + BUTTON_HEIGHT, moveButtonColor);
+                int moveTextWidth = textRenderer.getWidth("Move");
+                context.drawText(textRenderer, Text.literal("Move"), (moveButtonX + x + PANEL_WIDTH - PADDING) / 2 - moveTextWidth / 2, craftButtonY + 1, 0xFFFFFFFF, true);
+            }
         }
 
         // Draw scroll indicators if needed (only if no craft button is showing)
@@ -170,7 +248,10 @@ public class LoomSidePanel {
         }
 
         // Draw auto-craft status or error below the panel
-        if (autoCraft.isActive()) {
+        if (statusMessage != null && System.currentTimeMillis() < statusUntil) {
+            int textWidth = textRenderer.getWidth(statusMessage);
+            context.drawText(textRenderer, Text.literal(statusMessage), x + PANEL_WIDTH / 2 - textWidth / 2, y + PANEL_HEIGHT + 4, 0xFFAAAAAA, true);
+        } else if (autoCraft.isActive()) {
             context.drawText(textRenderer, Text.literal("Crafting..."), x + PANEL_WIDTH / 2 - 30, y + PANEL_HEIGHT + 4, 0xFFFFFF00, true);
         } else if (autoCraft.getState() == AutoCraftStateMachine.AutoCraftState.ERROR) {
             String err = autoCraft.getErrorMessage();
@@ -194,6 +275,21 @@ public class LoomSidePanel {
         Loombook.LOGGER.info("Mouse clicked at x={}, y={}, panel bounds: x={}-{}, y={}-{}",
             mx, my, x, x + PANEL_WIDTH, y, y + PANEL_HEIGHT);
 
+        // Ignore clicks until the library has finished loading
+        if (!BannerStorage.getInstance().isLoaded()) {
+            return isInPanel(mx, my);
+        }
+
+        // Check collection title and new collection button
+        if (isInTitle(mx, my)) {
+            BannerStorage.switchCollection(BannerCollections.next(BannerStorage.getInstance().getCollection()));
+            return true;
+        }
+        if (isInNewCollectionButton(mx, my)) {
+            MinecraftClient.getInstance().setScreen(new CollectionNameScreen(screen));
+            return true;
+        }
+
         // Check save button
         if (isInSaveButton(mx, my)) {
             Loombook.LOGGER.info("Save button clicked!");
@@ -211,18 +307,34 @@ public class LoomSidePanel {
         // Check export button
         if (isInExportButton(mx, my)) {
             Loombook.LOGGER.info("Export button clicked!");
-            exportSelectedBanners();
+            long window = MinecraftClient.getInstance().getWindow().getHandle();
+            if (InputUtil.isKeyPressed(window, GLFW.GLFW_KEY_LEFT_CONTROL) || InputUtil.isKeyPressed(window, GLFW.GLFW_KEY_RIGHT_CONTROL)) {
+                exportDatapack();
+            } else if (InputUtil.isKeyPressed(window, GLFW.GLFW_KEY_LEFT_SHIFT) || InputUtil.isKeyPressed(window, GLFW.GLFW_KEY_RIGHT_SHIFT)) {
+                exportShareCodes();
+            } else if (InputUtil.isKeyPressed(window, GLFW.GLFW_KEY_LEFT_ALT) || InputUtil.isKeyPressed(window, GLFW.GLFW_KEY_RIGHT_ALT)) {
+                exportBannerFiles();
+            } else {
+                exportSelectedBanners();
+            }
             return true;
         }
 
         // Check pattern entries
-        List<SavedBanner> banners = BannerStorage.getInstance().getBanners();
+        List<SavedBanner> banners = getVisibleBanners();
         int saveButtonY = y + HEADER_HEIGHT + PADDING;
         int importButtonY = saveButtonY + SAVE_BUTTON_HEIGHT + PADDING;
         int listStartY = importButtonY + BUTTON_HEIGHT + PADDING;
         int visibleHeight = PANEL_HEIGHT - (listStartY - y) - PADDING;
         int maxVisible = visibleHeight / ENTRY_HEIGHT;
 
+        // Check move button
+        if (selectedBannerIds.size() > 1 && isInMoveButton(mx, my)) {
+            List<String> ids = getSelectedBanners().stream().map(SavedBanner::getId).toList();
+            MinecraftClient.getInstance().setScreen(new CollectionNameScreen(screen, ids));
+            return true;
+        }
+
         // Check craft button
         if (!selectedBannerIds.isEmpty() && isInCraftButton(mx, my)) {
             craftQueue.clear();
@@ -242,6 +354,8 @@ public class LoomSidePanel {
                                InputUtil.isKeyPressed(MinecraftClient.getInstance().getWindow().getHandle(), GLFW.GLFW_KEY_RIGHT_CONTROL);
         boolean isShiftPressed = InputUtil.isKeyPressed(MinecraftClient.getInstance().getWindow().getHandle(), GLFW.GLFW_KEY_LEFT_SHIFT) ||
                                 InputUtil.isKeyPressed(MinecraftClient.getInstance().getWindow().getHandle(), GLFW.GLFW_KEY_RIGHT_SHIFT);
+        boolean isAltPressed = InputUtil.isKeyPressed(MinecraftClient.getInstance().getWindow().getHandle(), GLFW.GLFW_KEY_LEFT_ALT) ||
+                              InputUtil.isKeyPressed(MinecraftClient.getInstance().getWindow().getHandle(), GLFW.GLFW_KEY_RIGHT_ALT);
 
         for (int i = 0; i < maxVisible && i + scrollOffset < banners.size(); i++) {
             SavedBanner banner = banners.get(i + scrollOffset);
@@ -251,15 +365,30 @@ public class LoomSidePanel {
                 // Check if rename button clicked
                 int renameX = x + PANEL_WIDTH - PADDING - 26;
                 if (mx >= renameX && mx < renameX + 10 && my >= entryY + 6 && my < entryY + 16) {
-                    MinecraftClient.getInstance().setScreen(new RenameBannerScreen(screen, banner.getId(), banner.getName()));
+                    if (selectedBannerIds.size() > 1 && selectedBannerIds.contains(banner.getId())) {
+                        // Renaming part of a multi-selection renames all of it from a template
+                        MinecraftClient.getInstance().setScreen(new BulkRenameScreen(screen, getSelectedBanners()));
+                    } else {
+                        MinecraftClient.getInstance().setScreen(new RenameBannerScreen(screen, banner.getId(), banner.getName()));
+                    }
                     return true;
                 }
 
                 // Check if delete button clicked
                 int deleteX = x + PANEL_WIDTH - PADDING - 10;
                 if (mx >= deleteX && mx < deleteX + 10 && my >= entryY + 6 && my < entryY + 16) {
-                    BannerStorage.getInstance().removeBanner(banner.getId());
-                    selectedBannerIds.remove(banner.getId());
+                    if (selectedBannerIds.size() > 1 && selectedBannerIds.contains(banner.getId())) {
+                        deleteSelectedBanners();
+                    } else {
+                        BannerStorage.getInstance().removeBanner(banner.getId());
+                        selectedBannerIds.remove(banner.getId());
+                    }
+                    return true;
+                }
+
+                // Alt+click filters by the banner instead of selecting it
+                if (isAltPressed) {
+                    narrowFilter(banner);
                     return true;
                 }
 
@@ -294,12 +423,146 @@ public class LoomSidePanel {
         return false;
     }
 
+    /**
+     * Ctrl+Z undoes the latest library change, Ctrl+Y or Ctrl+Shift+Z redoes it, and
+     * Delete removes the selected banners.
+     */
+    public boolean keyPressed(int keyCode, int scanCode, int modifiers) {
+        if (!BannerStorage.getInstance().isLoaded()) {
+            return false;
+        }
+        if (keyCode == GLFW.GLFW_KEY_DELETE && !selectedBannerIds.isEmpty()) {
+            deleteSelectedBanners();
+            return true;
+        }
+        if ((modifiers & GLFW.GLFW_MOD_CONTROL) == 0) {
+            return false;
+        }
+        boolean shift = (modifiers & GLFW.GLFW_MOD_SHIFT) != 0;
+        if (keyCode == GLFW.GLFW_KEY_Z && !shift) {
+            LibraryOperation undone = BannerStorage.getInstance().undo();
+            showStatus(undone != null ? "Undid " + undone.describe() : "Nothing to undo");
+            return true;
+        }
+        if (keyCode == GLFW.GLFW_KEY_Y || (keyCode == GLFW.GLFW_KEY_Z && shift)) {
+            LibraryOperation redone = BannerStorage.getInstance().redo();
+            showStatus(redone != null ? "Redid " + redone.describe() : "Nothing to redo");
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Returns the selected banners in library order.
+     */
+    private List<SavedBanner> getSelectedBanners() {
+        return BannerStorage.getInstance().getBanners().stream()
+                .filter(banner -> selectedBannerIds.contains(banner.getId()))
+                .toList();
+    }
+
+    /**
+     * Returns the banners shown in the list: the whole library, or the banners matching the
+     * filter, looked up in the storage's indexes and cached until the library changes.
+     */
+    private List<SavedBanner> getVisibleBanners() {
+        BannerStorage storage = BannerStorage.getInstance();
+        if (filter == null) {
+            return storage.getBanners();
+        }
+        long version = BannerStorage.getVersion();
+        if (version != filteredVersion) {
+            filteredBanners = switch (filter.kind()) {
+                case BASE_COLOR -> storage.getBannersByBaseColor(BannerSymbols.dyeColor(filter.value()));
+                case PATTERN -> storage.getBannersWithPattern(filter.value());
+                case DYE_COLOR -> storage.getBannersWithDyeColor(BannerSymbols.dyeColor(filter.value()));
+            };
+            filteredVersion = version;
+        }
+        return filteredBanners;
+    }
+
+    /**
+     * Steps the filter along for the clicked banner: its base color first, then the pattern
+     * of its top layer, then that layer's dye, then back to the whole library.
+     */
+    private void narrowFilter(SavedBanner banner) {
+        FilterKind next = filter == null ? FilterKind.BASE_COLOR
+                : filter.kind() == FilterKind.BASE_COLOR ? FilterKind.PATTERN
+                : filter.kind() == FilterKind.PATTERN ? FilterKind.DYE_COLOR : null;
+        List<BannerPatternLayer> layers = banner.getLayers();
+        if (next != null && next != FilterKind.BASE_COLOR && layers.isEmpty()) {
+            next = null;
+        }
+        if (next == null) {
+            filter = null;
+            showStatus("Showing all banners");
+        } else {
+            BannerPatternLayer top = next != FilterKind.BASE_COLOR ? layers.getLast() : null;
+            filter = switch (next) {
+                case BASE_COLOR -> new Filter(next, banner.getBaseColorEnum().getId());
+                case PATTERN -> new Filter(next, top.patternId());
+                case DYE_COLOR -> new Filter(next, top.getDyeColorEnum().getId());
+            };
+            showStatus("Showing " + filter.describe());
+        }
+        filteredVersion = -1;
+        scrollOffset = 0;
+        lastClickedIndex = -1;
+    }
+
+    private void deleteSelectedBanners() {
+        int count = selectedBannerIds.size();
+        LibraryTransaction transaction = new LibraryTransaction("Delete " + count + " banners");
+        selectedBannerIds.forEach(transaction::remove);
+        BannerStorage.getInstance().commit(transaction);
+        showStatus("Deleted " + count + " banners, Ctrl+Z to undo");
+        selectedBannerIds.clear();
+        lastClickedIndex = -1;
+    }
+
+    private void showStatus(String message) {
+        statusMessage = message;
+        statusUntil = System.currentTimeMillis() + 2000;
+    }
+
+    /**
+     * Stops listening for library changes once the loom screen goes away.
+     */
+    public void close() {
+        BannerStorage.removeListener(libraryListener);
+    }
+
+    /**
+     * Drops deleted banners from the selection and craft queue, and keeps the scroll
+     * position inside the list when it shrinks.
+     */
+    private void onLibraryChanged(LibraryChangeSet changes) {
+        if (changes.isReload()) {
+            BannerStorage storage = BannerStorage.getInstance();
+            selectedBannerIds.removeIf(id -> storage.getBannerById(id) == null);
+            craftQueue.removeIf(id -> storage.getBannerById(id) == null);
+            lastClickedIndex = -1;
+        } else {
+            for (LibraryChange change : changes.changes()) {
+                if (change.type() == LibraryChange.Type.REMOVED) {
+                    selectedBannerIds.remove(change.banner().getId());
+                    craftQueue.remove(change.banner().getId());
+                    lastClickedIndex = -1;
+                }
+            }
+        }
+        int listStartY = y + HEADER_HEIGHT + PADDING + SAVE_BUTTON_HEIGHT + PADDING + BUTTON_HEIGHT + PADDING;
+        int maxVisible = (PANEL_HEIGHT - (listStartY - y) - PADDING) / ENTRY_HEIGHT;
+        scrollOffset = Math.max(0, Math.min(scrollOffset, getVisibleBanners().size() - maxVisible));
+    }
+
     public boolean mouseScrolled(double mouseX, double mouseY, double horizontalAmount, double verticalAmount) {
         if (!isInPanel((int) mouseX, (int) mouseY)) {
             return false;
         }
 
-        List<SavedBanner> banners = BannerStorage.getInstance().getBanners();
+        List<SavedBanner> banners = getVisibleBanners();
         int saveButtonY = y + HEADER_HEIGHT + PADDING;
         int importButtonY = saveButtonY + SAVE_BUTTON_HEIGHT + PADDING;
         int listStartY = importButtonY + BUTTON_HEIGHT + PADDING;
@@ -347,13 +610,7 @@ public class LoomSidePanel {
 
             SavedBanner banner = BannerPreviewRenderer.extractBannerData(bannerStack);
             Loombook.LOGGER.info("Extracted banner from input: {}", banner);
-
-            if (banner != null) {
-                BannerStorage.getInstance().addBanner(banner);
-                Loombook.LOGGER.info("Banner saved! Total banners: {}", BannerStorage.getInstance().getBanners().size());
-            } else {
-                Loombook.LOGGER.info("Failed to extract banner data");
-            }
+            saveBanner(banner);
             return;
         }
 
@@ -368,19 +625,69 @@ public class LoomSidePanel {
 
         SavedBanner banner = BannerPreviewRenderer.extractBannerData(outputStack);
         Loombook.LOGGER.info("Extracted banner: {}", banner);
+        saveBanner(banner);
+    }
 
-        if (banner != null) {
-            BannerStorage.getInstance().addBanner(banner);
-            Loombook.LOGGER.info("Banner saved! Total banners: {}", BannerStorage.getInstance().getBanners().size());
-        } else {
+    /**
+     * Saves the banner with the configured duplicate policy, or keeps both copies when Shift
+     * is held, and says what happened. A design that was already saved gets selected.
+     * Ctrl+Save instead puts the design on the one selected banner, keeping its name.
+     */
+    private void saveBanner(SavedBanner banner) {
+        if (banner == null) {
             Loombook.LOGGER.info("Failed to extract banner data");
+            showStatus("Nothing to save");
+            return;
+        }
+        long window = MinecraftClient.getInstance().getWindow().getHandle();
+        if (InputUtil.isKeyPressed(window, GLFW.GLFW_KEY_LEFT_CONTROL) || InputUtil.isKeyPressed(window, GLFW.GLFW_KEY_RIGHT_CONTROL)) {
+            updateSelectedDesign(banner);
+            return;
+        }
+        boolean keepBoth = InputUtil.isKeyPressed(window, GLFW.GLFW_KEY_LEFT_SHIFT) || InputUtil.isKeyPressed(window, GLFW.GLFW_KEY_RIGHT_SHIFT);
+        DuplicatePolicy policy = keepBoth ? DuplicatePolicy.KEEP_BOTH : LoombookConfig.getInstance().getDuplicatePolicy();
+        SavedBanner saved = BannerStorage.getInstance().addBanner(banner, policy);
+        Loombook.LOGGER.info("Banner saved! Total banners: {}", BannerStorage.getInstance().getBanners().size());
+        if (saved == banner) {
+            showStatus("Saved");
+            return;
         }
+        selectedBannerIds.clear();
+        selectedBannerIds.add(saved.getId());
+        lastClickedIndex = -1;
+        showStatus(policy == DuplicatePolicy.MERGE ? "Merged into " + saved.getDisplayName()
+                : "Already saved as " + saved.getDisplayName() + ", Shift+Save keeps both");
+    }
+
+    private void updateSelectedDesign(SavedBanner banner) {
+        if (selectedBannerIds.size() != 1) {
+            showStatus("Select one banner to update its design");
+            return;
+        }
+        BannerStorage storage = BannerStorage.getInstance();
+        SavedBanner selected = storage.getBannerById(selectedBannerIds.iterator().next());
+        if (selected == null || !storage.updateDesign(selected.getId(), banner.getBaseColorEnum(), banner.getLayers())) {
+            showStatus("Nothing to update");
+            return;
+        }
+        showStatus("Updated " + selected.getDisplayName() + ", Ctrl+Z to undo");
     }
 
     private boolean isInPanel(int mouseX, int mouseY) {
         return mouseX >= x && mouseX < x + PANEL_WIDTH && mouseY >= y && mouseY < y + PANEL_HEIGHT;
     }
 
+    private boolean isInTitle(int mouseX, int mouseY) {
+        return mouseX >= x + PADDING && mouseX < x + PANEL_WIDTH - 40
+                && mouseY >= y + PADDING - 2 && mouseY < y + PADDING + 10;
+    }
+
+    private boolean isInNewCollectionButton(int mouseX, int mouseY) {
+        int newCollectionX = x + PANEL_WIDTH - 34;
+        return mouseX >= newCollectionX - 2 && mouseX < newCollectionX + 8
+                && mouseY >= y + PADDING - 2 && mouseY < y + PADDING + 10;
+    }
+
     private boolean isInSaveButton(int mouseX, int mouseY) {
         int saveButtonY = y + HEADER_HEIGHT + PADDING;
         return mouseX >= x + PADDING && mouseX < x + PANEL_WIDTH - PADDING
@@ -404,25 +711,50 @@ public class LoomSidePanel {
 
     private boolean isInCraftButton(int mouseX, int mouseY) {
         int craftButtonY = y + PANEL_HEIGHT - BUTTON_HEIGHT - PADDING;
-        return mouseX >= x + PADDING && mouseX < x + PANEL_WIDTH - PADDING
+        return mouseX >= x + PADDING && mouseX < getCraftButtonRight()
+                && mouseY >= craftButtonY && mouseY < craftButtonY + BUTTON_HEIGHT;
+    }
+
+    private boolean isInMoveButton(int mouseX, int mouseY) {
+        int craftButtonY = y + PANEL_HEIGHT - BUTTON_HEIGHT - PADDING;
+        return mouseX >= getCraftButtonRight() + 2 && mouseX < x + PANEL_WIDTH - PADDING
                 && mouseY >= craftButtonY && mouseY < craftButtonY + BUTTON_HEIGHT;
     }
 
+    /**
+     * The craft button makes room for the move button when several banners are selected.
+     */
+    private int getCraftButtonRight() {
+        return selectedBannerIds.size() > 1 ? x + PANEL_WIDTH - PADDING - 32 : x + PANEL_WIDTH - PADDING;
+    }
+
     private boolean isInPatternEntry(int mouseX, int mouseY, int entryY) {
         return mouseX >= x + PADDING && mouseX < x + PANEL_WIDTH - PADDING
                 && mouseY >= entryY && mouseY < entryY + ENTRY_HEIGHT - 2;
     }
 
+    /**
+     * Copies small selections to the clipboard as JSON. Larger selections, or the whole
+     * library when nothing is selected, are streamed to a file in the exports directory.
+     */
     private void exportSelectedBanners() {
-        if (selectedBannerIds.isEmpty()) {
-            Loombook.LOGGER.info("No banners selected to export");
+        BannerStorage storage = BannerStorage.getInstance();
+        if (selectedBannerIds.isEmpty() || selectedBannerIds.size() > LoombookConfig.getInstance().getClipboardExportLimit()) {
+            List<SavedBanner> banners = selectedBannerIds.isEmpty() ? storage.getBanners() : getSelectedBanners();
+            if (banners.isEmpty()) {
+                Loombook.LOGGER.info("No banners to export");
+                return;
+            }
+            showStatus("Exporting " + banners.size() + " banners...");
+            storage.exportToFile(banners).whenComplete((file, error) -> MinecraftClient.getInstance().execute(() ->
+                    showStatus(error == null ? "Exported to " + file.getFileName() : "Export failed, see the log")));
             return;
         }
 
         if (selectedBannerIds.size() == 1) {
             // Single banner: export as JSON
             String bannerId = selectedBannerIds.iterator().next();
-            String json = BannerStorage.getInstance().exportBannerToJson(bannerId);
+            String json = storage.exportBannerToJson(bannerId);
             
             if (json != null) {
                 MinecraftClient.getInstance().keyboard.setClipboard(json);
@@ -432,8 +764,8 @@ public class LoomSidePanel {
             // Multiple banners: export as JSON array
             StringBuilder jsonArray = new StringBuilder("[");
             boolean first = true;
-            for (String bannerId : selectedBannerIds) {
-                String json = BannerStorage.getInstance().exportBannerToJson(bannerId);
+            for (SavedBanner banner : getSelectedBanners()) {
+                String json = storage.exportBannerToJson(banner.getId());
                 if (json != null) {
                     if (!first) {
                         jsonArray.append(",");
@@ -449,6 +781,52 @@ public class LoomSidePanel {
         }
     }
 
+    /**
+     * Ctrl+Export: writes the selection, or every collection when nothing is selected, as a
+     * datapack whose functions give or place the banners.
+     */
+    private void exportDatapack() {
+        showStatus(selectedBannerIds.isEmpty() ? "Exporting all collections as a datapack..." : "Exporting datapack...");
+        BannerStorage.getInstance().exportToDatapack(getSelectedBanners()).whenComplete((file, error) ->
+                MinecraftClient.getInstance().execute(() ->
+                        showStatus(error == null ? "Exported to " + file.getFileName() : "Export failed, see the log")));
+    }
+
+    /**
+     * Alt+Export: writes the selection, or the whole library when nothing is selected, as a
+     * folder with one JSON file per banner.
+     */
+    private void exportBannerFiles() {
+        BannerStorage storage = BannerStorage.getInstance();
+        List<SavedBanner> banners = selectedBannerIds.isEmpty() ? storage.getBanners() : getSelectedBanners();
+        if (banners.isEmpty()) {
+            Loombook.LOGGER.info("No banners to export");
+            return;
+        }
+        showStatus("Exporting " + banners.size() + " banner files...");
+        storage.exportToDirectory(banners).whenComplete((folder, error) -> MinecraftClient.getInstance().execute(() ->
+                showStatus(error == null ? "Exported to " + folder.getFileName() : "Export failed, see the log")));
+    }
+
+    /**
+     * Shift+Export: copies the selection as share codes, one per line.
+     */
+    private void exportShareCodes() {
+        if (selectedBannerIds.isEmpty()) {
+            Loombook.LOGGER.info("No banners selected to export");
+            return;
+        }
+        StringBuilder codes = new StringBuilder();
+        for (SavedBanner banner : getSelectedBanners()) {
+            if (!codes.isEmpty()) {
+                codes.append('\n');
+            }
+            codes.append(BannerShareCode.encode(banner));
+        }
+        MinecraftClient.getInstance().keyboard.setClipboard(codes.toString());
+        showStatus(selectedBannerIds.size() == 1 ? "Copied share code" : "Copied " + selectedBannerIds.size() + " share codes");
+    }
+
     public void importBannerFromClipboard(String jsonString) {
         SavedBanner imported = BannerStorage.getInstance().importBannerFromJson(jsonString);
         if (imported != null) {
@@ -472,7 +850,7 @@ public class LoomSidePanel {
         int my = (int) mouseY;
 
         // Check pattern entries for right-click
-        List<SavedBanner> banners = BannerStorage.getInstance().getBanners();
+        List<SavedBanner> banners = getVisibleBanners();
         int saveButtonY = y + HEADER_HEIGHT + PADDING;
         int importButtonY = saveButtonY + SAVE_BUTTON_HEIGHT + PADDING;
         int listStartY = importButtonY + BUTTON_HEIGHT + PADDING;